@@ -7,40 +7,134 @@ import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import androidx.annotation.Nullable;
 
+import java.util.Map;
+
+/**
+ * State of a transfer lives in a {@link Session}. The binder returned on bind has a session of
+ * its own, shared by everyone bound, so clients that may transfer concurrently MUST each get
+ * theirs with {@link IConsumer#openSession()}.
+ */
 public abstract class ConsumerService extends Service {
     public static final String ACTION = "com.brufino.android.CONSUMER";
 
-    private final IConsumer mBinder = new ConsumerBinder();
+    @Nullable private IConsumer mBinder;
 
     @Override
     public IBinder onBind(Intent intent) {
+        if (mBinder == null) {
+            mBinder = new ConsumerBinder(createSession());
+        }
         return mBinder.asBinder();
     }
 
-    public abstract void configure(int bufferSize, long intervalMs);
+    /** Called from binder threads. */
+    protected abstract Session createSession();
+
+    /** State of one transfer at a time, sessions are independent of each other. */
+    public abstract static class Session {
+        public abstract void configure(int bufferSize, long intervalMs);
+
+        public abstract void start(ParcelFileDescriptor input);
+
+        public abstract void onDataReceived(int bytes);
+
+        public abstract void finish();
+
+        /**
+         * Consumer reads on its own thread and reports bytes consumed via {@code callback}. Data
+         * is announced via {@link #onDataAvailable(int)} and {@link #finish()} waits until
+         * everything written is consumed.
+         */
+        public abstract void startAsync(ParcelFileDescriptor input, IConsumerCallback callback);
+
+        /**
+         * Called instead of {@link #onDataReceived(int)} after {@link #startAsync}, MUST not
+         * block.
+         */
+        public abstract void onDataAvailable(int bytes);
 
-    public abstract void start(ParcelFileDescriptor input);
+        /**
+         * Instead of a pipe the data comes through a shared {@link
+         * com.brufino.android.common.transport.MappedRegion} of {@code size} bytes backed by
+         * {@code region}.
+         */
+        public abstract void startMapped(ParcelFileDescriptor region, int size);
 
-    public abstract void onDataReceived(int bytes);
+        /**
+         * Called instead of {@link #onDataReceived(int)} after {@link #startMapped}, the range
+         * can be overwritten after this returns.
+         */
+        public abstract void onMappedDataReceived(int offset, int length);
 
-    public abstract void finish();
+        /** Data sent in the call itself, doesn't need any start() call before. */
+        public abstract void onInlineDataReceived(byte[] data);
+
+        /**
+         * Consumer drains {@code input} on its own thread until EOF, pacing itself, so {@link
+         * #onDataReceived(int)} is only a hint and MUST return without reading. {@link #finish()}
+         * waits for the drain to complete.
+         */
+        public abstract void startStream(ParcelFileDescriptor input);
+
+        /** Counters of the last transfer, valid after {@link #finish()}. */
+        public abstract Map<String, Long> getCounters();
+    }
 
     public class ConsumerBinder extends IConsumer.Stub {
+        private final Session mSession;
+
+        private ConsumerBinder(Session session) {
+            mSession = session;
+        }
+
         @Override
         public void configure(int bufferSize, long intervalMs) throws RemoteException {
-            ConsumerService.this.configure(bufferSize, intervalMs);
+            mSession.configure(bufferSize, intervalMs);
         }
         @Override
         public void start(ParcelFileDescriptor input) throws RemoteException {
-            ConsumerService.this.start(input);
+            mSession.start(input);
         }
         @Override
         public void onDataReceived(int bytes) throws RemoteException {
-            ConsumerService.this.onDataReceived(bytes);
+            mSession.onDataReceived(bytes);
         }
         @Override
         public void finish() throws RemoteException {
-            ConsumerService.this.finish();
+            mSession.finish();
+        }
+        @Override
+        public void startAsync(ParcelFileDescriptor input, IConsumerCallback callback)
+                throws RemoteException {
+            mSession.startAsync(input, callback);
+        }
+        @Override
+        public void onDataAvailable(int bytes) throws RemoteException {
+            mSession.onDataAvailable(bytes);
+        }
+        @Override
+        public void startMapped(ParcelFileDescriptor region, int size) throws RemoteException {
+            mSession.startMapped(region, size);
+        }
+        @Override
+        public void onMappedDataReceived(int offset, int length) throws RemoteException {
+            mSession.onMappedDataReceived(offset, length);
+        }
+        @Override
+        public void onInlineDataReceived(byte[] data) throws RemoteException {
+            mSession.onInlineDataReceived(data);
+        }
+        @Override
+        public void startStream(ParcelFileDescriptor input) throws RemoteException {
+            mSession.startStream(input);
+        }
+        @Override
+        public Map getCounters() throws RemoteException {
+            return mSession.getCounters();
+        }
+        @Override
+        public IConsumer openSession() throws RemoteException {
+            return new ConsumerBinder(createSession());
         }
     }
 }
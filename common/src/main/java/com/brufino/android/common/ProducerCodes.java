@@ -0,0 +1,57 @@
+package com.brufino.android.common;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Codes passed to {@link IProducer#produce(int, android.os.ParcelFileDescriptor)}.
+ *
+ * {@link #DEFAULT} produces the whole stream as frames {@code [int size][size bytes]}. A striped
+ * code produces only the lane's share of the chunks, chunk i going to lane i % lanes, as frames
+ * {@code [int size][int sequence][size bytes]} where sequence is i. Both are terminated by a frame
+ * of size 0.
+ *
+ * Codes also carry the stream, see {@link #withStream(int, int)}, the configuration used is the
+ * stream's. Codes built without one use stream 0.
+ */
+public class ProducerCodes {
+    public static final int DEFAULT = 0;
+    public static final int MAX_LANES = 0xFF;
+    public static final int MAX_STREAMS = 1 << 14;
+
+    private static final int STRIPED_FLAG = 1 << 30;
+    private static final int STREAM_SHIFT = 16;
+    private static final int LANES_SHIFT = 8;
+    private static final int LANE_MASK = 0xFF;
+
+    public static int getStripedCode(int lane, int lanes) {
+        checkArgument(lanes > 0 && lanes <= MAX_LANES, "Invalid lanes " + lanes);
+        checkArgument(lane >= 0 && lane < lanes, "Invalid lane " + lane);
+        return STRIPED_FLAG | (lanes << LANES_SHIFT) | lane;
+    }
+
+    public static boolean isStriped(int code) {
+        return (code & STRIPED_FLAG) != 0;
+    }
+
+    public static int getLane(int code) {
+        checkArgument(isStriped(code));
+        return code & LANE_MASK;
+    }
+
+    public static int getLanes(int code) {
+        checkArgument(isStriped(code));
+        return (code >> LANES_SHIFT) & LANE_MASK;
+    }
+
+    /** Same as {@code code} but for {@code stream}, which replaces any stream already there. */
+    public static int withStream(int code, int stream) {
+        checkArgument(stream >= 0 && stream < MAX_STREAMS, "Invalid stream " + stream);
+        return (code & ~((MAX_STREAMS - 1) << STREAM_SHIFT)) | (stream << STREAM_SHIFT);
+    }
+
+    public static int getStream(int code) {
+        return (code >> STREAM_SHIFT) & (MAX_STREAMS - 1);
+    }
+
+    private ProducerCodes() {}
+}
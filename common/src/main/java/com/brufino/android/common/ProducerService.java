@@ -5,6 +5,12 @@ import android.content.Intent;
 import android.os.IBinder;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import androidx.annotation.IntDef;
+import com.brufino.android.common.payload.PayloadGenerator;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
 
 public abstract class ProducerService extends Service {
     public static final String ACTION = "com.brufino.android.PRODUCER";
@@ -16,20 +22,94 @@ public abstract class ProducerService extends Service {
         return mBinder.asBinder();
     }
 
-    public abstract void configure(int dataSize, int chunkSize, long intervalMs);
+    /**
+     * Configures {@code stream}, used by the codes built with {@link ProducerCodes#withStream(int,
+     * int)}. Streams are independent, so several clients can produce concurrently, each MUST call
+     * {@link #release(int)} once done. Configuring a stream already configured only adds a
+     * reference, e.g. for lanes of the same transfer.
+     *
+     * Data is generated by {@link PayloadGenerator#create(int, int, int)} with {@code payload},
+     * {@code seed} and {@code compressibility}.
+     */
+    public abstract void configure(
+            int stream,
+            int dataSize,
+            int chunkSize,
+            long intervalMs,
+            @ProducerMode int mode,
+            @PayloadGenerator.Type int payload,
+            int seed,
+            int compressibility);
 
     public abstract void produce(int code, ParcelFileDescriptor output);
 
+    /**
+     * Returns chunk {@code sequence} of the data without going through a pipe, or an empty array
+     * after the last one. Chunks have to fit in a binder transaction.
+     */
+    public abstract byte[] produceInline(int code, int sequence);
+
+    /**
+     * Counters of the last {@link #produce(int, ParcelFileDescriptor)} with {@code code}, complete
+     * once its end of data frame was read. Empty if the mode doesn't keep counters.
+     */
+    public abstract Map<String, Long> getCounters(int code);
+
+    /** Drops a reference to {@code stream}, its state is gone once all are dropped. */
+    public abstract void release(int stream);
+
     private class ProducerBinder extends IProducer.Stub {
         @Override
-        public void configure(int dataSize, int chunkSize, long intervalMs) throws RemoteException {
-            ProducerService.this.configure(dataSize, chunkSize, intervalMs);
+        public void configure(
+                int stream,
+                int dataSize,
+                int chunkSize,
+                long intervalMs,
+                int mode,
+                int payload,
+                int seed,
+                int compressibility)
+                throws RemoteException {
+            ProducerService.this.configure(
+                    stream, dataSize, chunkSize, intervalMs, mode, payload, seed, compressibility);
         }
         @Override
         public void produce(int code, ParcelFileDescriptor output) throws RemoteException {
             ProducerService.this.produce(code, output);
         }
+        @Override
+        public byte[] produceInline(int code, int sequence) throws RemoteException {
+            return ProducerService.this.produceInline(code, sequence);
+        }
+        @Override
+        public Map getCounters(int code) throws RemoteException {
+            return ProducerService.this.getCounters(code);
+        }
+        @Override
+        public void release(int stream) throws RemoteException {
+            ProducerService.this.release(stream);
+        }
+    }
 
-
+    @IntDef({
+            ProducerMode.SIMPLE,
+            ProducerMode.PACED,
+            ProducerMode.UNPACED,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ProducerMode {
+        /**
+         * Sleeps the interval before each chunk and writes header and payload separately. Data is
+         * rounded up to whole chunks.
+         */
+        int SIMPLE = 0;
+        /**
+         * Writes each frame with a single gathered write and sends exactly the data size, chunks
+         * are scheduled at a fixed rate of one per interval, so time spent writing doesn't add up.
+         * Keeps counters instead of logging.
+         */
+        int PACED = 1;
+        /** Same as {@link #PACED} but ignores the interval, writes as fast as the link allows. */
+        int UNPACED = 2;
     }
 }
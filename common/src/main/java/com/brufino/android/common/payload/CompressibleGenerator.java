@@ -0,0 +1,43 @@
+package com.brufino.android.common.payload;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Each segment of {@link #SEGMENT_SIZE} bytes starts with random bytes and ends with zeros, the
+ * zeros being {@code compressibility} percent of it. Compressors squeeze the zeros to almost
+ * nothing and can't do anything with the random bytes, so the compressed size is close to the
+ * random part. Segments are small compared to compression windows, so the ratio holds for any
+ * reasonable chunk.
+ */
+public class CompressibleGenerator implements PayloadGenerator {
+    private static final int SEGMENT_SIZE = 1024;
+
+    private final long mSeed;
+    private final int mRandomSize;
+
+    public CompressibleGenerator(int seed, int compressibility) {
+        checkArgument(
+                compressibility >= 0 && compressibility <= 100,
+                "Invalid compressibility " + compressibility);
+        mSeed = seed;
+        mRandomSize = SEGMENT_SIZE * (100 - compressibility) / 100;
+    }
+
+    @Override
+    public void fill(long position, byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            int start = (int) (position % SEGMENT_SIZE);
+            int size = Math.min(SEGMENT_SIZE - start, end - offset);
+            int randomSize = Math.max(0, Math.min(mRandomSize - start, size));
+            if (randomSize > 0) {
+                RandomGenerator.fill(mSeed, position, buffer, offset, randomSize);
+            }
+            for (int i = offset + randomSize; i < offset + size; i++) {
+                buffer[i] = 0;
+            }
+            offset += size;
+            position += size;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.brufino.android.common.payload;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Content of the data sent by the producer. Generators are addressed by position in the stream
+ * instead of keeping state, so lanes and inline chunks produce the same bytes as a single stream,
+ * and the same seed always produces the same stream.
+ *
+ * Implementations MUST be thread-safe and fast enough not to slow down the producer, lanes fill
+ * their chunks concurrently.
+ */
+public interface PayloadGenerator {
+    /**
+     * Fills {@code length} bytes of {@code buffer} at {@code offset} with the bytes of the stream
+     * at {@code position}.
+     */
+    void fill(long position, byte[] buffer, int offset, int length);
+
+    /**
+     * @param compressibility Only used by {@link Type#COMPRESSIBLE}, percentage by which a generic
+     *     compressor is expected to reduce the size of the data.
+     */
+    static PayloadGenerator create(@Type int type, int seed, int compressibility) {
+        switch (type) {
+            case Type.ZEROS:
+                return new ZerosGenerator();
+            case Type.RANDOM:
+                return new RandomGenerator(seed);
+            case Type.TEXT:
+                return new TextGenerator(seed);
+            case Type.COMPRESSIBLE:
+                return new CompressibleGenerator(seed, compressibility);
+            default:
+                throw new IllegalArgumentException("Unknown payload " + type);
+        }
+    }
+
+    static String typeToString(@Type int type) {
+        switch (type) {
+            case Type.ZEROS:
+                return "zeros";
+            case Type.RANDOM:
+                return "random";
+            case Type.TEXT:
+                return "text";
+            case Type.COMPRESSIBLE:
+                return "compressible";
+            default:
+                throw new IllegalArgumentException("Unknown payload " + type);
+        }
+    }
+
+    @IntDef({
+            Type.ZEROS,
+            Type.RANDOM,
+            Type.TEXT,
+            Type.COMPRESSIBLE,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    @interface Type {
+        /** All zeros, what the producer always sent before, see {@link ZerosGenerator}. */
+        int ZEROS = 0;
+        /** Pseudo-random bytes, incompressible, see {@link RandomGenerator}. */
+        int RANDOM = 1;
+        /** English-like words, compresses like text, see {@link TextGenerator}. */
+        int TEXT = 2;
+        /** Random and zero bytes mixed in a given ratio, see {@link CompressibleGenerator}. */
+        int COMPRESSIBLE = 3;
+    }
+}
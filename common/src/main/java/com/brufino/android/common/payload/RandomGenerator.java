@@ -0,0 +1,42 @@
+package com.brufino.android.common.payload;
+
+/**
+ * Each 8-byte block of the stream is a hash of the seed and the block index (SplitMix64), which
+ * is as fast as a sequential generator and doesn't need any state to start at any position.
+ */
+public class RandomGenerator implements PayloadGenerator {
+    private final long mSeed;
+
+    public RandomGenerator(int seed) {
+        mSeed = seed;
+    }
+
+    @Override
+    public void fill(long position, byte[] buffer, int offset, int length) {
+        fill(mSeed, position, buffer, offset, length);
+    }
+
+    /** Fills with the random stream of {@code seed}, bytes are taken from each block LSB first. */
+    static void fill(long seed, long position, byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        long block = position >>> 3;
+        int skip = (int) (position & 7);
+        while (offset < end) {
+            long value = mix(seed, block++) >>> (8 * skip);
+            int size = Math.min(Long.BYTES - skip, end - offset);
+            for (int i = 0; i < size; i++) {
+                buffer[offset++] = (byte) value;
+                value >>>= 8;
+            }
+            skip = 0;
+        }
+    }
+
+    /** SplitMix64 output for the {@code index}-th value of {@code seed}. */
+    static long mix(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
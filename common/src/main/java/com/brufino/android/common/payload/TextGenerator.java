@@ -0,0 +1,72 @@
+package com.brufino.android.common.payload;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Repeats a corpus of {@link #CORPUS_SIZE} bytes of random sentences made of common English words,
+ * more frequent words being picked more often. The corpus is bigger than usual compression
+ * windows, so compressors see it as text and not as a repetition.
+ */
+public class TextGenerator implements PayloadGenerator {
+    private static final int CORPUS_SIZE = 64 * 1024;
+    private static final int WORDS_PER_SENTENCE = 12;
+    private static final int SENTENCES_PER_LINE = 6;
+
+    /** Most frequent first. */
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "a", "in", "is", "it", "you", "that", "he", "was", "for",
+            "on", "are", "with", "as", "his", "they", "be", "at", "one", "have", "this", "from",
+            "or", "had", "by", "hot", "word", "but", "what", "some", "we", "can", "out", "other",
+            "were", "all", "there", "when", "up", "use", "your", "how", "said", "an", "each", "she",
+            "which", "do", "their", "time", "if", "will", "way", "about", "many", "then", "them",
+            "write", "would", "like", "so", "these", "her", "long", "make", "thing", "see", "him",
+            "two", "has", "look", "more", "day", "could", "go", "come", "did", "number", "sound",
+            "no", "most", "people", "my", "over", "know", "water", "than", "call", "first", "who",
+            "may", "down", "side", "been", "now", "find", "any", "new", "work", "part", "take",
+            "get", "place", "made", "live", "where", "after", "back", "little", "only", "round",
+            "man", "year", "came", "show", "every", "good", "me", "give", "our", "under", "name",
+    };
+
+    private final byte[] mCorpus;
+
+    public TextGenerator(int seed) {
+        mCorpus = createCorpus(seed);
+    }
+
+    @Override
+    public void fill(long position, byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int start = (int) (position % CORPUS_SIZE);
+        while (offset < end) {
+            int size = Math.min(CORPUS_SIZE - start, end - offset);
+            System.arraycopy(mCorpus, start, buffer, offset, size);
+            offset += size;
+            start = 0;
+        }
+    }
+
+    private static byte[] createCorpus(long seed) {
+        StringBuilder corpus = new StringBuilder(CORPUS_SIZE + 16);
+        long index = 0;
+        int words = 0;
+        int sentences = 0;
+        while (corpus.length() < CORPUS_SIZE) {
+            // Squaring a uniform value skews it towards 0, where the frequent words are
+            double uniform = (RandomGenerator.mix(seed, index++) >>> 11) * 0x1.0p-53;
+            String word = WORDS[(int) (uniform * uniform * WORDS.length)];
+            if (words == 0) {
+                corpus.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                corpus.append(' ').append(word);
+            }
+            if (++words < WORDS_PER_SENTENCE) {
+                continue;
+            }
+            words = 0;
+            corpus.append('.');
+            corpus.append((++sentences % SENTENCES_PER_LINE == 0) ? '\n' : ' ');
+        }
+        corpus.setLength(CORPUS_SIZE);
+        return corpus.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
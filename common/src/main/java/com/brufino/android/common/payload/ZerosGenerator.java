@@ -0,0 +1,10 @@
+package com.brufino.android.common.payload;
+
+import java.util.Arrays;
+
+public class ZerosGenerator implements PayloadGenerator {
+    @Override
+    public void fill(long position, byte[] buffer, int offset, int length) {
+        Arrays.fill(buffer, offset, offset + length, (byte) 0);
+    }
+}
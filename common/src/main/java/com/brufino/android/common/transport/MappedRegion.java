@@ -0,0 +1,103 @@
+package com.brufino.android.common.transport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+
+/**
+ * File-backed region of memory mapped with {@link FileChannel#map}, used to move data between
+ * processes without copying it through the kernel. One side creates the region and shares the file
+ * descriptor, the other maps the same file read-only. Only offsets and lengths need to be sent
+ * over binder.
+ *
+ * Plain java.nio, so it can be benchmarked on a desktop JVM as well.
+ *
+ * Accesses don't move any position, so a region can be read or written by multiple threads as long
+ * as they use disjoint ranges.
+ */
+public class MappedRegion implements Closeable {
+    /**
+     * Creates {@code file} with {@code size} bytes and maps it read-write. The file can be deleted
+     * after every process opened it, the mapping stays valid.
+     */
+    public static MappedRegion create(File file, int size) throws IOException {
+        checkArgument(size > 0, "Invalid region size " + size);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(size);
+            FileChannel channel = randomAccessFile.getChannel();
+            return new MappedRegion(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /** Maps the first {@code size} bytes of {@code channel} read-only. Takes ownership of it. */
+    public static MappedRegion openReadOnly(FileChannel channel, int size) throws IOException {
+        checkArgument(size > 0, "Invalid region size " + size);
+        try {
+            return new MappedRegion(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private final FileChannel mChannel;
+    private final MappedByteBuffer mBuffer;
+
+    private MappedRegion(FileChannel channel, MappedByteBuffer buffer) {
+        mChannel = channel;
+        mBuffer = buffer;
+    }
+
+    public int getSize() {
+        return mBuffer.capacity();
+    }
+
+    /** Copies the remaining bytes of {@code source} to the region starting at {@code offset}. */
+    public void put(int offset, ByteBuffer source) {
+        checkRange(offset, source.remaining());
+        ByteBuffer target = mBuffer.duplicate();
+        target.position(offset);
+        target.put(source);
+    }
+
+    public void put(int offset, byte[] source, int sourceOffset, int length) {
+        checkRange(offset, length);
+        ByteBuffer target = mBuffer.duplicate();
+        target.position(offset);
+        target.put(source, sourceOffset, length);
+    }
+
+    public void get(int offset, byte[] target, int targetOffset, int length) {
+        checkRange(offset, length);
+        ByteBuffer source = mBuffer.duplicate();
+        source.position(offset);
+        source.get(target, targetOffset, length);
+    }
+
+    /**
+     * Closes the file, the memory itself is only unmapped when the buffer is garbage collected,
+     * there is no public API to unmap it earlier.
+     */
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    private void checkRange(int offset, int length) {
+        checkState(mChannel.isOpen(), "Region closed");
+        checkArgument(
+                offset >= 0 && length >= 0 && offset + length <= mBuffer.capacity(),
+                "Invalid range [" + offset + ", " + offset + " + " + length + ")");
+    }
+}
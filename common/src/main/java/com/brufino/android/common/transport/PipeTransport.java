@@ -0,0 +1,27 @@
+package com.brufino.android.common.transport;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.IOException;
+
+/** Links are anonymous pipes created with {@link ParcelFileDescriptor#createPipe()}. */
+public class PipeTransport implements Transport {
+    /** Default pipe buffer on Linux, it can't be changed without fcntl(F_SETPIPE_SZ). */
+    public static final int CAPACITY = 64 * 1024;
+
+    @Override
+    @Type
+    public int getType() {
+        return Type.PIPE;
+    }
+
+    @Override
+    public int getCapacity() {
+        return CAPACITY;
+    }
+
+    @Override
+    public ParcelFileDescriptor[] createLink() throws IOException {
+        return ParcelFileDescriptor.createPipe();
+    }
+}
@@ -0,0 +1,93 @@
+package com.brufino.android.common.transport;
+
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+import static android.system.OsConstants.SOL_SOCKET;
+import static android.system.OsConstants.SO_RCVBUF;
+import static android.system.OsConstants.SO_SNDBUF;
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+
+/**
+ * Links are Unix domain socket pairs created with {@link ParcelFileDescriptor#createSocketPair()}.
+ * Unlike pipes, their buffers can be tuned with SO_SNDBUF and SO_RCVBUF.
+ *
+ * For stream sockets the kernel charges the bytes in flight plus bookkeeping to the sender's
+ * SO_SNDBUF, and doubles the size requested to leave room for the bookkeeping. So the capacity is
+ * half of the effective SO_SNDBUF, which only holds if writes aren't tiny, each write carries
+ * hundreds of bytes of overhead. The receive buffer isn't checked for stream sockets, it's
+ * configured anyway to compare.
+ */
+public class SocketTransport implements Transport {
+    private final int mSendBufferSize;
+    private final int mReceiveBufferSize;
+    private volatile int mEffectiveSendBufferSize = 0;
+    private volatile int mEffectiveReceiveBufferSize = 0;
+
+    /** Sizes of 0 keep the system defaults. */
+    public SocketTransport(int sendBufferSize, int receiveBufferSize) {
+        checkArgument(sendBufferSize >= 0, "Invalid send buffer size " + sendBufferSize);
+        checkArgument(receiveBufferSize >= 0, "Invalid receive buffer size " + receiveBufferSize);
+        mSendBufferSize = sendBufferSize;
+        mReceiveBufferSize = receiveBufferSize;
+    }
+
+    @Override
+    @Type
+    public int getType() {
+        return Type.SOCKET;
+    }
+
+    /** Depends on the effective buffer sizes, so only valid after a link is created. */
+    @Override
+    public int getCapacity() {
+        int sendBufferSize = mEffectiveSendBufferSize;
+        checkState(sendBufferSize > 0, "No link created yet");
+        return sendBufferSize / 2;
+    }
+
+    @Override
+    public ParcelFileDescriptor[] createLink() throws IOException {
+        ParcelFileDescriptor[] link = ParcelFileDescriptor.createSocketPair();
+        try {
+            for (ParcelFileDescriptor end : link) {
+                configure(end.getFileDescriptor());
+            }
+            // Every link is configured the same way, so any of them gives the effective sizes
+            mEffectiveSendBufferSize =
+                    Os.getsockoptInt(link[1].getFileDescriptor(), SOL_SOCKET, SO_SNDBUF);
+            mEffectiveReceiveBufferSize =
+                    Os.getsockoptInt(link[0].getFileDescriptor(), SOL_SOCKET, SO_RCVBUF);
+        } catch (ErrnoException e) {
+            link[0].close();
+            link[1].close();
+            throw e.rethrowAsIOException();
+        }
+        return link;
+    }
+
+    /** SO_SNDBUF as reported by the kernel, 0 until a link is created. */
+    public int getEffectiveSendBufferSize() {
+        return mEffectiveSendBufferSize;
+    }
+
+    /** SO_RCVBUF as reported by the kernel, 0 until a link is created. */
+    public int getEffectiveReceiveBufferSize() {
+        return mEffectiveReceiveBufferSize;
+    }
+
+    private void configure(FileDescriptor fd) throws ErrnoException {
+        // The kernel clamps the values to [SOCK_MIN_*BUF, net.core.*mem_max] silently
+        if (mSendBufferSize > 0) {
+            Os.setsockoptInt(fd, SOL_SOCKET, SO_SNDBUF, mSendBufferSize);
+        }
+        if (mReceiveBufferSize > 0) {
+            Os.setsockoptInt(fd, SOL_SOCKET, SO_RCVBUF, mReceiveBufferSize);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.brufino.android.common.transport;
+
+import android.os.ParcelFileDescriptor;
+import androidx.annotation.IntDef;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * IPC mechanism used to move a byte stream, tasks obtain their links from a transport instead of
+ * creating pipes directly, so the same task logic can run on top of different mechanisms.
+ *
+ * Links are pairs of file descriptors, either end can be sent over binder. Implementations MUST be
+ * thread-safe, subtasks create links concurrently.
+ */
+public interface Transport {
+    @Type
+    int getType();
+
+    /**
+     * Bytes that can be written to a link without the other end reading them. A writer that only
+     * lets the reader know after writing MUST NOT write more than this at once, otherwise it may
+     * block forever.
+     */
+    int getCapacity();
+
+    /** Returns the read end at index 0 and the write end at index 1, same as createPipe(). */
+    ParcelFileDescriptor[] createLink() throws IOException;
+
+    static String typeToString(@Type int type) {
+        switch (type) {
+            case Type.PIPE:
+                return "pipe";
+            case Type.SOCKET:
+                return "socket";
+            default:
+                throw new IllegalArgumentException("Unknown transport " + type);
+        }
+    }
+
+    @IntDef({
+            Type.PIPE,
+            Type.SOCKET,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    @interface Type {
+        /** Anonymous kernel pipe, see {@link PipeTransport}. */
+        int PIPE = 0;
+        /** Unix domain socket pair, see {@link SocketTransport}. */
+        int SOCKET = 1;
+    }
+}
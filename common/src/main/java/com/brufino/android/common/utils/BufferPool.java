@@ -0,0 +1,125 @@
+package com.brufino.android.common.utils;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Pool of {@link ByteBuffer}s bucketed in power-of-2 size classes. Buffers handed out have
+ * position 0 and limit equal to the size requested, capacity may be bigger.
+ *
+ * Buffers are allocated with {@link ByteBuffer#allocateDirect(int)}, which in ART lives outside
+ * of the movable heap and is still backed by an array. If the runtime doesn't back direct buffers
+ * with an array we fall back to heap buffers, so callers can always rely on
+ * {@link ByteBuffer#array()}.
+ *
+ * Thread-safe.
+ */
+public class BufferPool {
+    private static final int MIN_SIZE_CLASS = 10;
+    private static final int MAX_SIZE_CLASS = 20;
+    private static final int DEFAULT_MAX_BUFFERS_PER_CLASS = 16;
+
+    private final int mMaxBuffersPerClass;
+    private final Queue<ByteBuffer>[] mFreeBuffers;
+    private final AtomicInteger[] mFreeCounts;
+    private final AtomicLong mHits = new AtomicLong(0);
+    private final AtomicLong mMisses = new AtomicLong(0);
+
+    public BufferPool() {
+        this(DEFAULT_MAX_BUFFERS_PER_CLASS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(int maxBuffersPerClass) {
+        checkArgument(maxBuffersPerClass > 0);
+        mMaxBuffersPerClass = maxBuffersPerClass;
+        int classes = MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1;
+        mFreeBuffers = new Queue[classes];
+        mFreeCounts = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            mFreeBuffers[i] = new ConcurrentLinkedQueue<>();
+            mFreeCounts[i] = new AtomicInteger(0);
+        }
+    }
+
+    /** Returns a pooled buffer if there is one available, otherwise allocates a new one. */
+    public ByteBuffer acquire(int size) {
+        ByteBuffer buffer = poll(size);
+        return (buffer != null) ? buffer : allocate(size);
+    }
+
+    /** Returns a pooled buffer or null if none is available for this size. */
+    @Nullable
+    public ByteBuffer poll(int size) {
+        checkArgument(size > 0, "Invalid buffer size " + size);
+        int sizeClass = getSizeClass(size);
+        if (sizeClass > MAX_SIZE_CLASS) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+        int i = sizeClass - MIN_SIZE_CLASS;
+        ByteBuffer buffer = mFreeBuffers[i].poll();
+        if (buffer == null) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+        mFreeCounts[i].decrementAndGet();
+        mHits.incrementAndGet();
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /** Allocates a new buffer that can later be returned to the pool via {@link #release}. */
+    public ByteBuffer allocate(int size) {
+        checkArgument(size > 0, "Invalid buffer size " + size);
+        int sizeClass = getSizeClass(size);
+        int capacity = (sizeClass > MAX_SIZE_CLASS) ? size : 1 << sizeClass;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+        if (!buffer.hasArray()) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. The caller MUST NOT use it afterwards. Buffers outside the
+     * size classes or above the pool limit are just dropped.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = getSizeClass(capacity);
+        if (sizeClass < MIN_SIZE_CLASS
+                || sizeClass > MAX_SIZE_CLASS
+                || capacity != 1 << sizeClass) {
+            return;
+        }
+        int i = sizeClass - MIN_SIZE_CLASS;
+        if (mFreeCounts[i].incrementAndGet() > mMaxBuffersPerClass) {
+            mFreeCounts[i].decrementAndGet();
+            return;
+        }
+        mFreeBuffers[i].offer(buffer);
+    }
+
+    public long getHits() {
+        return mHits.get();
+    }
+
+    public long getMisses() {
+        return mMisses.get();
+    }
+
+    /** Smallest n such that 2^n >= size, at least MIN_SIZE_CLASS. */
+    private static int getSizeClass(int size) {
+        int sizeClass = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(sizeClass, MIN_SIZE_CLASS);
+    }
+}
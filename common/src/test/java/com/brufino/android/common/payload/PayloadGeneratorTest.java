@@ -0,0 +1,119 @@
+package com.brufino.android.common.payload;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PayloadGeneratorTest {
+    private static final int[] TYPES = {
+            PayloadGenerator.Type.ZEROS,
+            PayloadGenerator.Type.RANDOM,
+            PayloadGenerator.Type.TEXT,
+            PayloadGenerator.Type.COMPRESSIBLE,
+    };
+    private static final int SEED = 42;
+    private static final int COMPRESSIBILITY = 50;
+    private static final int SIZE = 10_000;
+
+    @Test
+    public void fill_sameSeed_producesSameBytes() {
+        for (int type : TYPES) {
+            byte[] first = fill(create(type, SEED), 0, SIZE);
+            byte[] second = fill(create(type, SEED), 0, SIZE);
+
+            assertArrayEquals(PayloadGenerator.typeToString(type), first, second);
+        }
+    }
+
+    @Test
+    public void fill_atPosition_matchesWholeStream() {
+        int[] positions = {0, 1, 7, 255, 4096, 4097, 9_999};
+        for (int type : TYPES) {
+            byte[] stream = fill(create(type, SEED), 0, SIZE);
+            for (int position : positions) {
+                int length = Math.min(333, SIZE - position);
+                byte[] slice = fill(create(type, SEED), position, length);
+
+                assertArrayEquals(
+                        PayloadGenerator.typeToString(type) + " at " + position,
+                        Arrays.copyOfRange(stream, position, position + length),
+                        slice);
+            }
+        }
+    }
+
+    @Test
+    public void fill_inChunks_matchesWholeStream() {
+        int[] chunkSizes = {1, 3, 64, 1000, 4093};
+        for (int type : TYPES) {
+            PayloadGenerator generator = create(type, SEED);
+            byte[] stream = fill(generator, 0, SIZE);
+            for (int chunkSize : chunkSizes) {
+                byte[] chunked = new byte[SIZE];
+                // Lanes fill their chunks out of order, so go backwards
+                for (int position = (SIZE - 1) / chunkSize * chunkSize;
+                        position >= 0;
+                        position -= chunkSize) {
+                    int length = Math.min(chunkSize, SIZE - position);
+                    generator.fill(position, chunked, position, length);
+                }
+
+                assertArrayEquals(
+                        PayloadGenerator.typeToString(type) + " in chunks of " + chunkSize,
+                        stream,
+                        chunked);
+            }
+        }
+    }
+
+    @Test
+    public void fill_atBufferOffset_leavesRestOfBuffer() {
+        for (int type : TYPES) {
+            byte[] stream = fill(create(type, SEED), 100, 50);
+            byte[] buffer = new byte[70];
+            Arrays.fill(buffer, (byte) 0x7F);
+
+            create(type, SEED).fill(100, buffer, 10, 50);
+
+            String name = PayloadGenerator.typeToString(type);
+            assertArrayEquals(name, stream, Arrays.copyOfRange(buffer, 10, 60));
+            for (int i : new int[] {0, 9, 60, 69}) {
+                assertEquals(name + " at " + i, (byte) 0x7F, buffer[i]);
+            }
+        }
+    }
+
+    @Test
+    public void fill_differentSeed_producesDifferentBytes() {
+        for (int type : TYPES) {
+            if (type == PayloadGenerator.Type.ZEROS) {
+                continue;
+            }
+            byte[] first = fill(create(type, SEED), 0, SIZE);
+            byte[] second = fill(create(type, SEED + 1), 0, SIZE);
+
+            assertFalse(PayloadGenerator.typeToString(type), Arrays.equals(first, second));
+        }
+    }
+
+    @Test
+    public void fill_zeros_producesZeros() {
+        byte[] bytes = fill(create(PayloadGenerator.Type.ZEROS, SEED), 123, SIZE);
+
+        assertArrayEquals(new byte[SIZE], bytes);
+    }
+
+    private static PayloadGenerator create(@PayloadGenerator.Type int type, int seed) {
+        return PayloadGenerator.create(type, seed, COMPRESSIBILITY);
+    }
+
+    private static byte[] fill(PayloadGenerator generator, long position, int length) {
+        byte[] buffer = new byte[length];
+        generator.fill(position, buffer, 0, length);
+        return buffer;
+    }
+}
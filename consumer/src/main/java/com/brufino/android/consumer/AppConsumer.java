@@ -1,67 +1,322 @@
 package com.brufino.android.consumer;
 
 import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
 import android.util.Log;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
 import com.brufino.android.common.CommonConstants;
 import com.brufino.android.common.ConsumerService;
+import com.brufino.android.common.IConsumerCallback;
+import com.brufino.android.common.transport.MappedRegion;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.common.utils.Preconditions;
 
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.brufino.android.common.CommonConstants.TAG;
 import static com.brufino.android.common.utils.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class AppConsumer extends ConsumerService {
-    private int mBufferSize = -1;
-    private int mBytesReceived = 0;
-    private long mIntervalMs = -1;
-    private DataInputStream mInputStream;
+    private final BufferPool mBufferPool = new BufferPool();
 
     @Override
-    public void configure(int bufferSize, long intervalMs) {
-        mBufferSize = bufferSize;
-        mIntervalMs = intervalMs;
+    protected Session createSession() {
+        return new AppSession();
     }
 
-    @Override
-    public void start(ParcelFileDescriptor input) {
-        checkState(mBufferSize > 0);
-        mInputStream = new DataInputStream(new ParcelFileDescriptor.AutoCloseInputStream(input));
-    }
+    private class AppSession extends Session {
+        private int mBufferSize = -1;
+        /** Written by whichever thread reads, reported as a counter. */
+        private final AtomicLong mBytesReceived = new AtomicLong();
+        private long mIntervalMs = -1;
+        private DataInputStream mInputStream;
+        private final Object mAvailableLock = new Object();
 
-    @Override
-    public void onDataReceived(int bytes) {
-        checkState(mBufferSize > 0);
-        checkState(mIntervalMs >= 0);
-
-        try {
-            Log.d(TAG, "Received " + bytes + " (" + mBytesReceived + " total)");
-            byte[] buffer = new byte[mBufferSize];
-            while (bytes > 0) {
-                Thread.sleep(mIntervalMs);
-                int sizeToRead = (bytes > buffer.length) ? buffer.length : bytes;
-                int sizeRead = mInputStream.read(buffer, 0, sizeToRead);
-                if (sizeRead < 0) {
-                    throw new EOFException("Unexpected EOF");
+        @GuardedBy("mAvailableLock")
+        private int mAvailable;
+
+        @GuardedBy("mAvailableLock")
+        private boolean mFinishing;
+
+        /** Only in async mode. */
+        @Nullable private Thread mDrainThread;
+
+        /** Only in mapped mode. */
+        @Nullable private MappedRegion mRegion;
+
+        /** Only in stream mode, read by binder threads to tell hints apart. */
+        @Nullable private volatile Thread mStreamThread;
+
+        /** Reused across stream transfers, only touched by the stream thread. */
+        @Nullable private byte[] mStreamBuffer;
+
+        /** See {@link #getCounters()}. */
+        private final Map<String, Long> mCounters = new ConcurrentHashMap<>();
+
+        @Override
+        public void configure(int bufferSize, long intervalMs) {
+            mBufferSize = bufferSize;
+            mIntervalMs = intervalMs;
+            mBytesReceived.set(0);
+            mCounters.clear();
+        }
+
+        @Override
+        public void start(ParcelFileDescriptor input) {
+            checkState(mBufferSize > 0);
+            mInputStream =
+                    new DataInputStream(new ParcelFileDescriptor.AutoCloseInputStream(input));
+        }
+
+        @Override
+        public void startAsync(ParcelFileDescriptor input, IConsumerCallback callback) {
+            start(input);
+            synchronized (mAvailableLock) {
+                mAvailable = 0;
+                mFinishing = false;
+            }
+            mDrainThread = new Thread(() -> drain(callback), "consumer-drain");
+            mDrainThread.start();
+        }
+
+        @Override
+        public void onDataAvailable(int bytes) {
+            synchronized (mAvailableLock) {
+                mAvailable += bytes;
+                mAvailableLock.notifyAll();
+            }
+        }
+
+        /**
+         * Reads bytes as they are announced, same pace as {@link #onDataReceived(int)}. Oneway
+         * calls can arrive after {@link #finish()}, but by then the writer closed the pipe, so we
+         * read whatever is left until EOF.
+         */
+        private void drain(IConsumerCallback callback) {
+            checkState(mBufferSize > 0);
+            checkState(mIntervalMs >= 0);
+
+            ByteBuffer buffer = mBufferPool.acquire(mBufferSize);
+            try {
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset();
+                while (true) {
+                    int sizeToRead;
+                    synchronized (mAvailableLock) {
+                        while (mAvailable == 0 && !mFinishing) {
+                            mAvailableLock.wait();
+                        }
+                        sizeToRead =
+                                (mAvailable > 0) ? Math.min(mAvailable, mBufferSize) : mBufferSize;
+                    }
+                    Thread.sleep(mIntervalMs);
+                    int sizeRead = mInputStream.read(array, offset, sizeToRead);
+                    if (sizeRead < 0) {
+                        break;
+                    }
+                    synchronized (mAvailableLock) {
+                        mAvailable = Math.max(mAvailable - sizeRead, 0);
+                    }
+                    mBytesReceived.addAndGet(sizeRead);
+                    callback.onConsumed(sizeRead);
                 }
-                mBytesReceived += sizeRead;
-                Log.d(TAG, "=> Read " + mBytesReceived + " (+" + sizeRead + ")");
-                bytes -= sizeRead;
+            } catch (IOException | InterruptedException | RemoteException e) {
+                Log.e(TAG, "Error draining input", e);
+            } finally {
+                mBufferPool.release(buffer);
             }
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
         }
-    }
 
-    @Override
-    public void finish() {
-        try {
-            mInputStream.close();
-            Log.d(TAG, "Closing stream");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        @Override
+        public void startStream(ParcelFileDescriptor input) {
+            start(input);
+            InputStream inputStream = mInputStream;
+            mStreamThread = new Thread(() -> stream(inputStream), "consumer-stream");
+            mStreamThread.start();
+        }
+
+        /**
+         * Reads continuously until EOF into the same buffer, regardless of notifications. With
+         * an interval reads are scheduled at a fixed rate, read i being due i + 1 intervals after
+         * the start, so time blocked waiting for data is absorbed by the next ones instead of
+         * adding up.
+         */
+        private void stream(InputStream input) {
+            checkState(mBufferSize > 0);
+            checkState(mIntervalMs >= 0);
+
+            if (mStreamBuffer == null || mStreamBuffer.length != mBufferSize) {
+                mStreamBuffer = new byte[mBufferSize];
+            }
+            byte[] buffer = mStreamBuffer;
+            long intervalNanos = MILLISECONDS.toNanos(mIntervalMs);
+            long startNanos = System.nanoTime();
+            long bytes = 0;
+            long wakeups = 0;
+            long stallNanos = 0;
+            try {
+                while (true) {
+                    long waitNanos = startNanos + (wakeups + 1) * intervalNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        NANOSECONDS.sleep(waitNanos);
+                    }
+                    long readNanos = System.nanoTime();
+                    int sizeRead = input.read(buffer, 0, buffer.length);
+                    stallNanos += System.nanoTime() - readNanos;
+                    if (sizeRead < 0) {
+                        break;
+                    }
+                    wakeups++;
+                    bytes += sizeRead;
+                }
+            } catch (IOException | InterruptedException e) {
+                Log.e(TAG, "Error streaming input", e);
+            } finally {
+                mBytesReceived.addAndGet(bytes);
+                mCounters.put("bytes drained", bytes);
+                mCounters.put("wakeups", wakeups);
+                mCounters.put("stall ms", NANOSECONDS.toMillis(stallNanos));
+            }
+        }
+
+        @Override
+        public void startMapped(ParcelFileDescriptor region, int size) {
+            checkState(mBufferSize > 0);
+            try {
+                mRegion =
+                        MappedRegion.openReadOnly(
+                                new ParcelFileDescriptor.AutoCloseInputStream(region).getChannel(),
+                                size);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void onMappedDataReceived(int offset, int length) {
+            checkState(mRegion != null);
+            checkState(mIntervalMs >= 0);
+
+            ByteBuffer buffer = mBufferPool.acquire(mBufferSize);
+            long reads = 0;
+            try {
+                while (length > 0) {
+                    Thread.sleep(mIntervalMs);
+                    int sizeToRead = (length > mBufferSize) ? mBufferSize : length;
+                    mRegion.get(offset, buffer.array(), buffer.arrayOffset(), sizeToRead);
+                    mBytesReceived.addAndGet(sizeToRead);
+                    reads++;
+                    offset += sizeToRead;
+                    length -= sizeToRead;
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                mBufferPool.release(buffer);
+                // Once per notification instead of logging every read
+                mCounters.merge("mapped notifications", 1L, Long::sum);
+                mCounters.merge("mapped reads", reads, Long::sum);
+            }
+        }
+
+        @Override
+        public void onInlineDataReceived(byte[] data) {
+            checkState(mBufferSize > 0);
+            checkState(mIntervalMs >= 0);
+
+            // The data is already here, only the pacing of the reads is kept
+            try {
+                int offset = 0;
+                while (offset < data.length) {
+                    Thread.sleep(mIntervalMs);
+                    int sizeToRead = Math.min(data.length - offset, mBufferSize);
+                    mBytesReceived.addAndGet(sizeToRead);
+                    offset += sizeToRead;
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void onDataReceived(int bytes) {
+            checkState(mBufferSize > 0);
+            checkState(mIntervalMs >= 0);
+
+            if (mStreamThread != null) {
+                mCounters.merge("hints", 1L, Long::sum);
+                return;
+            }
+
+            ByteBuffer buffer = mBufferPool.acquire(mBufferSize);
+            try {
+                Log.d(TAG, "Received " + bytes + " (" + mBytesReceived.get() + " total)");
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset();
+                while (bytes > 0) {
+                    Thread.sleep(mIntervalMs);
+                    int sizeToRead = (bytes > mBufferSize) ? mBufferSize : bytes;
+                    int sizeRead = mInputStream.read(array, offset, sizeToRead);
+                    if (sizeRead < 0) {
+                        throw new EOFException("Unexpected EOF");
+                    }
+                    long bytesReceived = mBytesReceived.addAndGet(sizeRead);
+                    Log.d(TAG, "=> Read " + bytesReceived + " (+" + sizeRead + ")");
+                    bytes -= sizeRead;
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                mBufferPool.release(buffer);
+            }
+        }
+
+        @Override
+        public void finish() {
+            try {
+                if (mDrainThread != null) {
+                    synchronized (mAvailableLock) {
+                        mFinishing = true;
+                        mAvailableLock.notifyAll();
+                    }
+                    mDrainThread.join();
+                    mDrainThread = null;
+                }
+                if (mStreamThread != null) {
+                    mStreamThread.join();
+                    mStreamThread = null;
+                }
+                if (mRegion != null) {
+                    mRegion.close();
+                    mRegion = null;
+                }
+                if (mInputStream != null) {
+                    mInputStream.close();
+                    mInputStream = null;
+                }
+                Log.d(TAG, "Closing stream (pool hits = " + mBufferPool.getHits()
+                        + ", misses = " + mBufferPool.getMisses() + ")");
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> counters = new HashMap<>(mCounters);
+            counters.put("bytes received", mBytesReceived.get());
+            return counters;
         }
     }
 }
@@ -3,7 +3,6 @@ package com.brufino.android.playground;
 public interface MainConstants {
     String PROVIDER_AUTHORITY = "com.brufino.android.playground.fileprovider";
     boolean DEBUG = true;
-    int PIPE_SIZE = 64 * 1024;
 }
 
 
@@ -4,16 +4,38 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
+import androidx.annotation.Nullable;
+import com.brufino.android.common.ProducerService.ProducerMode;
+import com.brufino.android.common.payload.PayloadGenerator;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.playground.components.search.ParameterSearch;
+import com.brufino.android.playground.components.search.ParameterSearch.Result;
+import com.brufino.android.playground.components.search.ParameterSearch.Strategy;
+import com.brufino.android.playground.components.search.SearchSheet;
+import com.brufino.android.playground.components.search.SearchSpace;
+import com.brufino.android.playground.components.search.SearchSpace.Field;
+import com.brufino.android.playground.extensions.concurrent.SpscBufferRing.WaitPolicy;
+import com.brufino.android.playground.extensions.service.ServiceConnectionPool;
 import com.brufino.android.playground.provision.Provisioners;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.TransferManager;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner.BufferMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.ConsumerMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.NotifyPolicy;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import static com.brufino.android.common.CommonConstants.TAG;
 import static com.brufino.android.common.utils.Preconditions.checkArgument;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
+import static java.util.stream.Collectors.toList;
 
 // TODO: If app not open we lose the broadcasts, handle this either here or in bash
 // TODO: Stop/cancel
@@ -21,6 +43,12 @@ public class CommandReceiver extends BroadcastReceiver {
     private static final String ACTION_START_TRANSFER = "com.brufino.android.START_TRANSFER";
     private static final String ACTION_CLEAR_QUEUE = "com.brufino.android.CLEAR_QUEUE";
     private static final String ACTION_CLEAR_HISTORY = "com.brufino.android.CLEAR_HISTORY";
+    private static final String ACTION_SET_SLOTS = "com.brufino.android.SET_SLOTS";
+    private static final String ACTION_START_SEARCH = "com.brufino.android.START_SEARCH";
+    private static final String ACTION_SET_POOLING = "com.brufino.android.SET_POOLING";
+    private static final String ACTION_SET_PREPARE = "com.brufino.android.SET_PREPARE";
+    private static final String ACTION_BENCHMARK_SUBMISSION =
+            "com.brufino.android.BENCHMARK_SUBMISSION";
     private static final String EXTRA_TASK = "task";
     private static final String EXTRA_PRODUCER_DATA = "producer_data";
     private static final String EXTRA_PRODUCER_INTERVAL = "producer_interval";
@@ -28,7 +56,38 @@ public class CommandReceiver extends BroadcastReceiver {
     private static final String EXTRA_TRANSFER_BUFFER = "transfer_buffer";
     private static final String EXTRA_CONSUMER_BUFFER = "consumer_buffer";
     private static final String EXTRA_CONSUMER_INTERVAL = "consumer_interval";
+    private static final String EXTRA_RING_DEPTH = "ring_depth";
+    private static final String EXTRA_RING_WAIT = "ring_wait";
+    private static final String EXTRA_LANES = "lanes";
+    private static final String EXTRA_NOTIFY_POLICY = "notify_policy";
+    private static final String EXTRA_NOTIFY_THRESHOLD = "notify_threshold";
+    private static final String EXTRA_CONSUMER_MODE = "consumer_mode";
+    private static final String EXTRA_MAPPED_REGION = "mapped_region";
+    private static final String EXTRA_TRANSPORT = "transport";
+    private static final String EXTRA_SOCKET_SEND_BUFFER = "socket_send_buffer";
+    private static final String EXTRA_SOCKET_RECEIVE_BUFFER = "socket_receive_buffer";
+    private static final String EXTRA_INLINE_THRESHOLD = "inline_threshold";
+    private static final String EXTRA_BUFFER_MODE = "buffer_mode";
+    private static final String EXTRA_READ_AHEAD = "read_ahead";
+    private static final String EXTRA_PRODUCER_MODE = "producer_mode";
+    private static final String EXTRA_PAYLOAD = "payload";
+    private static final String EXTRA_PAYLOAD_SEED = "payload_seed";
+    private static final String EXTRA_PAYLOAD_COMPRESSIBILITY = "payload_compressibility";
     private static final String EXTRA_REPEAT = "repeat";
+    private static final String EXTRA_SLOTS = "slots";
+    private static final String EXTRA_POOLING = "pooling";
+    private static final String EXTRA_PREPARE = "prepare";
+    private static final String EXTRA_THREADS = "threads";
+    private static final String EXTRA_SUBMISSIONS = "submissions";
+    private static final String EXTRA_ROUNDS = "rounds";
+    private static final String EXTRA_STRATEGY = "strategy";
+    private static final String EXTRA_CANDIDATES = "candidates";
+    private static final int DEFAULT_SEARCH_CANDIDATES = 16;
+    private static final int DEFAULT_SEARCH_REPEAT = 3;
+    private static final int DEFAULT_BENCHMARK_THREADS = 8;
+    private static final int DEFAULT_BENCHMARK_SUBMISSIONS = 10_000;
+    private static final int DEFAULT_BENCHMARK_ROUNDS = 3;
+    private static final int SEARCH_RESULTS_TO_LOG = 5;
 
     private final CommandReceiverProvisioner mProvisioner;
 
@@ -41,11 +100,28 @@ public class CommandReceiver extends BroadcastReceiver {
         TransferManager transferManager = mProvisioner.getTransferManager(context);
         ExecutorService workExecutor = mProvisioner.getWorkExecutor();
         ExecutorService requestExecutor = mProvisioner.getRequestExecutor();
-        execute(() -> onReceiveWork(transferManager, requestExecutor, intent), workExecutor);
+        ParameterSearch search = mProvisioner.getParameterSearch(context);
+        SearchSheet searchSheet = mProvisioner.getSearchSheet();
+        ServiceConnectionPool connectionPool = mProvisioner.getConnectionPool(context);
+        execute(
+                () ->
+                        onReceiveWork(
+                                transferManager,
+                                requestExecutor,
+                                search,
+                                searchSheet,
+                                connectionPool,
+                                intent),
+                workExecutor);
     }
 
     private void onReceiveWork(
-            TransferManager transferManager, Executor requestExecutor, Intent intent)
+            TransferManager transferManager,
+            Executor requestExecutor,
+            ParameterSearch search,
+            SearchSheet searchSheet,
+            ServiceConnectionPool connectionPool,
+            Intent intent)
             throws InterruptedException {
         switch (intent.getAction()) {
             case ACTION_START_TRANSFER:
@@ -57,6 +133,21 @@ public class CommandReceiver extends BroadcastReceiver {
             case ACTION_CLEAR_HISTORY:
                 clearHistory(transferManager, intent);
                 break;
+            case ACTION_SET_SLOTS:
+                setSlots(transferManager, intent);
+                break;
+            case ACTION_START_SEARCH:
+                startSearch(search, searchSheet, intent);
+                break;
+            case ACTION_SET_POOLING:
+                setPooling(connectionPool, intent);
+                break;
+            case ACTION_SET_PREPARE:
+                setPrepare(transferManager, intent);
+                break;
+            case ACTION_BENCHMARK_SUBMISSION:
+                benchmarkSubmission(transferManager, intent);
+                break;
             default:
                 throw new IllegalArgumentException("Can't understand intent " + intent.getAction());
         }
@@ -74,20 +165,188 @@ public class CommandReceiver extends BroadcastReceiver {
                         getRequiredNonNegativeIntExtra(intent, EXTRA_PRODUCER_CHUNK),
                         getRequiredNonNegativeIntExtra(intent, EXTRA_TRANSFER_BUFFER),
                         getRequiredNonNegativeIntExtra(intent, EXTRA_CONSUMER_INTERVAL),
-                        getRequiredNonNegativeIntExtra(intent, EXTRA_CONSUMER_BUFFER));
-         for (int i = 0; i < repeat; i++) {
-             execute(() -> manager.enqueueTransfer(code, configuration), requestExecutor);
-         }
+                        getRequiredNonNegativeIntExtra(intent, EXTRA_CONSUMER_BUFFER),
+                        getNonNegativeIntExtra(
+                                intent, EXTRA_RING_DEPTH, TransferConfiguration.DEFAULT.ringDepth),
+                        toWaitPolicy(intent.getStringExtra(EXTRA_RING_WAIT)),
+                        getNonNegativeIntExtra(
+                                intent, EXTRA_LANES, TransferConfiguration.DEFAULT.lanes),
+                        toNotifyPolicy(intent.getStringExtra(EXTRA_NOTIFY_POLICY)),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_NOTIFY_THRESHOLD,
+                                TransferConfiguration.DEFAULT.notifyThreshold),
+                        toConsumerMode(intent.getStringExtra(EXTRA_CONSUMER_MODE)),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_MAPPED_REGION,
+                                TransferConfiguration.DEFAULT.mappedRegionSize),
+                        toTransport(intent.getStringExtra(EXTRA_TRANSPORT)),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_SOCKET_SEND_BUFFER,
+                                TransferConfiguration.DEFAULT.socketSendBuffer),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_SOCKET_RECEIVE_BUFFER,
+                                TransferConfiguration.DEFAULT.socketReceiveBuffer),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_INLINE_THRESHOLD,
+                                TransferConfiguration.DEFAULT.inlineThreshold),
+                        toBufferMode(intent.getStringExtra(EXTRA_BUFFER_MODE)),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_READ_AHEAD,
+                                TransferConfiguration.DEFAULT.readAhead),
+                        toProducerMode(intent.getStringExtra(EXTRA_PRODUCER_MODE)),
+                        toPayload(intent.getStringExtra(EXTRA_PAYLOAD)),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_PAYLOAD_SEED,
+                                TransferConfiguration.DEFAULT.payloadSeed),
+                        getNonNegativeIntExtra(
+                                intent,
+                                EXTRA_PAYLOAD_COMPRESSIBILITY,
+                                TransferConfiguration.DEFAULT.payloadCompressibility));
+        if (repeat > 0) {
+            execute(() -> manager.enqueueTransfers(code, configuration, repeat), requestExecutor);
+        }
     }
 
-    private void clearQueue(TransferManager manager, Intent intent) throws InterruptedException {
-        manager.clearQueue();
+    private void clearQueue(TransferManager manager, Intent intent) {
+        manager.clearQueue().join();
     }
 
     private void clearHistory(TransferManager manager, Intent intent) {
         manager.clearHistory();
     }
 
+    private void setSlots(TransferManager manager, Intent intent) {
+        manager.setSlots(getRequiredNonNegativeIntExtra(intent, EXTRA_SLOTS));
+    }
+
+    private void setPooling(ServiceConnectionPool pool, Intent intent) {
+        checkArgument(intent.hasExtra(EXTRA_POOLING), "Missing " + EXTRA_POOLING);
+        pool.setEnabled(intent.getBooleanExtra(EXTRA_POOLING, true));
+    }
+
+    private void setPrepare(TransferManager manager, Intent intent) {
+        checkArgument(intent.hasExtra(EXTRA_PREPARE), "Missing " + EXTRA_PREPARE);
+        manager.setPrepareEnabled(intent.getBooleanExtra(EXTRA_PREPARE, true));
+    }
+
+    /**
+     * Blocks until the benchmark is done, results are logged. Clears the queue and cancels
+     * transfers, see {@link SubmissionBenchmark}.
+     */
+    private void benchmarkSubmission(TransferManager manager, Intent intent)
+            throws InterruptedException {
+        int threads = getNonNegativeIntExtra(intent, EXTRA_THREADS, DEFAULT_BENCHMARK_THREADS);
+        int submissions =
+                getNonNegativeIntExtra(intent, EXTRA_SUBMISSIONS, DEFAULT_BENCHMARK_SUBMISSIONS);
+        int rounds = getNonNegativeIntExtra(intent, EXTRA_ROUNDS, DEFAULT_BENCHMARK_ROUNDS);
+        int code =
+                intent.hasExtra(EXTRA_TASK)
+                        ? toTaskCode(intent.getStringExtra(EXTRA_TASK))
+                        : TransferManager.Code.SINGLE_THREAD;
+        SubmissionBenchmark benchmark = new SubmissionBenchmark(manager, code);
+        try {
+            for (String result : benchmark.run(threads, submissions, rounds)) {
+                Log.i(TAG, "Submission " + result);
+            }
+        } catch (TimeoutException e) {
+            Log.e(TAG, "Benchmark didn't finish", e);
+        }
+    }
+
+    /**
+     * Each {@link TransferConfiguration} extra of {@link #ACTION_START_TRANSFER} can be passed as a
+     * string with comma-separated values to try, fields not passed keep their defaults. Blocks
+     * until the search is done.
+     */
+    private void startSearch(ParameterSearch search, SearchSheet sheet, Intent intent)
+            throws InterruptedException {
+        int code = toTaskCode(intent.getStringExtra(EXTRA_TASK));
+        int strategy = toStrategy(intent.getStringExtra(EXTRA_STRATEGY));
+        int candidates =
+                getNonNegativeIntExtra(intent, EXTRA_CANDIDATES, DEFAULT_SEARCH_CANDIDATES);
+        int repeat = getNonNegativeIntExtra(intent, EXTRA_REPEAT, DEFAULT_SEARCH_REPEAT);
+        SearchSpace space = new SearchSpace();
+        putValues(space, Field.PRODUCER_DATA_SIZE, intent, EXTRA_PRODUCER_DATA, this::toInt);
+        putValues(space, Field.PRODUCER_INTERVAL, intent, EXTRA_PRODUCER_INTERVAL, this::toInt);
+        putValues(space, Field.PRODUCER_CHUNK_SIZE, intent, EXTRA_PRODUCER_CHUNK, this::toInt);
+        putValues(space, Field.TRANSFER_BUFFER_SIZE, intent, EXTRA_TRANSFER_BUFFER, this::toInt);
+        putValues(space, Field.CONSUMER_INTERVAL, intent, EXTRA_CONSUMER_INTERVAL, this::toInt);
+        putValues(space, Field.CONSUMER_BUFFER_SIZE, intent, EXTRA_CONSUMER_BUFFER, this::toInt);
+        putValues(space, Field.RING_DEPTH, intent, EXTRA_RING_DEPTH, this::toInt);
+        putValues(space, Field.RING_WAIT_POLICY, intent, EXTRA_RING_WAIT, this::toWaitPolicy);
+        putValues(space, Field.LANES, intent, EXTRA_LANES, this::toInt);
+        putValues(space, Field.NOTIFY_POLICY, intent, EXTRA_NOTIFY_POLICY, this::toNotifyPolicy);
+        putValues(space, Field.NOTIFY_THRESHOLD, intent, EXTRA_NOTIFY_THRESHOLD, this::toInt);
+        putValues(space, Field.CONSUMER_MODE, intent, EXTRA_CONSUMER_MODE, this::toConsumerMode);
+        putValues(space, Field.MAPPED_REGION_SIZE, intent, EXTRA_MAPPED_REGION, this::toInt);
+        putValues(space, Field.TRANSPORT, intent, EXTRA_TRANSPORT, this::toTransport);
+        putValues(space, Field.SOCKET_SEND_BUFFER, intent, EXTRA_SOCKET_SEND_BUFFER, this::toInt);
+        putValues(
+                space,
+                Field.SOCKET_RECEIVE_BUFFER,
+                intent,
+                EXTRA_SOCKET_RECEIVE_BUFFER,
+                this::toInt);
+        putValues(space, Field.INLINE_THRESHOLD, intent, EXTRA_INLINE_THRESHOLD, this::toInt);
+        putValues(space, Field.BUFFER_MODE, intent, EXTRA_BUFFER_MODE, this::toBufferMode);
+        putValues(space, Field.READ_AHEAD, intent, EXTRA_READ_AHEAD, this::toInt);
+        putValues(space, Field.PRODUCER_MODE, intent, EXTRA_PRODUCER_MODE, this::toProducerMode);
+        putValues(space, Field.PAYLOAD, intent, EXTRA_PAYLOAD, this::toPayload);
+        putValues(space, Field.PAYLOAD_SEED, intent, EXTRA_PAYLOAD_SEED, this::toInt);
+        putValues(
+                space,
+                Field.PAYLOAD_COMPRESSIBILITY,
+                intent,
+                EXTRA_PAYLOAD_COMPRESSIBILITY,
+                this::toInt);
+
+        List<Result> results;
+        try {
+            results = search.run(code, space, strategy, candidates, repeat);
+        } catch (TimeoutException e) {
+            Log.e(TAG, "Search didn't finish", e);
+            return;
+        }
+        for (int i = 0; i < Math.min(results.size(), SEARCH_RESULTS_TO_LOG); i++) {
+            Result result = results.get(i);
+            Log.i(TAG, "Search #" + (i + 1) + ": " + result.summary + " " + result.configuration);
+        }
+        try {
+            Path file = sheet.save(results);
+            Log.i(TAG, "Search results saved to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't save search results", e);
+        }
+    }
+
+    private void putValues(
+            SearchSpace space,
+            @Field int field,
+            Intent intent,
+            String extra,
+            Function<String, Integer> parser) {
+        String values = intent.getStringExtra(extra);
+        if (values == null) {
+            return;
+        }
+        space.put(
+                field,
+                Arrays.stream(values.split(",")).map(String::trim).map(parser).collect(toList()));
+    }
+
+    private int toInt(String value) {
+        int result = Integer.parseInt(value);
+        checkArgument(result >= 0, "Invalid value " + result);
+        return result;
+    }
+
     private int getRequiredNonNegativeIntExtra(Intent intent, String extra) {
         return getNonNegativeIntExtra(intent, extra, -1);
     }
@@ -107,6 +366,152 @@ public class CommandReceiver extends BroadcastReceiver {
         if (task.contains("multi")) {
             return TransferManager.Code.MULTI_THREAD;
         }
+        if (task.contains("channel")) {
+            return TransferManager.Code.CHANNEL;
+        }
+        if (task.contains("ring")) {
+            return TransferManager.Code.RING;
+        }
+        if (task.contains("stripe")) {
+            return TransferManager.Code.STRIPED;
+        }
+        if (task.contains("mapped")) {
+            return TransferManager.Code.MAPPED;
+        }
         throw new IllegalArgumentException("Unknown task " + task);
     }
+
+    @Strategy
+    private int toStrategy(@Nullable String strategy) {
+        if (strategy == null) {
+            return Strategy.HALVING;
+        }
+        switch (strategy.toLowerCase()) {
+            case "grid":
+                return Strategy.GRID;
+            case "random":
+                return Strategy.RANDOM;
+            case "halving":
+                return Strategy.HALVING;
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+    }
+
+    @WaitPolicy
+    private int toWaitPolicy(@Nullable String waitPolicy) {
+        if (waitPolicy == null) {
+            return TransferConfiguration.DEFAULT.ringWaitPolicy;
+        }
+        waitPolicy = waitPolicy.toLowerCase();
+        if (waitPolicy.contains("block")) {
+            return WaitPolicy.BLOCKING;
+        }
+        if (waitPolicy.contains("spin")) {
+            return WaitPolicy.SPINNING;
+        }
+        throw new IllegalArgumentException("Unknown wait policy " + waitPolicy);
+    }
+
+    @NotifyPolicy
+    private int toNotifyPolicy(@Nullable String notifyPolicy) {
+        if (notifyPolicy == null) {
+            return TransferConfiguration.DEFAULT.notifyPolicy;
+        }
+        switch (notifyPolicy.toLowerCase()) {
+            case "immediate":
+                return NotifyPolicy.IMMEDIATE;
+            case "bytes":
+                return NotifyPolicy.BYTES;
+            case "count":
+                return NotifyPolicy.COUNT;
+            case "time":
+                return NotifyPolicy.TIME;
+            default:
+                throw new IllegalArgumentException("Unknown notify policy " + notifyPolicy);
+        }
+    }
+
+    @ConsumerMode
+    private int toConsumerMode(@Nullable String consumerMode) {
+        if (consumerMode == null) {
+            return TransferConfiguration.DEFAULT.consumerMode;
+        }
+        switch (consumerMode.toLowerCase()) {
+            case "sync":
+                return ConsumerMode.SYNC;
+            case "async":
+                return ConsumerMode.ASYNC;
+            case "stream":
+                return ConsumerMode.STREAM;
+            default:
+                throw new IllegalArgumentException("Unknown consumer mode " + consumerMode);
+        }
+    }
+
+    @BufferMode
+    private int toBufferMode(@Nullable String bufferMode) {
+        if (bufferMode == null) {
+            return TransferConfiguration.DEFAULT.bufferMode;
+        }
+        switch (bufferMode.toLowerCase()) {
+            case "fixed":
+                return BufferMode.FIXED;
+            case "adaptive":
+                return BufferMode.ADAPTIVE;
+            default:
+                throw new IllegalArgumentException("Unknown buffer mode " + bufferMode);
+        }
+    }
+
+    @ProducerMode
+    private int toProducerMode(@Nullable String producerMode) {
+        if (producerMode == null) {
+            return TransferConfiguration.DEFAULT.producerMode;
+        }
+        switch (producerMode.toLowerCase()) {
+            case "simple":
+                return ProducerMode.SIMPLE;
+            case "paced":
+                return ProducerMode.PACED;
+            case "unpaced":
+                return ProducerMode.UNPACED;
+            default:
+                throw new IllegalArgumentException("Unknown producer mode " + producerMode);
+        }
+    }
+
+    @PayloadGenerator.Type
+    private int toPayload(@Nullable String payload) {
+        if (payload == null) {
+            return TransferConfiguration.DEFAULT.payload;
+        }
+        switch (payload.toLowerCase()) {
+            case "zeros":
+                return PayloadGenerator.Type.ZEROS;
+            case "random":
+                return PayloadGenerator.Type.RANDOM;
+            case "text":
+                return PayloadGenerator.Type.TEXT;
+            case "compressible":
+                return PayloadGenerator.Type.COMPRESSIBLE;
+            default:
+                throw new IllegalArgumentException("Unknown payload " + payload);
+        }
+    }
+
+    @Transport.Type
+    private int toTransport(@Nullable String transport) {
+        if (transport == null) {
+            return TransferConfiguration.DEFAULT.transport;
+        }
+        switch (transport.toLowerCase()) {
+            case "pipe":
+                return Transport.Type.PIPE;
+            case "socket":
+                return Transport.Type.SOCKET;
+            default:
+                throw new IllegalArgumentException("Unknown transport " + transport);
+        }
+    }
 }
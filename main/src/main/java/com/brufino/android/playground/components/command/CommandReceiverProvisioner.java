@@ -1,6 +1,9 @@
 package com.brufino.android.playground.components.command;
 
 import android.content.Context;
+import com.brufino.android.playground.components.search.ParameterSearch;
+import com.brufino.android.playground.components.search.SearchSheet;
+import com.brufino.android.playground.extensions.service.ServiceConnectionPool;
 import com.brufino.android.playground.transfer.TransferManager;
 
 import java.util.concurrent.ExecutorService;
@@ -9,4 +12,7 @@ public interface CommandReceiverProvisioner {
     TransferManager getTransferManager(Context context);
     ExecutorService getWorkExecutor();
     ExecutorService getRequestExecutor();
+    ParameterSearch getParameterSearch(Context context);
+    SearchSheet getSearchSheet();
+    ServiceConnectionPool getConnectionPool(Context context);
 }
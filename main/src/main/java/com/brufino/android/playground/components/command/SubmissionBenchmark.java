@@ -0,0 +1,144 @@
+package com.brufino.android.playground.components.command;
+
+import com.brufino.android.playground.transfer.NoTransferRunningException;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.TransferManager;
+import com.brufino.android.playground.transfer.TransferManager.Code;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Latency of {@link TransferManager#enqueueTransfer(int, TransferConfiguration)} called from
+ * concurrent threads, the path real requests take.
+ *
+ * Cold rounds start with the service stopped, so the first submissions go through start-service
+ * while the service is created and published, and the following ones are handed over to it.
+ * Between rounds the queue is cleared and transfers cancelled until the service is destroyed. The
+ * warm round submits to a service already running.
+ *
+ * Transfers do start while submitting, so the default configuration is used, which is small.
+ */
+class SubmissionBenchmark {
+    private static final long TIMEOUT_MS = 60_000;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final TransferManager mTransferManager;
+    @Code private final int mCode;
+
+    SubmissionBenchmark(TransferManager transferManager, @Code int code) {
+        mTransferManager = transferManager;
+        mCode = code;
+    }
+
+    /** Blocks until all rounds ran, returns one line for the cold rounds and one for the warm. */
+    List<String> run(int threads, int submissions, int rounds)
+            throws InterruptedException, TimeoutException {
+        checkArgument(threads > 0 && submissions > 0, "Nothing to submit");
+        checkArgument(rounds > 0, "No rounds");
+        int perRound = threads * submissions;
+        long[] cold = new long[rounds * perRound];
+        for (int round = 0; round < rounds; round++) {
+            stopService();
+            long[] latencies = submitConcurrently(threads, submissions);
+            System.arraycopy(latencies, 0, cold, round * perRound, perRound);
+        }
+        stopService();
+        startService();
+        long[] warm = submitConcurrently(threads, submissions);
+        stopService();
+        return Arrays.asList(
+                summarize("cold", threads, submissions, cold),
+                summarize("warm", threads, submissions, warm));
+    }
+
+    private void startService() throws InterruptedException, TimeoutException {
+        mTransferManager.enqueueTransfer(mCode, TransferConfiguration.DEFAULT);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!mTransferManager.isServiceRunning()) {
+            checkDeadline(deadline, "Service didn't start");
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Requests sent through start-service can still arrive after clearing the queue, or even
+     * start the service again, so it keeps clearing until the service is gone.
+     */
+    private void stopService() throws InterruptedException, TimeoutException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mTransferManager.isServiceRunning()) {
+            checkDeadline(deadline, "Service didn't stop");
+            mTransferManager.clearQueue().join();
+            try {
+                mTransferManager.cancel();
+            } catch (NoTransferRunningException e) {
+                // Nothing running
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    /** Returns the latency of each submission, in nanoseconds. */
+    private long[] submitConcurrently(int threads, int submissions) throws InterruptedException {
+        long[] latencies = new long[threads * submissions];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] submitters = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int offset = i * submissions;
+            submitters[i] =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                } catch (InterruptedException e) {
+                                    return;
+                                }
+                                for (int j = 0; j < submissions; j++) {
+                                    long startTime = System.nanoTime();
+                                    mTransferManager.enqueueTransfer(
+                                            mCode, TransferConfiguration.DEFAULT);
+                                    latencies[offset + j] = System.nanoTime() - startTime;
+                                }
+                            },
+                            "submitter-" + i);
+            submitters[i].start();
+        }
+        start.countDown();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        return latencies;
+    }
+
+    private static void checkDeadline(long deadline, String message) throws TimeoutException {
+        if (System.currentTimeMillis() > deadline) {
+            throw new TimeoutException(message);
+        }
+    }
+
+    private static String summarize(String name, int threads, int submissions, long[] latencies) {
+        Arrays.sort(latencies);
+        return String.format(
+                Locale.US,
+                "%s, %d threads x %d, %d total: p50 %.1f us, p99 %.1f us, max %.1f us",
+                name,
+                threads,
+                submissions,
+                latencies.length,
+                getPercentile(latencies, 0.5) / 1000.0,
+                getPercentile(latencies, 0.99) / 1000.0,
+                latencies[latencies.length - 1] / 1000.0);
+    }
+
+    /** Of sorted {@code values}. */
+    private static long getPercentile(long[] values, double percentile) {
+        int index = (int) Math.ceil(percentile * values.length) - 1;
+        return values[Math.max(0, index)];
+    }
+}
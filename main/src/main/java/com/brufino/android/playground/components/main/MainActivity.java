@@ -159,7 +159,7 @@ public class MainActivity extends AppCompatActivity
         }
 
         public void clearQueue() {
-            execute(mTransferManager::clearQueue, mWorkExecutor);
+            mTransferManager.clearQueue();
         }
 
         public void clearHistory() {
@@ -8,13 +8,14 @@ import com.brufino.android.playground.extensions.livedata.LiveDataPersister;
 import com.brufino.android.playground.extensions.livedata.LiveDataPersisterFactory;
 import com.brufino.android.playground.extensions.livedata.LiveDataUtils;
 import com.brufino.android.playground.extensions.livedata.transform.Transform;
+import com.brufino.android.playground.transfer.QueueSnapshot;
 import com.brufino.android.playground.transfer.TransferManager;
 import com.brufino.android.playground.transfer.TransferManager.Code;
-import com.brufino.android.playground.transfer.TransferRequest;
 import com.brufino.android.playground.transfer.task.TaskInformation;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -35,6 +36,7 @@ public class MainViewModel extends AndroidViewModel {
     public final LiveData<String> queueStatus;
     public final LiveData<String> transferStatus;
     public final LiveData<String> serviceStatus;
+    public final LiveData<String> gapStatus;
     public final MutableLiveData<Integer> currentTab;
     public final LiveData<Boolean> loadingSheet;
     public final LiveData<String> sheetButton;
@@ -65,6 +67,15 @@ public class MainViewModel extends AndroidViewModel {
                                 this::getServiceStatus,
                                 workExecutor)
                         .getLiveData();
+        gapStatus =
+                Transform.source(transferManager.getLiveTaskGap())
+                        .accumulateLast(THROUGHPUT_AVERAGE_ELEMENTS)
+                        .map(this::getMovingAverage, workExecutor)
+                        .combine(
+                                transferManager.getLiveTaskGap(),
+                                this::getGapStatus,
+                                workExecutor)
+                        .getLiveData();
         queueStatus =
                 Transform.source(transferManager.getLiveQueue())
                         .map(this::getQueueStatus, workExecutor)
@@ -112,25 +123,42 @@ public class MainViewModel extends AndroidViewModel {
         return elements.stream().mapToDouble(Double::doubleValue).average().orElse(0);
     }
 
-    private String getQueueStatus(List<TransferRequest> queue) {
-        int size = queue.size();
-        String prefix = String.format(Locale.US, "Queue (%s): ", size);
+    /** Only looks at the head of the queue and the counts, however long the queue is. */
+    private String getQueueStatus(QueueSnapshot queue) {
+        String prefix = String.format(Locale.US, "Queue (%s): ", queue.size);
         String summary =
-                queue
+                queue.head
                         .stream()
                         .limit(QUEUE_STATUS_LIMIT)
                         .map(request -> codeToString(request.code))
                         .collect(joining(", "));
-        String suffix = (size > QUEUE_STATUS_LIMIT) ? "..." : "";
+        String suffix = (queue.size > QUEUE_STATUS_LIMIT) ? "... " + getCounts(queue) : "";
         return prefix + summary + suffix;
     }
 
+    private static String getCounts(QueueSnapshot queue) {
+        return queue.counts
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> codeToString(entry.getKey()) + " " + entry.getValue())
+                .collect(joining(", ", "[", "]"));
+    }
+
     private static String codeToString(@Code int code) {
         switch (code) {
             case Code.SINGLE_THREAD:
                 return "S";
             case Code.MULTI_THREAD:
                 return "M";
+            case Code.CHANNEL:
+                return "C";
+            case Code.RING:
+                return "R";
+            case Code.STRIPED:
+                return "L";
+            case Code.MAPPED:
+                return "F";
             default:
                 throw new IllegalArgumentException("Unknown code " + code);
         }
@@ -146,6 +174,15 @@ public class MainViewModel extends AndroidViewModel {
                 averageThroughput);
     }
 
+    private String getGapStatus(double averageGap, double gap) {
+        return String.format(
+                Locale.US,
+                "Gap: %.1f ms, last %d avg: %.1f ms",
+                gap,
+                THROUGHPUT_AVERAGE_ELEMENTS,
+                averageGap);
+    }
+
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private String getTransferStatus(
             Optional<TaskInformation> taskInformationOptional) {
@@ -1,9 +1,12 @@
 package com.brufino.android.playground.components.main;
 
 import android.content.Context;
+import com.brufino.android.common.payload.PayloadGenerator;
+import com.brufino.android.common.transport.Transport;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.components.main.TaskStatisticsUtils.Parameters;
 import com.brufino.android.playground.extensions.AndroidUtils;
+import com.brufino.android.playground.transfer.TransferConfiguration;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -22,6 +25,26 @@ public class TaskSheet {
                     + "Transfer buffer size (B), "
                     + "Consumer interval (ms),"
                     + "Consumer buffer size (B),"
+                    + "Ring depth,"
+                    + "Ring wait policy,"
+                    + "Lanes,"
+                    + "Notify policy,"
+                    + "Notify threshold,"
+                    + "Consumer mode,"
+                    + "Mapped region size (B),"
+                    + "Transport,"
+                    + "Socket send buffer (B),"
+                    + "Socket receive buffer (B),"
+                    + "Effective socket send buffer (B),"
+                    + "Effective socket receive buffer (B),"
+                    + "Inline threshold (B),"
+                    + "Buffer mode,"
+                    + "Read-ahead buffers,"
+                    + "Producer mode,"
+                    + "Payload,"
+                    + "Payload seed,"
+                    + "Payload compressibility (%),"
+                    + "Concurrency,"
                     + "Time (ms)";
 
     private final Context mContext;
@@ -48,13 +71,34 @@ public class TaskSheet {
         double result = results.getValue();
         return String.format(
                 Locale.US,
-                "%d,%d,%d,%d,%d,%d,%.4f",
+                "%d,%d,%d,%d,%d,%d,%d,%s,%d,%s,%d,%s,%d,%s,%d,%d,%d,%d,%d,%s,%d,%s,"
+                        + "%s,%d,%d,%d,%.4f",
                 parameters.producerDataSize,
                 parameters.producerInterval,
                 parameters.producerChunkSize,
                 parameters.transferBufferSize,
                 parameters.consumerInterval,
                 parameters.consumerBufferSize,
+                parameters.ringDepth,
+                TransferConfiguration.waitPolicyToString(parameters.ringWaitPolicy),
+                parameters.lanes,
+                TransferConfiguration.notifyPolicyToString(parameters.notifyPolicy),
+                parameters.notifyThreshold,
+                TransferConfiguration.consumerModeToString(parameters.consumerMode),
+                parameters.mappedRegionSize,
+                Transport.typeToString(parameters.transport),
+                parameters.socketSendBuffer,
+                parameters.socketReceiveBuffer,
+                parameters.effectiveSocketSendBuffer,
+                parameters.effectiveSocketReceiveBuffer,
+                parameters.inlineThreshold,
+                TransferConfiguration.bufferModeToString(parameters.bufferMode),
+                parameters.readAhead,
+                TransferConfiguration.producerModeToString(parameters.producerMode),
+                PayloadGenerator.typeToString(parameters.payload),
+                parameters.payloadSeed,
+                parameters.payloadCompressibility,
+                parameters.concurrency,
                 result);
     }
 
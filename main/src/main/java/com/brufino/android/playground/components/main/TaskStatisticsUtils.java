@@ -1,9 +1,18 @@
 package com.brufino.android.playground.components.main;
 
+import com.brufino.android.common.ProducerService.ProducerMode;
+import com.brufino.android.common.payload.PayloadGenerator;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.playground.extensions.concurrent.SpscBufferRing.WaitPolicy;
 import com.brufino.android.playground.transfer.task.TaskEntry;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner.BufferMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.ConsumerMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.NotifyPolicy;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.Objects;
 
@@ -28,6 +37,26 @@ public class TaskStatisticsUtils {
                 .collect(toOrderedMap());
     }
 
+    /** Of the durations of the successful entries, failures are only counted. */
+    public static Summary summarize(List<TaskEntry> entries) {
+        LongSummaryStatistics durations = new LongSummaryStatistics();
+        for (TaskEntry entry : entries) {
+            if (entry.succeeded()) {
+                durations.accept(entry.duration);
+            }
+        }
+        double mean = durations.getAverage();
+        double squares = 0;
+        for (TaskEntry entry : entries) {
+            if (entry.succeeded()) {
+                squares += (entry.duration - mean) * (entry.duration - mean);
+            }
+        }
+        int count = (int) durations.getCount();
+        double standardDeviation = (count > 1) ? Math.sqrt(squares / (count - 1)) : 0;
+        return new Summary(count, entries.size() - count, mean, standardDeviation);
+    }
+
     private static Parameters getParameters(TaskEntry taskEntry) {
         TransferConfiguration configuration = taskEntry.configuration;
         return new Parameters(
@@ -37,11 +66,80 @@ public class TaskStatisticsUtils {
                 configuration.producerChunkSize,
                 configuration.transferBufferSize,
                 configuration.consumerInterval,
-                configuration.consumerBufferSize);
+                configuration.consumerBufferSize,
+                configuration.ringDepth,
+                configuration.ringWaitPolicy,
+                configuration.lanes,
+                configuration.notifyPolicy,
+                configuration.notifyThreshold,
+                configuration.consumerMode,
+                configuration.mappedRegionSize,
+                configuration.transport,
+                configuration.socketSendBuffer,
+                configuration.socketReceiveBuffer,
+                configuration.inlineThreshold,
+                configuration.bufferMode,
+                configuration.readAhead,
+                configuration.producerMode,
+                configuration.payload,
+                configuration.payloadSeed,
+                configuration.payloadCompressibility,
+                taskEntry.socketSendBuffer,
+                taskEntry.socketReceiveBuffer,
+                taskEntry.concurrency);
     }
 
     private TaskStatisticsUtils() {}
 
+    public static class Summary {
+        /** Two-sided 95% quantiles of the t-distribution, index is degrees of freedom - 1. */
+        private static final double[] T_95 = {
+                12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+                2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+                2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+        };
+        /** Normal approximation for more samples. */
+        private static final double Z_95 = 1.960;
+
+        /** Successful entries. */
+        public final int count;
+        public final int failures;
+        /** In ms, 0 if there are no successful entries. */
+        public final double mean;
+        /** Sample standard deviation in ms. */
+        public final double standardDeviation;
+
+        private Summary(int count, int failures, double mean, double standardDeviation) {
+            this.count = count;
+            this.failures = failures;
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+        }
+
+        /**
+         * Half-width of the 95% confidence interval of the mean in ms, assuming durations are
+         * normally distributed. Infinite with less than 2 successful entries.
+         */
+        public double getConfidenceInterval() {
+            if (count < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double t = (count - 1 <= T_95.length) ? T_95[count - 2] : Z_95;
+            return t * standardDeviation / Math.sqrt(count);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.US,
+                    "%.1f +/- %.1f ms (n = %d, failures = %d)",
+                    mean,
+                    getConfidenceInterval(),
+                    count,
+                    failures);
+        }
+    }
+
     public static class Parameters {
         public final String taskName;
         public final int producerDataSize;
@@ -50,6 +148,27 @@ public class TaskStatisticsUtils {
         public final int transferBufferSize;
         public final int consumerInterval;
         public final int consumerBufferSize;
+        public final int ringDepth;
+        @WaitPolicy public final int ringWaitPolicy;
+        public final int lanes;
+        @NotifyPolicy public final int notifyPolicy;
+        public final int notifyThreshold;
+        @ConsumerMode public final int consumerMode;
+        public final int mappedRegionSize;
+        @Transport.Type public final int transport;
+        public final int socketSendBuffer;
+        public final int socketReceiveBuffer;
+        public final int inlineThreshold;
+        @BufferMode public final int bufferMode;
+        public final int readAhead;
+        @ProducerMode public final int producerMode;
+        @PayloadGenerator.Type public final int payload;
+        public final int payloadSeed;
+        public final int payloadCompressibility;
+        /** As reported by the kernel, the same configuration should always give the same. */
+        public final int effectiveSocketSendBuffer;
+        public final int effectiveSocketReceiveBuffer;
+        public final int concurrency;
 
         private Parameters(
                 String taskName,
@@ -58,7 +177,27 @@ public class TaskStatisticsUtils {
                 int producerChunkSize,
                 int transferBufferSize,
                 int consumerInterval,
-                int consumerBufferSize) {
+                int consumerBufferSize,
+                int ringDepth,
+                @WaitPolicy int ringWaitPolicy,
+                int lanes,
+                @NotifyPolicy int notifyPolicy,
+                int notifyThreshold,
+                @ConsumerMode int consumerMode,
+                int mappedRegionSize,
+                @Transport.Type int transport,
+                int socketSendBuffer,
+                int socketReceiveBuffer,
+                int inlineThreshold,
+                @BufferMode int bufferMode,
+                int readAhead,
+                @ProducerMode int producerMode,
+                @PayloadGenerator.Type int payload,
+                int payloadSeed,
+                int payloadCompressibility,
+                int effectiveSocketSendBuffer,
+                int effectiveSocketReceiveBuffer,
+                int concurrency) {
             this.taskName = taskName;
             this.producerDataSize = producerDataSize;
             this.producerInterval = producerInterval;
@@ -66,6 +205,26 @@ public class TaskStatisticsUtils {
             this.transferBufferSize = transferBufferSize;
             this.consumerInterval = consumerInterval;
             this.consumerBufferSize = consumerBufferSize;
+            this.ringDepth = ringDepth;
+            this.ringWaitPolicy = ringWaitPolicy;
+            this.lanes = lanes;
+            this.notifyPolicy = notifyPolicy;
+            this.notifyThreshold = notifyThreshold;
+            this.consumerMode = consumerMode;
+            this.mappedRegionSize = mappedRegionSize;
+            this.transport = transport;
+            this.socketSendBuffer = socketSendBuffer;
+            this.socketReceiveBuffer = socketReceiveBuffer;
+            this.inlineThreshold = inlineThreshold;
+            this.bufferMode = bufferMode;
+            this.readAhead = readAhead;
+            this.producerMode = producerMode;
+            this.payload = payload;
+            this.payloadSeed = payloadSeed;
+            this.payloadCompressibility = payloadCompressibility;
+            this.effectiveSocketSendBuffer = effectiveSocketSendBuffer;
+            this.effectiveSocketReceiveBuffer = effectiveSocketReceiveBuffer;
+            this.concurrency = concurrency;
         }
 
         @Override
@@ -83,6 +242,26 @@ public class TaskStatisticsUtils {
                     && transferBufferSize == that.transferBufferSize
                     && consumerInterval == that.consumerInterval
                     && consumerBufferSize == that.consumerBufferSize
+                    && ringDepth == that.ringDepth
+                    && ringWaitPolicy == that.ringWaitPolicy
+                    && lanes == that.lanes
+                    && notifyPolicy == that.notifyPolicy
+                    && notifyThreshold == that.notifyThreshold
+                    && consumerMode == that.consumerMode
+                    && mappedRegionSize == that.mappedRegionSize
+                    && transport == that.transport
+                    && socketSendBuffer == that.socketSendBuffer
+                    && socketReceiveBuffer == that.socketReceiveBuffer
+                    && inlineThreshold == that.inlineThreshold
+                    && bufferMode == that.bufferMode
+                    && readAhead == that.readAhead
+                    && producerMode == that.producerMode
+                    && payload == that.payload
+                    && payloadSeed == that.payloadSeed
+                    && payloadCompressibility == that.payloadCompressibility
+                    && effectiveSocketSendBuffer == that.effectiveSocketSendBuffer
+                    && effectiveSocketReceiveBuffer == that.effectiveSocketReceiveBuffer
+                    && concurrency == that.concurrency
                     && Objects.equals(taskName, that.taskName);
         }
 
@@ -95,7 +274,27 @@ public class TaskStatisticsUtils {
                     producerChunkSize,
                     transferBufferSize,
                     consumerInterval,
-                    consumerBufferSize);
+                    consumerBufferSize,
+                    ringDepth,
+                    ringWaitPolicy,
+                    lanes,
+                    notifyPolicy,
+                    notifyThreshold,
+                    consumerMode,
+                    mappedRegionSize,
+                    transport,
+                    socketSendBuffer,
+                    socketReceiveBuffer,
+                    inlineThreshold,
+                    bufferMode,
+                    readAhead,
+                    producerMode,
+                    payload,
+                    payloadSeed,
+                    payloadCompressibility,
+                    effectiveSocketSendBuffer,
+                    effectiveSocketReceiveBuffer,
+                    concurrency);
         }
     }
 }
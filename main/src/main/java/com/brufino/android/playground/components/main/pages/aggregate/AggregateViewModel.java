@@ -7,6 +7,8 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.brufino.android.common.payload.PayloadGenerator;
+import com.brufino.android.common.transport.Transport;
 import com.brufino.android.playground.components.main.MainActivity;
 import com.brufino.android.playground.components.main.TaskStatisticsUtils;
 import com.brufino.android.playground.components.main.TaskStatisticsUtils.Parameters;
@@ -14,6 +16,7 @@ import com.brufino.android.playground.databinding.TableCell;
 import com.brufino.android.playground.extensions.livedata.LiveDataPersister;
 import com.brufino.android.playground.extensions.livedata.LiveDataPersisterFactory;
 import com.brufino.android.playground.extensions.livedata.transform.Transform;
+import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.TransferManager;
 import com.brufino.android.playground.transfer.task.TaskEntry;
 
@@ -29,7 +32,9 @@ import static java.util.function.Function.identity;
 public class AggregateViewModel extends AndroidViewModel {
     private static final String PREFERENCE_ROW_MASK = "row_mask";
     private static final String[] HEADER = {
-            "\n", "Pd\nKB", "Pi\nms", "Pc\nKB", "Tb\nKB", "Ci\nms", "Cb\nKB", "T\nms"
+            "\n", "Pd\nKB", "Pi\nms", "Pc\nKB", "Tb\nKB", "Ci\nms", "Cb\nKB", "Rd\n", "Rw\n",
+            "L\n", "Np\n", "Nt\n", "Cm\n", "Mr\nKB", "Tr\n", "Ss\nKB", "Sr\nKB", "Es\nKB",
+            "Er\nKB", "It\nKB", "Bm\n", "Ra\n", "Pm\n", "Pl\n", "Sd\n", "Cp\n%", "Cc\n", "T\nms"
     };
     private static final int COLUMNS = HEADER.length;
 
@@ -74,6 +79,38 @@ public class AggregateViewModel extends AndroidViewModel {
                                             String.format(Locale.US, "%d",
                                                     parameters.consumerInterval),
                                             sizeString(parameters.consumerBufferSize),
+                                            String.format(Locale.US, "%d",
+                                                    parameters.ringDepth),
+                                            TransferConfiguration.waitPolicyToString(
+                                                    parameters.ringWaitPolicy).substring(0, 1),
+                                            String.format(Locale.US, "%d", parameters.lanes),
+                                            TransferConfiguration.notifyPolicyToString(
+                                                    parameters.notifyPolicy).substring(0, 1),
+                                            String.format(Locale.US, "%d",
+                                                    parameters.notifyThreshold),
+                                            TransferConfiguration.consumerModeToString(
+                                                    parameters.consumerMode).substring(0, 2),
+                                            sizeString(parameters.mappedRegionSize),
+                                            Transport.typeToString(
+                                                    parameters.transport).substring(0, 1),
+                                            sizeString(parameters.socketSendBuffer),
+                                            sizeString(parameters.socketReceiveBuffer),
+                                            sizeString(parameters.effectiveSocketSendBuffer),
+                                            sizeString(parameters.effectiveSocketReceiveBuffer),
+                                            sizeString(parameters.inlineThreshold),
+                                            TransferConfiguration.bufferModeToString(
+                                                    parameters.bufferMode).substring(0, 1),
+                                            String.format(Locale.US, "%d", parameters.readAhead),
+                                            TransferConfiguration.producerModeToString(
+                                                    parameters.producerMode).substring(0, 1),
+                                            PayloadGenerator.typeToString(
+                                                    parameters.payload).substring(0, 1),
+                                            String.format(Locale.US, "%d",
+                                                    parameters.payloadSeed),
+                                            String.format(Locale.US, "%d",
+                                                    parameters.payloadCompressibility),
+                                            String.format(Locale.US, "%d",
+                                                    parameters.concurrency),
                                             String.format(Locale.US, "%.0f", entry.getValue())
                                     };
                                 }))
@@ -0,0 +1,257 @@
+package com.brufino.android.playground.components.search;
+
+import android.util.Log;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import com.brufino.android.playground.components.main.TaskStatisticsUtils;
+import com.brufino.android.playground.components.main.TaskStatisticsUtils.Summary;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.TransferManager;
+import com.brufino.android.playground.transfer.task.TaskEntry;
+import com.brufino.android.playground.transfer.task.TransferTask;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.common.CommonConstants.TAG;
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.postOnMainThread;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Looks for the fastest {@link TransferConfiguration} of a {@link SearchSpace} for a task. Runs are
+ * enqueued through {@link TransferManager} like any other transfer and picked up from its history
+ * once they finish, see {@link Strategy} for how candidates are picked.
+ *
+ * Runs are matched to candidates by configuration, so transfers with the same configuration
+ * enqueued by someone else during the search are counted as well.
+ */
+public class ParameterSearch {
+    /** Pruning keeps at most this fraction of the candidates each round. */
+    private static final int HALVING_FACTOR = 2;
+
+    private static final Comparator<Result> BY_MEAN =
+            comparing((Result result) -> result.summary.count == 0)
+                    .thenComparingDouble(result -> result.summary.mean);
+
+    private final TransferManager mTransferManager;
+    private final Random mRandom = new Random();
+
+    public ParameterSearch(TransferManager transferManager) {
+        mTransferManager = transferManager;
+    }
+
+    /**
+     * Returns every candidate evaluated, fastest first. Candidates without successful runs come
+     * last.
+     *
+     * @param candidates Number of candidates picked from the space by {@link Strategy#RANDOM} and
+     *     {@link Strategy#HALVING}, {@link Strategy#GRID} tries all of them.
+     * @param repeat Runs of each candidate in the first round.
+     */
+    @WorkerThread
+    public List<Result> run(
+            @TransferManager.Code int code,
+            SearchSpace space,
+            @Strategy int strategy,
+            int candidates,
+            int repeat)
+            throws InterruptedException, TimeoutException {
+        checkArgument(candidates > 0, "Invalid candidates " + candidates);
+        checkArgument(repeat > 0, "Invalid repeat " + repeat);
+        Log.d(TAG, "Searching " + space.size() + " points (" + strategyToString(strategy) + ")");
+        List<TransferConfiguration> configurations =
+                (strategy == Strategy.GRID)
+                        ? space.getAll()
+                        : space.getRandom(candidates, mRandom);
+        Map<TransferConfiguration, List<TaskEntry>> entries = new HashMap<>();
+        runRound(code, configurations, repeat, entries);
+        if (strategy == Strategy.HALVING) {
+            configurations = prune(configurations, entries);
+            while (configurations.size() > 1) {
+                repeat *= HALVING_FACTOR;
+                runRound(code, configurations, repeat, entries);
+                configurations = prune(configurations, entries);
+            }
+        }
+        return getResults(entries.keySet(), entries);
+    }
+
+    /**
+     * Keeps the best 1 / {@link #HALVING_FACTOR} of the candidates, dropping earlier the ones whose
+     * confidence interval doesn't overlap with the best one's.
+     */
+    private List<TransferConfiguration> prune(
+            List<TransferConfiguration> configurations,
+            Map<TransferConfiguration, List<TaskEntry>> entries) {
+        List<Result> results = getResults(configurations, entries);
+        Summary best = results.get(0).summary;
+        int limit = (configurations.size() + HALVING_FACTOR - 1) / HALVING_FACTOR;
+        double bound = best.mean + best.getConfidenceInterval();
+        List<TransferConfiguration> survivors =
+                results.stream()
+                        .filter(result -> result.summary.count > 0)
+                        .filter(
+                                result ->
+                                        result.summary.mean - result.summary.getConfidenceInterval()
+                                                <= bound)
+                        .limit(limit)
+                        .map(result -> result.configuration)
+                        .collect(toList());
+        Log.d(TAG, "Search kept " + survivors.size() + " of " + configurations.size());
+        return survivors;
+    }
+
+    private static List<Result> getResults(
+            Iterable<TransferConfiguration> configurations,
+            Map<TransferConfiguration, List<TaskEntry>> entries) {
+        List<Result> results = new ArrayList<>();
+        for (TransferConfiguration configuration : configurations) {
+            List<TaskEntry> runs = entries.getOrDefault(configuration, Collections.emptyList());
+            results.add(new Result(configuration, TaskStatisticsUtils.summarize(runs)));
+        }
+        results.sort(BY_MEAN);
+        return results;
+    }
+
+    /** Runs {@code repeat} times each configuration, adding the entries to {@code entries}. */
+    private void runRound(
+            @TransferManager.Code int code,
+            List<TransferConfiguration> configurations,
+            int repeat,
+            Map<TransferConfiguration, List<TaskEntry>> entries)
+            throws InterruptedException, TimeoutException {
+        int runs = configurations.size() * repeat;
+        Log.d(TAG, "Search round of " + configurations.size() + " x " + repeat);
+        HistoryCollector collector = new HistoryCollector(configurations, runs);
+        LiveData<List<TaskEntry>> history = mTransferManager.getLiveHistory();
+        postOnMainThread(() -> history.observeForever(collector));
+        try {
+            collector.awaitBaseline();
+            // Interleaved, so that anything else going on in the device affects all alike
+            for (int i = 0; i < repeat; i++) {
+                for (TransferConfiguration configuration : configurations) {
+                    mTransferManager.enqueueTransfer(code, configuration);
+                }
+            }
+            for (TaskEntry entry : collector.await(runs * TransferTask.TASK_TIME_OUT_MS)) {
+                entries.computeIfAbsent(entry.configuration, c -> new ArrayList<>()).add(entry);
+            }
+        } finally {
+            postOnMainThread(() -> history.removeObserver(collector));
+        }
+    }
+
+    public static String strategyToString(@Strategy int strategy) {
+        switch (strategy) {
+            case Strategy.GRID:
+                return "grid";
+            case Strategy.RANDOM:
+                return "random";
+            case Strategy.HALVING:
+                return "halving";
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+    }
+
+    public static class Result {
+        public final TransferConfiguration configuration;
+        public final Summary summary;
+
+        private Result(TransferConfiguration configuration, Summary summary) {
+            this.configuration = configuration;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * Collects the entries of the configurations searched added to the history after the first
+     * value observed. Entries are only ever added to the history and are immutable, so identity
+     * is enough to tell the new ones.
+     */
+    private static class HistoryCollector implements Observer<List<TaskEntry>> {
+        private final Set<TransferConfiguration> mConfigurations;
+        private final CountDownLatch mBaseline = new CountDownLatch(1);
+        private final CountDownLatch mRemaining;
+        private final Set<TaskEntry> mSeen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @GuardedBy("this")
+        private final List<TaskEntry> mEntries = new ArrayList<>();
+
+        private HistoryCollector(List<TransferConfiguration> configurations, int count) {
+            mConfigurations = new HashSet<>(configurations);
+            mRemaining = new CountDownLatch(count);
+        }
+
+        @MainThread
+        @Override
+        public void onChanged(List<TaskEntry> history) {
+            if (mBaseline.getCount() > 0) {
+                mSeen.addAll(history);
+                mBaseline.countDown();
+                return;
+            }
+            for (TaskEntry entry : history) {
+                if (mSeen.add(entry) && mConfigurations.contains(entry.configuration)) {
+                    synchronized (this) {
+                        mEntries.add(entry);
+                    }
+                    mRemaining.countDown();
+                }
+            }
+        }
+
+        private void awaitBaseline() throws InterruptedException {
+            mBaseline.await();
+        }
+
+        private List<TaskEntry> await(long timeoutMs)
+                throws InterruptedException, TimeoutException {
+            if (!mRemaining.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException(
+                        "Search runs missing " + mRemaining.getCount() + " after " + timeoutMs
+                                + " ms");
+            }
+            synchronized (this) {
+                return new ArrayList<>(mEntries);
+            }
+        }
+    }
+
+    @IntDef({
+            Strategy.GRID,
+            Strategy.RANDOM,
+            Strategy.HALVING,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Strategy {
+        /** Every point of the space, {@code repeat} times each. */
+        int GRID = 0;
+        /** Random distinct points of the space, {@code repeat} times each. */
+        int RANDOM = 1;
+        /**
+         * Successive halving, starts like {@link #RANDOM} and then keeps re-running the best
+         * candidates with twice the runs until only one is left.
+         */
+        int HALVING = 2;
+    }
+}
@@ -0,0 +1,55 @@
+package com.brufino.android.playground.components.search;
+
+import com.brufino.android.playground.components.search.ParameterSearch.Result;
+import com.brufino.android.playground.extensions.AndroidUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class SearchSheet {
+    private static final String SHEET_FILE_NAME = "search.csv";
+    private static final String SHEET_HEADER =
+            "Rank,"
+                    + "Time (ms),"
+                    + "95% confidence interval (ms),"
+                    + "Standard deviation (ms),"
+                    + "Runs,"
+                    + "Failures,"
+                    + "Configuration";
+
+    public Path save(List<Result> results) throws IOException {
+        List<String> content = new ArrayList<>();
+        content.add(SHEET_HEADER);
+        for (int i = 0; i < results.size(); i++) {
+            content.add(getLine(i + 1, results.get(i)));
+        }
+        Path file = getFile();
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        return file;
+    }
+
+    private static String getLine(int rank, Result result) {
+        return String.format(
+                Locale.US,
+                "%d,%.4f,%.4f,%.4f,%d,%d,\"%s\"",
+                rank,
+                result.summary.mean,
+                result.summary.getConfidenceInterval(),
+                result.summary.standardDeviation,
+                result.summary.count,
+                result.summary.failures,
+                result.configuration);
+    }
+
+    private static Path getFile() throws IOException {
+        if (!AndroidUtils.isExternalStorageWritable()) {
+            throw new IOException("Directory unavailable.");
+        }
+        return AndroidUtils.getDocumentPath(SHEET_FILE_NAME);
+    }
+}
@@ -0,0 +1,248 @@
+package com.brufino.android.playground.components.search;
+
+import androidx.annotation.IntDef;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Values to try for some of the {@link TransferConfiguration} fields, the others keep the ones in
+ * {@link TransferConfiguration#DEFAULT}. Every combination of values is a point of the space,
+ * points are numbered in mixed radix so they can be listed or sampled without building all of
+ * them.
+ */
+public class SearchSpace {
+    /** Listing more than this is most likely a mistake, a single run takes at least 100 ms. */
+    private static final int MAX_POINTS = 64 * 1024;
+
+    private final List<Integer> mFields = new ArrayList<>();
+    private final List<List<Integer>> mValues = new ArrayList<>();
+
+    public void put(@Field int field, List<Integer> values) {
+        checkArgument(!values.isEmpty(), "No values for " + fieldToString(field));
+        checkArgument(!mFields.contains(field), "Duplicate field " + fieldToString(field));
+        mFields.add(field);
+        mValues.add(new ArrayList<>(new LinkedHashSet<>(values)));
+    }
+
+    /** Number of points. */
+    public long size() {
+        long size = 1;
+        for (List<Integer> values : mValues) {
+            size *= values.size();
+        }
+        return size;
+    }
+
+    /** Every point, in order. */
+    public List<TransferConfiguration> getAll() {
+        long size = size();
+        checkArgument(size <= MAX_POINTS, "Too many points " + size);
+        List<TransferConfiguration> configurations = new ArrayList<>((int) size);
+        for (long point = 0; point < size; point++) {
+            configurations.add(getConfiguration(point));
+        }
+        return configurations;
+    }
+
+    /** {@code count} distinct points, or all of them if there aren't that many. */
+    public List<TransferConfiguration> getRandom(int count, Random random) {
+        long size = size();
+        if (count >= size) {
+            List<TransferConfiguration> configurations = getAll();
+            Collections.shuffle(configurations, random);
+            return configurations;
+        }
+        Set<Long> points = new LinkedHashSet<>();
+        while (points.size() < count) {
+            points.add(Math.floorMod(random.nextLong(), size));
+        }
+        List<TransferConfiguration> configurations = new ArrayList<>(count);
+        for (long point : points) {
+            configurations.add(getConfiguration(point));
+        }
+        return configurations;
+    }
+
+    private TransferConfiguration getConfiguration(long point) {
+        int[] fields = toFields(TransferConfiguration.DEFAULT);
+        for (int i = mFields.size() - 1; i >= 0; i--) {
+            List<Integer> values = mValues.get(i);
+            fields[mFields.get(i)] = values.get((int) (point % values.size()));
+            point /= values.size();
+        }
+        return toConfiguration(fields);
+    }
+
+    private static int[] toFields(TransferConfiguration configuration) {
+        int[] fields = new int[Field.COUNT];
+        fields[Field.PRODUCER_DATA_SIZE] = configuration.producerDataSize;
+        fields[Field.PRODUCER_INTERVAL] = configuration.producerInterval;
+        fields[Field.PRODUCER_CHUNK_SIZE] = configuration.producerChunkSize;
+        fields[Field.TRANSFER_BUFFER_SIZE] = configuration.transferBufferSize;
+        fields[Field.CONSUMER_INTERVAL] = configuration.consumerInterval;
+        fields[Field.CONSUMER_BUFFER_SIZE] = configuration.consumerBufferSize;
+        fields[Field.RING_DEPTH] = configuration.ringDepth;
+        fields[Field.RING_WAIT_POLICY] = configuration.ringWaitPolicy;
+        fields[Field.LANES] = configuration.lanes;
+        fields[Field.NOTIFY_POLICY] = configuration.notifyPolicy;
+        fields[Field.NOTIFY_THRESHOLD] = configuration.notifyThreshold;
+        fields[Field.CONSUMER_MODE] = configuration.consumerMode;
+        fields[Field.MAPPED_REGION_SIZE] = configuration.mappedRegionSize;
+        fields[Field.TRANSPORT] = configuration.transport;
+        fields[Field.SOCKET_SEND_BUFFER] = configuration.socketSendBuffer;
+        fields[Field.SOCKET_RECEIVE_BUFFER] = configuration.socketReceiveBuffer;
+        fields[Field.INLINE_THRESHOLD] = configuration.inlineThreshold;
+        fields[Field.BUFFER_MODE] = configuration.bufferMode;
+        fields[Field.READ_AHEAD] = configuration.readAhead;
+        fields[Field.PRODUCER_MODE] = configuration.producerMode;
+        fields[Field.PAYLOAD] = configuration.payload;
+        fields[Field.PAYLOAD_SEED] = configuration.payloadSeed;
+        fields[Field.PAYLOAD_COMPRESSIBILITY] = configuration.payloadCompressibility;
+        return fields;
+    }
+
+    private static TransferConfiguration toConfiguration(int[] fields) {
+        return new TransferConfiguration(
+                fields[Field.PRODUCER_DATA_SIZE],
+                fields[Field.PRODUCER_INTERVAL],
+                fields[Field.PRODUCER_CHUNK_SIZE],
+                fields[Field.TRANSFER_BUFFER_SIZE],
+                fields[Field.CONSUMER_INTERVAL],
+                fields[Field.CONSUMER_BUFFER_SIZE],
+                fields[Field.RING_DEPTH],
+                fields[Field.RING_WAIT_POLICY],
+                fields[Field.LANES],
+                fields[Field.NOTIFY_POLICY],
+                fields[Field.NOTIFY_THRESHOLD],
+                fields[Field.CONSUMER_MODE],
+                fields[Field.MAPPED_REGION_SIZE],
+                fields[Field.TRANSPORT],
+                fields[Field.SOCKET_SEND_BUFFER],
+                fields[Field.SOCKET_RECEIVE_BUFFER],
+                fields[Field.INLINE_THRESHOLD],
+                fields[Field.BUFFER_MODE],
+                fields[Field.READ_AHEAD],
+                fields[Field.PRODUCER_MODE],
+                fields[Field.PAYLOAD],
+                fields[Field.PAYLOAD_SEED],
+                fields[Field.PAYLOAD_COMPRESSIBILITY]);
+    }
+
+    public static String fieldToString(@Field int field) {
+        switch (field) {
+            case Field.PRODUCER_DATA_SIZE:
+                return "producer data";
+            case Field.PRODUCER_INTERVAL:
+                return "producer interval";
+            case Field.PRODUCER_CHUNK_SIZE:
+                return "producer chunk";
+            case Field.TRANSFER_BUFFER_SIZE:
+                return "transfer buffer";
+            case Field.CONSUMER_INTERVAL:
+                return "consumer interval";
+            case Field.CONSUMER_BUFFER_SIZE:
+                return "consumer buffer";
+            case Field.RING_DEPTH:
+                return "ring depth";
+            case Field.RING_WAIT_POLICY:
+                return "ring wait";
+            case Field.LANES:
+                return "lanes";
+            case Field.NOTIFY_POLICY:
+                return "notify policy";
+            case Field.NOTIFY_THRESHOLD:
+                return "notify threshold";
+            case Field.CONSUMER_MODE:
+                return "consumer mode";
+            case Field.MAPPED_REGION_SIZE:
+                return "mapped region";
+            case Field.TRANSPORT:
+                return "transport";
+            case Field.SOCKET_SEND_BUFFER:
+                return "socket send buffer";
+            case Field.SOCKET_RECEIVE_BUFFER:
+                return "socket receive buffer";
+            case Field.INLINE_THRESHOLD:
+                return "inline threshold";
+            case Field.BUFFER_MODE:
+                return "buffer mode";
+            case Field.READ_AHEAD:
+                return "read ahead";
+            case Field.PRODUCER_MODE:
+                return "producer mode";
+            case Field.PAYLOAD:
+                return "payload";
+            case Field.PAYLOAD_SEED:
+                return "payload seed";
+            case Field.PAYLOAD_COMPRESSIBILITY:
+                return "payload compressibility";
+            default:
+                throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+    /** Same order as the {@link TransferConfiguration} constructor. */
+    @IntDef({
+            Field.PRODUCER_DATA_SIZE,
+            Field.PRODUCER_INTERVAL,
+            Field.PRODUCER_CHUNK_SIZE,
+            Field.TRANSFER_BUFFER_SIZE,
+            Field.CONSUMER_INTERVAL,
+            Field.CONSUMER_BUFFER_SIZE,
+            Field.RING_DEPTH,
+            Field.RING_WAIT_POLICY,
+            Field.LANES,
+            Field.NOTIFY_POLICY,
+            Field.NOTIFY_THRESHOLD,
+            Field.CONSUMER_MODE,
+            Field.MAPPED_REGION_SIZE,
+            Field.TRANSPORT,
+            Field.SOCKET_SEND_BUFFER,
+            Field.SOCKET_RECEIVE_BUFFER,
+            Field.INLINE_THRESHOLD,
+            Field.BUFFER_MODE,
+            Field.READ_AHEAD,
+            Field.PRODUCER_MODE,
+            Field.PAYLOAD,
+            Field.PAYLOAD_SEED,
+            Field.PAYLOAD_COMPRESSIBILITY,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Field {
+        int PRODUCER_DATA_SIZE = 0;
+        int PRODUCER_INTERVAL = 1;
+        int PRODUCER_CHUNK_SIZE = 2;
+        int TRANSFER_BUFFER_SIZE = 3;
+        int CONSUMER_INTERVAL = 4;
+        int CONSUMER_BUFFER_SIZE = 5;
+        int RING_DEPTH = 6;
+        int RING_WAIT_POLICY = 7;
+        int LANES = 8;
+        int NOTIFY_POLICY = 9;
+        int NOTIFY_THRESHOLD = 10;
+        int CONSUMER_MODE = 11;
+        int MAPPED_REGION_SIZE = 12;
+        int TRANSPORT = 13;
+        int SOCKET_SEND_BUFFER = 14;
+        int SOCKET_RECEIVE_BUFFER = 15;
+        int INLINE_THRESHOLD = 16;
+        int BUFFER_MODE = 17;
+        int READ_AHEAD = 18;
+        int PRODUCER_MODE = 19;
+        int PAYLOAD = 20;
+        int PAYLOAD_SEED = 21;
+        int PAYLOAD_COMPRESSIBILITY = 22;
+        /** Not a field. */
+        int COUNT = 23;
+    }
+}
@@ -0,0 +1,76 @@
+package com.brufino.android.playground.extensions.concurrent;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded lock-free queue handing items from any number of producer threads to a consumer that
+ * runs on an executor, e.g. the main-thread.
+ *
+ * Producers: {@link #submit(Object)} never blocks, it's a single swap of the tail. The first
+ * submission after the consumer ran schedules it on the executor, the following ones ride along,
+ * so a burst costs one executor task.
+ *
+ * Consumer: runs on the executor and gets every item in submission order. Code already running on
+ * the executor can call {@link #drain()} to hand over the items submitted so far right away, e.g.
+ * before a change that affects how they would be consumed.
+ */
+public class MpscHandoff<T> {
+    private final Executor mExecutor;
+    private final Consumer<T> mConsumer;
+    private final Runnable mDrain = this::drain;
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
+
+    /** Last node submitted, producers swap themselves in. */
+    private final AtomicReference<Node<T>> mTail;
+
+    /** Last node consumed, only accessed by the consumer. */
+    private Node<T> mHead;
+
+    public MpscHandoff(Executor executor, Consumer<T> consumer) {
+        mExecutor = executor;
+        mConsumer = consumer;
+        Node<T> stub = new Node<>(null);
+        mHead = stub;
+        mTail = new AtomicReference<>(stub);
+    }
+
+    /** From any thread. */
+    public void submit(T item) {
+        Node<T> node = new Node<>(item);
+        Node<T> previous = mTail.getAndSet(node);
+        previous.mNext = node;
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(mDrain);
+        }
+    }
+
+    /**
+     * From the executor only. A node swapped in but not linked yet is left for the drain its
+     * producer is about to schedule, since the flag is cleared before looking at the nodes.
+     */
+    public void drain() {
+        mDrainScheduled.set(false);
+        Node<T> next;
+        while ((next = mHead.mNext) != null) {
+            T item = next.mItem;
+            // Becomes the new stub, drop the item so that it can be collected
+            next.mItem = null;
+            mHead = next;
+            mConsumer.accept(item);
+        }
+    }
+
+    private static class Node<T> {
+        @Nullable private T mItem;
+        @Nullable private volatile Node<T> mNext;
+
+        private Node(@Nullable T item) {
+            mItem = item;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.brufino.android.playground.extensions.concurrent;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Bounded lock-free ring of reusable buffers handed from exactly one producer thread to exactly
+ * one consumer thread.
+ *
+ * Producer: {@link #claim()} a free buffer, fill it and flip it, then {@link #publish()}. Call
+ * {@link #close()} after the last buffer.
+ *
+ * Consumer: {@link #take()} the next published buffer, consume it, then {@link #release()}.
+ * {@link #take()} returns null after the producer closed and all buffers were consumed.
+ *
+ * Either side can {@link #abort()}, which makes pending and future calls on the other side throw.
+ */
+public class SpscBufferRing {
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long PARK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ByteBuffer[] mSlots;
+    @WaitPolicy private final int mWaitPolicy;
+
+    /** Number of buffers published, only written by the producer. */
+    private final AtomicLong mPublished = new AtomicLong(0);
+
+    /** Number of buffers released, only written by the consumer. */
+    private final AtomicLong mReleased = new AtomicLong(0);
+
+    private volatile boolean mClosed = false;
+    private volatile boolean mAborted = false;
+    @Nullable private volatile Thread mWaitingProducer;
+    @Nullable private volatile Thread mWaitingConsumer;
+
+    public SpscBufferRing(ByteBuffer[] slots, @WaitPolicy int waitPolicy) {
+        checkArgument(slots.length > 0, "Ring needs at least one slot");
+        mSlots = slots;
+        mWaitPolicy = waitPolicy;
+    }
+
+    public int getDepth() {
+        return mSlots.length;
+    }
+
+    /** Producer only. Blocks until a buffer is free, returns it cleared. */
+    public ByteBuffer claim() throws IOException, InterruptedException {
+        long published = mPublished.get();
+        awaitProducer(() -> published - mReleased.get() < mSlots.length);
+        ByteBuffer slot = getSlot(published);
+        slot.clear();
+        return slot;
+    }
+
+    /** Producer only. Makes the buffer returned by {@link #claim()} available to the consumer. */
+    public void publish() {
+        mPublished.set(mPublished.get() + 1);
+        wake(mWaitingConsumer);
+    }
+
+    /** Producer only. No more buffers will be published. */
+    public void close() {
+        mClosed = true;
+        wake(mWaitingConsumer);
+    }
+
+    /**
+     * Consumer only. Blocks until a buffer is published and returns it, or returns null if the
+     * producer closed the ring and there are no buffers left.
+     */
+    @Nullable
+    public ByteBuffer take() throws IOException, InterruptedException {
+        long released = mReleased.get();
+        awaitConsumer(() -> mPublished.get() > released || mClosed);
+        if (mPublished.get() == released) {
+            // Closed and drained
+            return null;
+        }
+        return getSlot(released);
+    }
+
+    /** Consumer only. Hands the buffer returned by {@link #take()} back to the producer. */
+    public void release() {
+        mReleased.set(mReleased.get() + 1);
+        wake(mWaitingProducer);
+    }
+
+    /** Any thread. */
+    public void abort() {
+        mAborted = true;
+        wake(mWaitingProducer);
+        wake(mWaitingConsumer);
+    }
+
+    private ByteBuffer getSlot(long sequence) {
+        return mSlots[(int) (sequence % mSlots.length)];
+    }
+
+    private void awaitProducer(Condition condition) throws IOException, InterruptedException {
+        if (condition.isMet()) {
+            return;
+        }
+        mWaitingProducer = Thread.currentThread();
+        try {
+            await(condition);
+        } finally {
+            mWaitingProducer = null;
+        }
+    }
+
+    private void awaitConsumer(Condition condition) throws IOException, InterruptedException {
+        if (condition.isMet()) {
+            return;
+        }
+        mWaitingConsumer = Thread.currentThread();
+        try {
+            await(condition);
+        } finally {
+            mWaitingConsumer = null;
+        }
+    }
+
+    /**
+     * The waiting thread is published before checking the condition and the other side changes
+     * the state before reading the waiting thread, both volatile, so a wake-up can't be lost. We
+     * still park with a time-out to bound any surprise.
+     */
+    private void await(Condition condition) throws IOException, InterruptedException {
+        int spins = 0;
+        while (!condition.isMet()) {
+            if (mAborted) {
+                throw new IOException("Ring aborted");
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < SPINS_BEFORE_PARK) {
+                spins++;
+                continue;
+            }
+            if (mWaitPolicy == WaitPolicy.SPINNING) {
+                // Let the other side run if we are sharing a core
+                Thread.yield();
+                continue;
+            }
+            LockSupport.parkNanos(this, PARK_TIMEOUT_NANOS);
+        }
+        if (mAborted) {
+            throw new IOException("Ring aborted");
+        }
+    }
+
+    private static void wake(@Nullable Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    @IntDef({
+            WaitPolicy.BLOCKING,
+            WaitPolicy.SPINNING,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface WaitPolicy {
+        /** Spins briefly then parks until woken up by the other side. */
+        int BLOCKING = 0;
+        /** Busy-waits yielding the core, burning CPU in exchange for latency. */
+        int SPINNING = 1;
+    }
+}
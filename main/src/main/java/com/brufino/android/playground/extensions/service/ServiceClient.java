@@ -7,6 +7,7 @@ import android.content.ServiceConnection;
 import android.os.DeadObjectException;
 import android.os.IBinder;
 import android.os.RemoteException;
+import androidx.annotation.Nullable;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils;
 
@@ -20,7 +21,10 @@ import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUt
 
 /**
  * Obtain an object of this class and call {@link #connect()} followed by a {@link #disconnect()}
- * only once and both from the same thread.
+ * only once. They can be called from different threads, as long as not at the same time.
+ *
+ * If the {@link ServiceConnectionPool} is enabled when connecting the binding comes from it and
+ * disconnecting hands it back instead of unbinding.
  */
 public class ServiceClient<T> {
     private final Context mContext;
@@ -28,14 +32,20 @@ public class ServiceClient<T> {
     private final CompletableFuture<IBinder> mBinderFuture;
     private final CompletableFuture<T> mInterfaceFuture;
     private final Connection mConnection;
+    private final ServiceConnectionPool mPool;
+
+    /** Only if connected through the pool. */
+    @Nullable private ServiceConnectionPool.Binding mBinding;
 
     ServiceClient(
             ApplicationContext context,
+            ServiceConnectionPool pool,
             ExecutorService workExecutor,
             Intent serviceIntent,
             Function<IBinder, T> converter) {
         mContext = context.getContext();
         mServiceIntent = serviceIntent;
+        mPool = pool;
         mConnection = new Connection();
         mBinderFuture = new CompletableFuture<>();
         mInterfaceFuture =
@@ -56,7 +66,12 @@ public class ServiceClient<T> {
         if (mBinderFuture.isDone()) {
             throw new IllegalStateException("connect() or connectAsync() already called");
         }
-        mContext.bindService(mServiceIntent, mConnection, Context.BIND_AUTO_CREATE);
+        if (mPool.isEnabled()) {
+            mBinding = mPool.acquire(mServiceIntent);
+            mBinding.getBinderFuture().thenAccept(mBinderFuture::complete);
+        } else {
+            mContext.bindService(mServiceIntent, mConnection, Context.BIND_AUTO_CREATE);
+        }
         return mInterfaceFuture;
 
     }
@@ -76,12 +91,29 @@ public class ServiceClient<T> {
         }
     }
 
-    /** Has to be called from the same thread as {@link #connect()} or {@link #connectAsync()}. */
+    /** Has to be called after {@link #connect()} or {@link #connectAsync()} returned. */
     public void disconnect() {
         if (!mInterfaceFuture.isDone()) {
             throw new IllegalStateException("disconnect() called before connect()");
         }
-        mContext.unbindService(mConnection);
+        if (mBinding != null) {
+            mPool.release(mBinding);
+            mBinding = null;
+        } else {
+            mContext.unbindService(mConnection);
+        }
+    }
+
+    /**
+     * Same as {@link #disconnect()} but can also be called before connecting completed, e.g.
+     * after {@link #get()} was interrupted, in which case it disconnects once that happens.
+     */
+    public void disconnectWhenConnected() {
+        if (mInterfaceFuture.isDone()) {
+            disconnect();
+            return;
+        }
+        mInterfaceFuture.whenComplete((service, throwable) -> disconnect());
     }
 
     private static IBinder checkBinderNotNull(IBinder binder) throws DeadObjectException {
@@ -9,16 +9,19 @@ import java.util.function.Function;
 
 public class ServiceClientFactory {
     private final ApplicationContext mContext;
+    private final ServiceConnectionPool mPool;
     private final ExecutorService mWorkExecutor;
 
-    public ServiceClientFactory(ApplicationContext context, ExecutorService workExecutor) {
+    public ServiceClientFactory(
+            ApplicationContext context, ServiceConnectionPool pool, ExecutorService workExecutor) {
         mContext = context;
+        mPool = pool;
         mWorkExecutor = workExecutor;
     }
 
     public <T> ServiceClient<T> getServiceClient(
             Intent serviceIntent,
             Function<IBinder, T> converter) {
-        return new ServiceClient<>(mContext, mWorkExecutor, serviceIntent, converter);
+        return new ServiceClient<>(mContext, mPool, mWorkExecutor, serviceIntent, converter);
     }
 }
@@ -0,0 +1,191 @@
+package com.brufino.android.playground.extensions.service;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.util.Log;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.brufino.android.playground.extensions.ApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.brufino.android.common.CommonConstants.TAG;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadHandler;
+
+/**
+ * Keeps service bindings alive across {@link ServiceClient}s, so that each client doesn't pay a
+ * bindService() / unbindService() pair, both depending on main-thread callbacks.
+ *
+ * Bindings are shared by intent, see {@link Intent#filterEquals(Intent)}, and unbound after
+ * {@link #IDLE_TIMEOUT_MS} without clients. A binding whose service died, which is what callers
+ * see as a {@link android.os.DeadObjectException}, is dropped right away and the next client binds
+ * again.
+ *
+ * While disabled clients bind on their own, as if there was no pool, which is useful to measure
+ * what it saves. Thread-safe.
+ */
+public class ServiceConnectionPool {
+    public static final long IDLE_TIMEOUT_MS = 30_000;
+
+    private final Object mLock = new Object();
+    private final Context mContext;
+    private final Handler mHandler = getMainThreadHandler();
+
+    @GuardedBy("mLock")
+    private final Map<Intent.FilterComparison, Binding> mBindings = new HashMap<>();
+
+    private volatile boolean mEnabled = true;
+
+    public ServiceConnectionPool(ApplicationContext context) {
+        mContext = context.getContext();
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /** Disabling unbinds the idle bindings, the ones in use are unbound when released. */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            synchronized (mLock) {
+                for (Binding binding : mBindings.values().toArray(new Binding[0])) {
+                    if (binding.mReferences == 0) {
+                        dropLocked(binding);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Hand it back with {@link #release(Binding)}. */
+    Binding acquire(Intent serviceIntent) {
+        Intent.FilterComparison key = new Intent.FilterComparison(serviceIntent);
+        synchronized (mLock) {
+            Binding binding = mBindings.get(key);
+            if (binding != null && binding.isDead()) {
+                dropLocked(binding);
+                binding = null;
+            }
+            if (binding == null) {
+                binding = new Binding(key);
+                mBindings.put(key, binding);
+                mContext.bindService(serviceIntent, binding, Context.BIND_AUTO_CREATE);
+            }
+            binding.mReferences++;
+            mHandler.removeCallbacks(binding.mEviction);
+            return binding;
+        }
+    }
+
+    void release(Binding binding) {
+        synchronized (mLock) {
+            checkState(binding.mReferences > 0, "Binding released more than acquired");
+            if (--binding.mReferences > 0) {
+                return;
+            }
+            if (!mEnabled || binding.isDead()) {
+                dropLocked(binding);
+            } else {
+                mHandler.postDelayed(binding.mEviction, IDLE_TIMEOUT_MS);
+            }
+        }
+    }
+
+    /** Clients still holding it keep the binder, calls on a dead one fail anyway. */
+    @GuardedBy("mLock")
+    private void dropLocked(Binding binding) {
+        if (mBindings.get(binding.mKey) == binding) {
+            mBindings.remove(binding.mKey);
+        }
+        if (!binding.mUnbound) {
+            binding.mUnbound = true;
+            mHandler.removeCallbacks(binding.mEviction);
+            mContext.unbindService(binding);
+        }
+    }
+
+    class Binding implements ServiceConnection, IBinder.DeathRecipient {
+        private final Intent.FilterComparison mKey;
+        private final CompletableFuture<IBinder> mBinderFuture = new CompletableFuture<>();
+        private final Runnable mEviction = this::evictIfIdle;
+
+        @GuardedBy("mLock")
+        private int mReferences = 0;
+
+        @GuardedBy("mLock")
+        private boolean mUnbound = false;
+
+        @GuardedBy("mLock")
+        private boolean mDead = false;
+
+        private Binding(Intent.FilterComparison key) {
+            mKey = key;
+        }
+
+        CompletableFuture<IBinder> getBinderFuture() {
+            return mBinderFuture;
+        }
+
+        @GuardedBy("mLock")
+        private boolean isDead() {
+            @Nullable IBinder binder = mBinderFuture.getNow(null);
+            return mDead || (binder != null && !binder.isBinderAlive());
+        }
+
+        private void evictIfIdle() {
+            synchronized (mLock) {
+                if (mReferences == 0) {
+                    Log.d(TAG, "Unbinding idle " + mKey.getIntent());
+                    dropLocked(this);
+                }
+            }
+        }
+
+        private void markDead() {
+            synchronized (mLock) {
+                mDead = true;
+                if (mReferences == 0) {
+                    dropLocked(this);
+                } else if (mBindings.get(mKey) == this) {
+                    // Next acquire() binds again, this one is unbound once released
+                    mBindings.remove(mKey);
+                }
+            }
+        }
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            try {
+                service.linkToDeath(this, 0);
+            } catch (RemoteException e) {
+                markDead();
+            }
+            mBinderFuture.complete(service);
+        }
+
+        /** The service process died, the system would bring it back but we'd rather bind anew. */
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            markDead();
+        }
+
+        @Override
+        public void onBindingDied(ComponentName name) {
+            markDead();
+        }
+
+        @Override
+        public void binderDied() {
+            markDead();
+        }
+    }
+}
@@ -7,14 +7,19 @@ import androidx.annotation.Nullable;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.components.main.TaskSheet;
 import com.brufino.android.playground.components.main.pages.history.HistoryAdapter;
+import com.brufino.android.playground.components.search.ParameterSearch;
+import com.brufino.android.playground.components.search.SearchSheet;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.concurrent.AppThreadFactory;
 import com.brufino.android.playground.extensions.livedata.LiveDataPersisterFactory;
 import com.brufino.android.playground.extensions.permission.PermissionRequester;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
+import com.brufino.android.playground.extensions.service.ServiceConnectionPool;
 import com.brufino.android.playground.transfer.TransferManager;
+import com.brufino.android.playground.transfer.service.QueueJournal;
 import com.brufino.android.playground.transfer.task.TaskHistory;
 import com.brufino.android.playground.transfer.task.TaskManager;
 import com.brufino.android.playground.transfer.task.tasks.TaskFactory;
@@ -35,6 +40,10 @@ class Provisioner {
     private final Object mIoExecutorLock = new Object();
     private final Object mTaskReaderExecutorLock = new Object();
     private final Object mTaskExecutorLock = new Object();
+    private final Object mLaneExecutorLock = new Object();
+    private final Object mBufferPoolLock = new Object();
+    private final Object mConnectionPoolLock = new Object();
+    private final Object mQueueJournalLock = new Object();
     private TransferManager mTransferManager;
 
     @GuardedBy("mTaskManagerLock")
@@ -61,6 +70,22 @@ class Provisioner {
     @Nullable
     private volatile ExecutorService mTaskExecutor;
 
+    @GuardedBy("mLaneExecutorLock")
+    @Nullable
+    private volatile ExecutorService mLaneExecutor;
+
+    @GuardedBy("mBufferPoolLock")
+    @Nullable
+    private volatile BufferPool mBufferPool;
+
+    @GuardedBy("mConnectionPoolLock")
+    @Nullable
+    private volatile ServiceConnectionPool mConnectionPool;
+
+    @GuardedBy("mQueueJournalLock")
+    @Nullable
+    private volatile QueueJournal mQueueJournal;
+
     @MainThread
     TransferManager getTransferManager(ApplicationContext context) {
         checkState(isMainThread());
@@ -114,18 +139,63 @@ class Provisioner {
         return mIoExecutor;
     }
 
-    /** Guaranteed to have at least 2 threads. */
+    /** Unbounded, each of the concurrent tasks may need 2 threads at the same time. */
     private ExecutorService getTaskExecutor() {
         if (mTaskExecutor == null) {
             synchronized (mTaskExecutorLock) {
                 if (mTaskExecutor == null) {
-                    mTaskExecutor = Executors.newFixedThreadPool(2, getThreadFactory("task-%d"));
+                    mTaskExecutor = Executors.newCachedThreadPool(getThreadFactory("task-%d"));
                 }
             }
         }
         return mTaskExecutor;
     }
 
+    /** Unbounded, all lanes of a striped task have to run at the same time. */
+    private ExecutorService getLaneExecutor() {
+        if (mLaneExecutor == null) {
+            synchronized (mLaneExecutorLock) {
+                if (mLaneExecutor == null) {
+                    mLaneExecutor = Executors.newCachedThreadPool(getThreadFactory("lane-%d"));
+                }
+            }
+        }
+        return mLaneExecutor;
+    }
+
+    private BufferPool getBufferPool() {
+        if (mBufferPool == null) {
+            synchronized (mBufferPoolLock) {
+                if (mBufferPool == null) {
+                    mBufferPool = new BufferPool();
+                }
+            }
+        }
+        return mBufferPool;
+    }
+
+    ServiceConnectionPool getConnectionPool(ApplicationContext context) {
+        if (mConnectionPool == null) {
+            synchronized (mConnectionPoolLock) {
+                if (mConnectionPool == null) {
+                    mConnectionPool = new ServiceConnectionPool(context);
+                }
+            }
+        }
+        return mConnectionPool;
+    }
+
+    QueueJournal getQueueJournal(ApplicationContext context) {
+        if (mQueueJournal == null) {
+            synchronized (mQueueJournalLock) {
+                if (mQueueJournal == null) {
+                    mQueueJournal = new QueueJournal(context, getIoExecutor());
+                }
+            }
+        }
+        return mQueueJournal;
+    }
+
     private AppThreadFactory getThreadFactory(String nameFormat) {
         return new AppThreadFactory(nameFormat);
     }
@@ -149,6 +219,15 @@ class Provisioner {
         return new TaskSheet(context);
     }
 
+    @MainThread
+    ParameterSearch getParameterSearch(ApplicationContext context) {
+        return new ParameterSearch(getTransferManager(context));
+    }
+
+    SearchSheet getSearchSheet() {
+        return new SearchSheet();
+    }
+
     <T extends ViewModel> ViewModelProvider.Factory getViewModelFactory(
             Class<T> viewModelClass,
             Supplier<? extends T> supplier) {
@@ -183,10 +262,13 @@ class Provisioner {
                 context,
                 getServiceClientFactory(context),
                 getMultiSubTaskFactory(context),
-                getTaskExecutor());
+                getBufferPool(),
+                getTaskExecutor(),
+                getLaneExecutor());
     }
 
     private ServiceClientFactory getServiceClientFactory(ApplicationContext context) {
-        return new ServiceClientFactory(context, getWorkExecutor());
+        return new ServiceClientFactory(
+                context, getConnectionPool(context), getWorkExecutor());
     }
 }
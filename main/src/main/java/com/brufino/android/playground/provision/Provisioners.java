@@ -20,12 +20,16 @@ import com.brufino.android.playground.components.main.pages.history.viewmodel.Hi
 import com.brufino.android.playground.components.main.pages.statistics.StatisticsFragment;
 import com.brufino.android.playground.components.main.pages.statistics.StatisticsFragmentProvisioner;
 import com.brufino.android.playground.components.main.pages.statistics.StatisticsViewModel;
+import com.brufino.android.playground.components.search.ParameterSearch;
+import com.brufino.android.playground.components.search.SearchSheet;
 import com.brufino.android.playground.transfer.TransferManagerServiceProvisioner;
 import com.brufino.android.playground.transfer.task.TaskManager;
 import com.brufino.android.playground.transfer.TransferManager;
+import com.brufino.android.playground.transfer.service.QueueJournal;
 import com.brufino.android.playground.transfer.service.TransferServiceProvisioner;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.permission.PermissionRequester;
+import com.brufino.android.playground.extensions.service.ServiceConnectionPool;
 
 import java.util.concurrent.ExecutorService;
 
@@ -169,6 +173,11 @@ public class Provisioners {
             public TaskManager getTaskManager() {
                 return mProvisioner.getTaskManager(ApplicationContext.from(service));
             }
+
+            @Override
+            public QueueJournal getQueueJournal() {
+                return mProvisioner.getQueueJournal(ApplicationContext.from(service));
+            }
         };
     }
 
@@ -178,11 +187,6 @@ public class Provisioners {
             public TransferManager getTransferManager() {
                 return mProvisioner.getTransferManager(ApplicationContext.from(service));
             }
-
-            @Override
-            public ExecutorService getRequestExecutor() {
-                return mProvisioner.getRequestExecutor();
-            }
         };
     }
 
@@ -202,6 +206,21 @@ public class Provisioners {
             public ExecutorService getRequestExecutor() {
                 return mProvisioner.getRequestExecutor();
             }
+
+            @Override
+            public ParameterSearch getParameterSearch(Context context) {
+                return mProvisioner.getParameterSearch(ApplicationContext.from(context));
+            }
+
+            @Override
+            public SearchSheet getSearchSheet() {
+                return mProvisioner.getSearchSheet();
+            }
+
+            @Override
+            public ServiceConnectionPool getConnectionPool(Context context) {
+                return mProvisioner.getConnectionPool(ApplicationContext.from(context));
+            }
         };
     }
 }
@@ -0,0 +1,46 @@
+package com.brufino.android.playground.transfer;
+
+import com.brufino.android.playground.transfer.TransferManager.Code;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+
+/**
+ * Summary of the transfer queue at some point, instead of a copy of it, so that publishing it
+ * doesn't depend on the queue length. Immutable.
+ */
+public class QueueSnapshot {
+    /** Most requests in {@link #head}. */
+    public static final int HEAD_SIZE = 8;
+
+    public static final QueueSnapshot EMPTY = new QueueSnapshot(0, emptyList(), emptyMap());
+
+    public final int size;
+
+    /** First requests of the queue, up to {@link #HEAD_SIZE}. */
+    public final List<TransferRequest> head;
+
+    /** Requests per code, codes without any are absent. */
+    public final Map<Integer, Integer> counts;
+
+    public QueueSnapshot(int size, List<TransferRequest> head, Map<Integer, Integer> counts) {
+        this.size = size;
+        this.head = Collections.unmodifiableList(new ArrayList<>(head));
+        this.counts = Collections.unmodifiableMap(new HashMap<>(counts));
+    }
+
+    public int getCount(@Code int code) {
+        return counts.getOrDefault(code, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "QueueSnapshot{size=" + size + ", counts=" + counts + "}";
+    }
+}
@@ -1,11 +1,19 @@
 package com.brufino.android.playground.transfer;
 
 import androidx.annotation.NonNull;
+import com.brufino.android.common.ProducerService.ProducerMode;
+import com.brufino.android.common.payload.PayloadGenerator;
+import com.brufino.android.common.transport.Transport;
 import com.brufino.android.playground.extensions.StringUtils;
 import com.brufino.android.playground.extensions.ViewUtils;
+import com.brufino.android.playground.extensions.concurrent.SpscBufferRing.WaitPolicy;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner.BufferMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.ConsumerMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.NotifyPolicy;
 
 import java.io.Serializable;
 import java.util.Locale;
+import java.util.Objects;
 
 import static com.brufino.android.playground.extensions.StringUtils.indent;
 import static com.brufino.android.playground.extensions.ViewUtils.sizeString;
@@ -18,7 +26,24 @@ public class TransferConfiguration implements Serializable {
                     /* producerChunkSize */ 64 * 1024,
                     /* transferBufferSize */ 8 * 1024,
                     /* consumerInterval */ 50,
-                    /* consumerBufferSize */ 32 * 1024);
+                    /* consumerBufferSize */ 32 * 1024,
+                    /* ringDepth */ 4,
+                    /* ringWaitPolicy */ WaitPolicy.BLOCKING,
+                    /* lanes */ 4,
+                    /* notifyPolicy */ NotifyPolicy.IMMEDIATE,
+                    /* notifyThreshold */ 0,
+                    /* consumerMode */ ConsumerMode.SYNC,
+                    /* mappedRegionSize */ 1024 * 1024,
+                    /* transport */ Transport.Type.PIPE,
+                    /* socketSendBuffer */ 0,
+                    /* socketReceiveBuffer */ 0,
+                    /* inlineThreshold */ 0,
+                    /* bufferMode */ BufferMode.FIXED,
+                    /* readAhead */ 0,
+                    /* producerMode */ ProducerMode.SIMPLE,
+                    /* payload */ PayloadGenerator.Type.ZEROS,
+                    /* payloadSeed */ 0,
+                    /* payloadCompressibility */ 50);
 
     private static final long serialVersionUID = -6376452245722381096L;
 
@@ -29,19 +54,169 @@ public class TransferConfiguration implements Serializable {
     public final int consumerInterval;
     public final int consumerBufferSize;
 
+    /** Number of buffers in the ring between subtasks, only for ring tasks. */
+    public final int ringDepth;
+
+    /** Only for ring tasks. */
+    @WaitPolicy public final int ringWaitPolicy;
+
+    /** Number of parallel producer lanes, only for striped tasks. */
+    public final int lanes;
+
+    /** When to call onDataReceived() on the consumer. */
+    @NotifyPolicy public final int notifyPolicy;
+
+    /** Bytes, writes or ms depending on {@link #notifyPolicy}. */
+    public final int notifyThreshold;
+
+    /** Whether the consumer reads inside onDataReceived() or on its own thread. */
+    @ConsumerMode public final int consumerMode;
+
+    /** Size of the memory region shared with the consumer, only for file-mapped tasks. */
+    public final int mappedRegionSize;
+
+    /** IPC mechanism of the links created by the tasks, see {@link Transport}. */
+    @Transport.Type public final int transport;
+
+    /** SO_SNDBUF requested for the links, 0 for the system default, only for socket transport. */
+    public final int socketSendBuffer;
+
+    /** SO_RCVBUF requested for the links, 0 for the system default, only for socket transport. */
+    public final int socketReceiveBuffer;
+
+    /** Transfers with less data than this skip the links, 0 to always use them. */
+    public final int inlineThreshold;
+
+    /** Whether {@link #transferBufferSize} is used as is or as the upper bound of a tuner. */
+    @BufferMode public final int bufferMode;
+
+    /**
+     * Buffers rotated by the single-thread task to read from the producer while the previous ones
+     * are delivered, 0 to read and deliver in sequence.
+     */
+    public final int readAhead;
+
+    /** How the producer writes its frames and whether it follows {@link #producerInterval}. */
+    @ProducerMode public final int producerMode;
+
+    /** What the producer sends, see {@link PayloadGenerator}. */
+    @PayloadGenerator.Type public final int payload;
+
+    /** Same seed, same data, so runs with content-dependent stages can be reproduced. */
+    public final int payloadSeed;
+
+    /** Percentage, only for {@link PayloadGenerator.Type#COMPRESSIBLE}. */
+    public final int payloadCompressibility;
+
     public TransferConfiguration(
             int producerDataSize,
             int producerInterval,
             int producerChunkSize,
             int transferBufferSize,
             int consumerInterval,
-            int consumerBufferSize) {
+            int consumerBufferSize,
+            int ringDepth,
+            @WaitPolicy int ringWaitPolicy,
+            int lanes,
+            @NotifyPolicy int notifyPolicy,
+            int notifyThreshold,
+            @ConsumerMode int consumerMode,
+            int mappedRegionSize,
+            @Transport.Type int transport,
+            int socketSendBuffer,
+            int socketReceiveBuffer,
+            int inlineThreshold,
+            @BufferMode int bufferMode,
+            int readAhead,
+            @ProducerMode int producerMode,
+            @PayloadGenerator.Type int payload,
+            int payloadSeed,
+            int payloadCompressibility) {
         this.producerDataSize = producerDataSize;
         this.producerInterval = producerInterval;
         this.producerChunkSize = producerChunkSize;
         this.transferBufferSize = transferBufferSize;
         this.consumerInterval = consumerInterval;
         this.consumerBufferSize = consumerBufferSize;
+        this.ringDepth = ringDepth;
+        this.ringWaitPolicy = ringWaitPolicy;
+        this.lanes = lanes;
+        this.notifyPolicy = notifyPolicy;
+        this.notifyThreshold = notifyThreshold;
+        this.consumerMode = consumerMode;
+        this.mappedRegionSize = mappedRegionSize;
+        this.transport = transport;
+        this.socketSendBuffer = socketSendBuffer;
+        this.socketReceiveBuffer = socketReceiveBuffer;
+        this.inlineThreshold = inlineThreshold;
+        this.bufferMode = bufferMode;
+        this.readAhead = readAhead;
+        this.producerMode = producerMode;
+        this.payload = payload;
+        this.payloadSeed = payloadSeed;
+        this.payloadCompressibility = payloadCompressibility;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TransferConfiguration)) {
+            return false;
+        }
+        TransferConfiguration that = (TransferConfiguration) other;
+        return producerDataSize == that.producerDataSize
+                && producerInterval == that.producerInterval
+                && producerChunkSize == that.producerChunkSize
+                && transferBufferSize == that.transferBufferSize
+                && consumerInterval == that.consumerInterval
+                && consumerBufferSize == that.consumerBufferSize
+                && ringDepth == that.ringDepth
+                && ringWaitPolicy == that.ringWaitPolicy
+                && lanes == that.lanes
+                && notifyPolicy == that.notifyPolicy
+                && notifyThreshold == that.notifyThreshold
+                && consumerMode == that.consumerMode
+                && mappedRegionSize == that.mappedRegionSize
+                && transport == that.transport
+                && socketSendBuffer == that.socketSendBuffer
+                && socketReceiveBuffer == that.socketReceiveBuffer
+                && inlineThreshold == that.inlineThreshold
+                && bufferMode == that.bufferMode
+                && readAhead == that.readAhead
+                && producerMode == that.producerMode
+                && payload == that.payload
+                && payloadSeed == that.payloadSeed
+                && payloadCompressibility == that.payloadCompressibility;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                producerDataSize,
+                producerInterval,
+                producerChunkSize,
+                transferBufferSize,
+                consumerInterval,
+                consumerBufferSize,
+                ringDepth,
+                ringWaitPolicy,
+                lanes,
+                notifyPolicy,
+                notifyThreshold,
+                consumerMode,
+                mappedRegionSize,
+                transport,
+                socketSendBuffer,
+                socketReceiveBuffer,
+                inlineThreshold,
+                bufferMode,
+                readAhead,
+                producerMode,
+                payload,
+                payloadSeed,
+                payloadCompressibility);
     }
 
     @Override
@@ -52,7 +227,21 @@ public class TransferConfiguration implements Serializable {
                 + "producer chunk = " + sizeString(producerChunkSize) + ", "
                 + "transfer buffer = " + sizeString(transferBufferSize) + ", "
                 + "consumer interval = " + consumerInterval + " ms, "
-                + "consumer buffer = " + sizeString(consumerBufferSize) + "}";
+                + "consumer buffer = " + sizeString(consumerBufferSize) + ", "
+                + "ring depth = " + ringDepth + ", "
+                + "ring wait = " + waitPolicyToString(ringWaitPolicy) + ", "
+                + "lanes = " + lanes + ", "
+                + "notify = " + notifyToString() + ", "
+                + "consumer mode = " + consumerModeToString(consumerMode) + ", "
+                + "mapped region = " + sizeString(mappedRegionSize) + ", "
+                + "transport = " + Transport.typeToString(transport) + ", "
+                + "socket send buffer = " + sizeString(socketSendBuffer) + ", "
+                + "socket receive buffer = " + sizeString(socketReceiveBuffer) + ", "
+                + "inline threshold = " + sizeString(inlineThreshold) + ", "
+                + "buffer mode = " + bufferModeToString(bufferMode) + ", "
+                + "read ahead = " + readAhead + ", "
+                + "producer mode = " + producerModeToString(producerMode) + ", "
+                + "payload = " + payloadToString() + "}";
     }
 
     public String toMultilineString(int i) {
@@ -63,6 +252,110 @@ public class TransferConfiguration implements Serializable {
                 + indent(i) + "transfer buffer = " + sizeString(transferBufferSize) + "\n"
                 + indent(i) + "consumer interval = " + consumerInterval + " ms\n"
                 + indent(i) + "consumer buffer = " + sizeString(consumerBufferSize) + "\n"
+                + indent(i) + "ring depth = " + ringDepth + "\n"
+                + indent(i) + "ring wait = " + waitPolicyToString(ringWaitPolicy) + "\n"
+                + indent(i) + "lanes = " + lanes + "\n"
+                + indent(i) + "notify = " + notifyToString() + "\n"
+                + indent(i) + "consumer mode = " + consumerModeToString(consumerMode) + "\n"
+                + indent(i) + "mapped region = " + sizeString(mappedRegionSize) + "\n"
+                + indent(i) + "transport = " + Transport.typeToString(transport) + "\n"
+                + indent(i) + "socket send buffer = " + sizeString(socketSendBuffer) + "\n"
+                + indent(i) + "socket receive buffer = " + sizeString(socketReceiveBuffer) + "\n"
+                + indent(i) + "inline threshold = " + sizeString(inlineThreshold) + "\n"
+                + indent(i) + "buffer mode = " + bufferModeToString(bufferMode) + "\n"
+                + indent(i) + "read ahead = " + readAhead + "\n"
+                + indent(i) + "producer mode = " + producerModeToString(producerMode) + "\n"
+                + indent(i) + "payload = " + payloadToString() + "\n"
                 + indent(i - 1) + "}";
     }
+
+    private String notifyToString() {
+        String policy = notifyPolicyToString(notifyPolicy);
+        switch (notifyPolicy) {
+            case NotifyPolicy.BYTES:
+                return policy + " " + sizeString(notifyThreshold);
+            case NotifyPolicy.COUNT:
+                return policy + " " + notifyThreshold;
+            case NotifyPolicy.TIME:
+                return policy + " " + notifyThreshold + " ms";
+            default:
+                return policy;
+        }
+    }
+
+    private String payloadToString() {
+        String type = PayloadGenerator.typeToString(payload);
+        switch (payload) {
+            case PayloadGenerator.Type.RANDOM:
+            case PayloadGenerator.Type.TEXT:
+                return type + " (seed " + payloadSeed + ")";
+            case PayloadGenerator.Type.COMPRESSIBLE:
+                return type + " " + payloadCompressibility + "% (seed " + payloadSeed + ")";
+            default:
+                return type;
+        }
+    }
+
+    public static String notifyPolicyToString(@NotifyPolicy int notifyPolicy) {
+        switch (notifyPolicy) {
+            case NotifyPolicy.IMMEDIATE:
+                return "immediate";
+            case NotifyPolicy.BYTES:
+                return "bytes";
+            case NotifyPolicy.COUNT:
+                return "count";
+            case NotifyPolicy.TIME:
+                return "time";
+            default:
+                throw new IllegalArgumentException("Unknown notify policy " + notifyPolicy);
+        }
+    }
+
+    public static String consumerModeToString(@ConsumerMode int consumerMode) {
+        switch (consumerMode) {
+            case ConsumerMode.SYNC:
+                return "sync";
+            case ConsumerMode.ASYNC:
+                return "async";
+            case ConsumerMode.STREAM:
+                return "stream";
+            default:
+                throw new IllegalArgumentException("Unknown consumer mode " + consumerMode);
+        }
+    }
+
+    public static String producerModeToString(@ProducerMode int producerMode) {
+        switch (producerMode) {
+            case ProducerMode.SIMPLE:
+                return "simple";
+            case ProducerMode.PACED:
+                return "paced";
+            case ProducerMode.UNPACED:
+                return "unpaced";
+            default:
+                throw new IllegalArgumentException("Unknown producer mode " + producerMode);
+        }
+    }
+
+    public static String bufferModeToString(@BufferMode int bufferMode) {
+        switch (bufferMode) {
+            case BufferMode.FIXED:
+                return "fixed";
+            case BufferMode.ADAPTIVE:
+                return "adaptive";
+            default:
+                throw new IllegalArgumentException("Unknown buffer mode " + bufferMode);
+        }
+    }
+
+    public static String waitPolicyToString(@WaitPolicy int waitPolicy) {
+        switch (waitPolicy) {
+            case WaitPolicy.BLOCKING:
+                return "blocking";
+            case WaitPolicy.SPINNING:
+                return "spinning";
+            default:
+                throw new IllegalArgumentException("Unknown wait policy " + waitPolicy);
+        }
+    }
 }
@@ -2,11 +2,11 @@ package com.brufino.android.playground.transfer;
 
 import android.content.Context;
 import android.util.Log;
-import androidx.annotation.GuardedBy;
 import androidx.annotation.IntDef;
 import androidx.annotation.MainThread;
 import androidx.lifecycle.LiveData;
 import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.extensions.concurrent.MpscHandoff;
 import com.brufino.android.playground.extensions.livedata.ImmediateLiveData;
 import com.brufino.android.playground.extensions.livedata.transform.Transform;
 import com.brufino.android.playground.transfer.service.TransferService;
@@ -20,36 +20,28 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.brufino.android.common.utils.Preconditions.checkNotNull;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadExecutor;
 import static com.brufino.android.playground.extensions.livedata.LiveDataUtils.constantLiveDataIfNotNull;
-import static java.util.Collections.emptyList;
 import static java.util.Optional.empty;
 
 public class TransferManager {
-    private static final int MAX_THREADS_REQUESTING_TRANSFER = 5;
-    private static final int SEMAPHORE_PERMITS = MAX_THREADS_REQUESTING_TRANSFER;
-
     private final Context mContext;
     private final TaskManager mTaskManager;
-    private final LiveData<List<TransferRequest>> mLiveQueue;
+    private final LiveData<QueueSnapshot> mLiveQueue;
     private final LiveData<Double> mLiveThroughput;
+    private final LiveData<Double> mLiveTaskGap;
 
-    /** Semaphore allows more than 1 thread in certain code-paths. */
-    private final Semaphore mRequestSemaphore = new Semaphore(SEMAPHORE_PERMITS, true);
-
-    /** Any set operation on this requires acquiring SEMAPHORE_PERMITS from mRequestSemaphore. */
-    @GuardedBy("mRequestSemaphore")
+    /** Only set on the main-thread, read from anywhere. */
     private final ImmediateLiveData<Optional<TransferManagerService>> mLiveService;
 
-    /**
-     * Even though we are guarded by the semaphore we need an atomic because the semaphore
-     * allows multiple threads executing.
-     */
-    @GuardedBy("mRequestSemaphore")
-    private final AtomicInteger mNextStartId = new AtomicInteger(0);
+    /** Requests for the service, delivered on the main-thread, see {@link #deliver}. */
+    private final MpscHandoff<TransferRequest> mPendingRequests =
+            new MpscHandoff<>(getMainThreadExecutor(), this::deliver);
+
+    /** Only accessed from the main-thread. */
+    private int mNextStartId = 0;
 
     @MainThread
     public TransferManager(
@@ -64,7 +56,7 @@ public class TransferManager {
                         .optional()
                         .castToOptionalOf(TransferService.class, workExecutor)
                         .switchMapIfPresent(TransferService::getLiveQueue, workExecutor)
-                        .orElse(emptyList())
+                        .orElse(QueueSnapshot.EMPTY)
                         .getLiveData();
         mLiveThroughput =
                 Transform.source(mLiveService.getLiveData())
@@ -77,18 +69,39 @@ public class TransferManager {
                                                 .orElse(constantLiveDataIfNotNull(oldThroughput)),
                                 workExecutor)
                         .getLiveData();
+        mLiveTaskGap =
+                Transform.source(mLiveService.getLiveData())
+                        .optional()
+                        .castToOptionalOf(TransferService.class, workExecutor)
+                        .<Double>switchMap(
+                                (service, oldGap) ->
+                                        service
+                                                .map(TransferService::getLiveTaskGap)
+                                                .orElse(constantLiveDataIfNotNull(oldGap)),
+                                workExecutor)
+                        .getLiveData();
 
     }
 
+    /** Of the first slot. */
     public LiveData<Optional<TaskInformation>> getLiveTaskInformation() {
         return mTaskManager.getTaskInformation();
     }
 
+    public LiveData<Optional<TaskInformation>> getLiveTaskInformation(int slot) {
+        return mTaskManager.getTaskInformation(slot);
+    }
+
+    /** Number of transfers that can run at the same time, up to {@link TaskManager#MAX_SLOTS}. */
+    public void setSlots(int slots) {
+        mTaskManager.setSlots(slots);
+    }
+
     public LiveData<List<TaskEntry>> getLiveHistory() {
         return mTaskManager.getLiveHistory();
     }
 
-    public LiveData<List<TransferRequest>> getLiveQueue() {
+    public LiveData<QueueSnapshot> getLiveQueue() {
         return mLiveQueue;
     }
 
@@ -96,21 +109,36 @@ public class TransferManager {
         return mLiveThroughput;
     }
 
+    /** In milliseconds, see {@link TransferService#getLiveTaskGap()}. */
+    public LiveData<Double> getLiveTaskGap() {
+        return mLiveTaskGap;
+    }
+
+    /**
+     * Whether the next queued transfer sets itself up while the current ones run, see
+     * {@link TaskManager#setPrepareEnabled(boolean)}.
+     */
+    public void setPrepareEnabled(boolean enabled) {
+        mTaskManager.setPrepareEnabled(enabled);
+    }
+
+    /** Whether requests go straight to the service instead of starting it. */
+    public boolean isServiceRunning() {
+        return checkNotNull(mLiveService.getValue()).isPresent();
+    }
+
     public void clearHistory() {
         mTaskManager.clearHistory();
     }
 
-    public void clearQueue() throws InterruptedException {
-        mRequestSemaphore.acquire();
-        try {
-            Optional<TransferManagerService> service = checkNotNull(mLiveService.getValue());
-            if (service.isPresent()) {
-                service.get().clear();
-            }
-        } finally {
-            mRequestSemaphore.release();
-        }
-
+    /** Requests enqueued before calling this are cleared too, completes once done. */
+    public CompletableFuture<Void> clearQueue() {
+        return CompletableFuture.runAsync(
+                () -> {
+                    mPendingRequests.drain();
+                    checkNotNull(mLiveService.getValue()).ifPresent(TransferManagerService::clear);
+                },
+                getMainThreadExecutor());
     }
 
     /**
@@ -127,37 +155,45 @@ public class TransferManager {
     }
 
     /**
-     * Implementation note: We limit the number of threads that can submit a request in parallel,
-     * otherwise all those requests would end up overwhelming the main-thread, that puts them in
-     * a queue, among other things.
+     * Implementation note: Never blocks. With the service running the request is handed over to
+     * the main-thread, which delivers all the requests submitted meanwhile in one go, see
+     * {@link MpscHandoff}, so that a burst of requests doesn't overwhelm it.
      */
-    public void enqueueTransfer(
-            @Code int code, TransferConfiguration configuration) throws InterruptedException {
-        TransferRequest request = TransferRequest.create(code, configuration);
-        mRequestSemaphore.acquire();
-        try {
-            Optional<TransferManagerService> service = checkNotNull(mLiveService.getValue());
-            if (service.isPresent()) {
-                int startId = mNextStartId.getAndIncrement();
-                service.get().request(request, startId);
-                return;
-            }
-        } finally {
-            mRequestSemaphore.release();
+    public void enqueueTransfer(@Code int code, TransferConfiguration configuration) {
+        enqueueTransfers(code, configuration, 1);
+    }
+
+    /**
+     * Enqueues {@code count} transfers, in a row, at the cost of one: it's a single request until
+     * the service dequeues the transfers one by one.
+     */
+    public void enqueueTransfers(
+            @Code int code, TransferConfiguration configuration, int count) {
+        TransferRequest request = TransferRequest.create(code, configuration, count);
+        if (checkNotNull(mLiveService.getValue()).isPresent()) {
+            mPendingRequests.submit(request);
+            return;
         }
+        // The start-service path is always safe, even if the service was created meanwhile
         mContext.startForegroundService(request.getIntent(mContext));
     }
 
+    /** The service may be gone by the time the request is delivered. */
+    @MainThread
+    private void deliver(TransferRequest request) {
+        Optional<TransferManagerService> service = checkNotNull(mLiveService.getValue());
+        if (service.isPresent()) {
+            service.get().request(request, mNextStartId++);
+        } else {
+            mContext.startForegroundService(request.getIntent(mContext));
+        }
+    }
+
     @MainThread
-    void onServiceCreated(TransferManagerService service) throws InterruptedException {
-        mRequestSemaphore.acquire(SEMAPHORE_PERMITS);
+    void onServiceCreated(TransferManagerService service) {
         Log.d("BMReq",
                 "onServiceCreated(" + Integer.toHexString(System.identityHashCode(service)) + ")");
-        try {
-            mLiveService.setValue(Optional.of(service));
-        } finally {
-            mRequestSemaphore.release(SEMAPHORE_PERMITS);
-        }
+        mLiveService.setValue(Optional.of(service));
     }
 
     /**
@@ -168,23 +204,28 @@ public class TransferManager {
      * Also, after this method returns there won't be any direct calls to the service.
      */
     @MainThread
-    void onServiceDestroy() throws InterruptedException {
-        mRequestSemaphore.acquire(SEMAPHORE_PERMITS);
+    void onServiceDestroy() {
         Log.d("BMReq", "onServiceDestroy()");
-        try {
-            mLiveService.setValue(empty());
-        } finally {
-            mRequestSemaphore.release(SEMAPHORE_PERMITS);
-        }
+        // Requests handed over so far still go to the service, which resumes with what it has left
+        mPendingRequests.drain();
+        mLiveService.setValue(empty());
     }
 
     @IntDef({
             Code.SINGLE_THREAD,
             Code.MULTI_THREAD,
+            Code.CHANNEL,
+            Code.RING,
+            Code.STRIPED,
+            Code.MAPPED,
     })
     @Retention(RetentionPolicy.SOURCE)
     public @interface Code {
         int SINGLE_THREAD = 0;
         int MULTI_THREAD = 1;
+        int CHANNEL = 2;
+        int RING = 3;
+        int STRIPED = 4;
+        int MAPPED = 5;
     }
 }
@@ -10,18 +10,13 @@ import androidx.annotation.Nullable;
 import androidx.lifecycle.LifecycleService;
 import com.brufino.android.playground.provision.Provisioners;
 
-import java.util.concurrent.ExecutorService;
-
 import static com.brufino.android.common.utils.Preconditions.checkNotNull;
 import static com.brufino.android.common.utils.Preconditions.checkState;
-import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.isMainThread;
-import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.resettingInterrupt;
 
 public abstract class TransferManagerService extends LifecycleService {
     private final TransferManagerServiceProvisioner mProvisioner;
     private TransferManager mTransferManager;
-    private ExecutorService mRequestExecutor;
 
     public TransferManagerService() {
         mProvisioner = Provisioners.get().getTransferManagerServiceProvisioner(this);
@@ -40,8 +35,7 @@ public abstract class TransferManagerService extends LifecycleService {
     public void onCreate() {
         super.onCreate();
         mTransferManager = mProvisioner.getTransferManager();
-        mRequestExecutor = mProvisioner.getRequestExecutor();
-        resettingInterrupt(() -> mTransferManager.onServiceCreated(this));
+        mTransferManager.onServiceCreated(this);
     }
 
     /**
@@ -54,9 +48,7 @@ public abstract class TransferManagerService extends LifecycleService {
     @CallSuper
     public void onDestroy() {
         super.onDestroy();
-        // We can't just swallow the interrupt because we don't know how to stop the main-thread
-        // (which is the thread that executes this), even though the service is being stopped.
-        resettingInterrupt(mTransferManager::onServiceDestroy);
+        mTransferManager.onServiceDestroy();
     }
 
     @Nullable
@@ -72,14 +64,17 @@ public abstract class TransferManagerService extends LifecycleService {
         super.onStartCommand(intent, flags, startId);
         checkState(isMainThread());
 
-        if (intent == null) {
-            return Service.START_NOT_STICKY;
-        }
+        // Sticky instead of redelivering intents, the service keeps requests in a journal, so
+        // after the process is killed it's restarted without an intent and picks them up
         onStart();
+        if (intent == null || !TransferRequest.isRequest(intent)) {
+            Log.d("BMReq", "resume(" + startId + ")");
+            return Service.START_STICKY;
+        }
         TransferRequest request = TransferRequest.create(intent);
         Log.d("BMReq", "request(START_SERVICE/" + startId + ")");
         onHandleRequest(request);
-        return Service.START_REDELIVER_INTENT;
+        return Service.START_STICKY;
     }
 
     /** MUST only be called from {@link TransferManager}. */
@@ -88,10 +83,8 @@ public abstract class TransferManagerService extends LifecycleService {
         onHandleRequest(request);
     }
 
-    protected void retry(TransferRequest request) {
-        TransferManager transferManager = mTransferManager;
-        execute(
-                () -> transferManager.enqueueTransfer(request.code, request.configuration),
-                mRequestExecutor);
+    /** Starts a new service without a request, see {@link #onStartCommand(Intent, int, int)}. */
+    protected void resume() {
+        startForegroundService(new Intent(this, getClass()));
     }
 }
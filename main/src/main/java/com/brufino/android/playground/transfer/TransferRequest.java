@@ -2,14 +2,22 @@ package com.brufino.android.playground.transfer;
 
 import android.content.Context;
 import android.content.Intent;
+import androidx.annotation.Nullable;
 import com.brufino.android.playground.transfer.service.TransferService;
 
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Request to run a transfer {@link #count} times, in a row. A batch is a single entry in the
+ * queue and is only split into single requests, see {@link #next()}, as they are dequeued.
+ */
 public class TransferRequest {
     private static final String EXTRA_TASK_CODE = "extra_task_code";
     private static final String EXTRA_TASK_CONFIGURATION = "extra_task_configuration";
+    private static final String EXTRA_TASK_COUNT = "extra_task_count";
 
     static Intent getIntent(Context context, int code, TransferConfiguration configuration) {
-        return new TransferRequest(code, configuration).getIntent(context);
+        return new TransferRequest(code, configuration, 1).getIntent(context);
     }
 
     static TransferRequest create(Intent intent) {
@@ -19,30 +27,53 @@ public class TransferRequest {
                         ? (TransferConfiguration) deserializedConfiguration
                         : TransferConfiguration.DEFAULT;
         int code = intent.getIntExtra(EXTRA_TASK_CODE, -1);
-        return new TransferRequest(code, configuration);
+        int count = intent.getIntExtra(EXTRA_TASK_COUNT, 1);
+        return new TransferRequest(code, configuration, count);
+    }
+
+    static boolean isRequest(Intent intent) {
+        return intent.hasExtra(EXTRA_TASK_CODE);
     }
 
-    static TransferRequest create(int code, TransferConfiguration configuration) {
-        return new TransferRequest(code, configuration);
+    public static TransferRequest create(
+            int code, TransferConfiguration configuration, int count) {
+        return new TransferRequest(code, configuration, count);
     }
 
     public final int code;
     public final TransferConfiguration configuration;
 
-    private TransferRequest(int code, TransferConfiguration configuration) {
+    /** Number of transfers, at least 1. */
+    public final int count;
+
+    private TransferRequest(int code, TransferConfiguration configuration, int count) {
+        checkArgument(count > 0, "Invalid count " + count);
         this.code = code;
         this.configuration = configuration;
+        this.count = count;
+    }
+
+    /** A single request, the one to run next. */
+    public TransferRequest next() {
+        return (count == 1) ? this : new TransferRequest(code, configuration, 1);
+    }
+
+    /** What's left after running {@link #next()}, null if nothing. */
+    @Nullable
+    public TransferRequest rest() {
+        return (count == 1) ? null : new TransferRequest(code, configuration, count - 1);
     }
 
     Intent getIntent(Context context) {
         Intent intent = new Intent(context, TransferService.class);
         intent.putExtra(TransferRequest.EXTRA_TASK_CODE, code);
         intent.putExtra(TransferRequest.EXTRA_TASK_CONFIGURATION, configuration);
+        intent.putExtra(TransferRequest.EXTRA_TASK_COUNT, count);
         return intent;
     }
 
     @Override
     public String toString() {
-        return "TransferRequest{code=" + code + "}";
+        return "TransferRequest{code=" + code + ", count=" + count + "}";
     }
 }
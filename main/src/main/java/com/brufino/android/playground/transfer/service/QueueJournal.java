@@ -0,0 +1,401 @@
+package com.brufino.android.playground.transfer.service;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.TransferRequest;
+
+import java.io.*;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static com.brufino.android.common.CommonConstants.TAG;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadExecutor;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadHandler;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.throwIn;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Durable copy of the transfer queue, so that queued requests survive the process being killed.
+ * It's an append-only binary log with one record per change of the queue: a request, batch
+ * included, added to its end or a single transfer taken from its head. Configurations are
+ * recorded once, with an id the requests refer to, they're hundreds of bytes serialized and
+ * requests usually share them. {@link #open()} replays it on the io executor to get the queue
+ * back, callers wait for it before changing the queue.
+ *
+ * Records are encoded in memory by the caller and written in batches on the io executor, one
+ * write at a time. Once the log has {@link #COMPACTION_FACTOR} times more records than requests
+ * left it's compacted, i.e. replaced by a new one with a record per request left. A failed write
+ * is retried with a compaction after a delay that doubles with each failure in a row, after
+ * {@link #MAX_WRITE_FAILURES} journaling stops for the rest of the process.
+ *
+ * A transfer is taken when it's dequeued, not when it finishes, so the one running when the
+ * process dies isn't replayed.
+ *
+ * Process-wide, so that a service picks up what the previous one left without reading the file
+ * again. Thread-safe, callers serialize their changes to keep them in the order of the queue.
+ */
+public class QueueJournal {
+    private static final String JOURNAL_FILE_NAME = "queue.journal";
+    private static final String COMPACTION_FILE_NAME = "queue.journal.tmp";
+    private static final int MAGIC = 0x5451_4a01;
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+    private static final int COMPACTION_FACTOR = 4;
+    private static final int MAX_WRITE_FAILURES = 5;
+    private static final long RETRY_DELAY_MS = 500;
+
+    private final Context mContext;
+    private final Executor mIoExecutor;
+    private final Handler mHandler = getMainThreadHandler();
+    private final Object mLock = new Object();
+
+    /** Queue the log amounts to, including the records not written yet. */
+    @GuardedBy("mLock")
+    private final Deque<TransferRequest> mRequests = new ArrayDeque<>();
+
+    @GuardedBy("mLock")
+    private final ByteArrayOutputStream mPendingBytes = new ByteArrayOutputStream();
+
+    /** Records not written yet, over {@link #mPendingBytes}. */
+    @GuardedBy("mLock")
+    private final DataOutputStream mPending = new DataOutputStream(mPendingBytes);
+
+    /** Completes once the file was read, null until the first {@link #open()}. */
+    @GuardedBy("mLock")
+    @Nullable
+    private CompletableFuture<Void> mLoadFuture;
+
+    /** Records in the log since it was last compacted, including the pending ones. */
+    @GuardedBy("mLock")
+    private int mRecords = 0;
+
+    /** Whether the next write compacts the log whatever its size. */
+    @GuardedBy("mLock")
+    private boolean mCompact = false;
+
+    /** Also while waiting to retry a failed write. */
+    @GuardedBy("mLock")
+    private boolean mWriteScheduled = false;
+
+    /** Writes failed in a row. */
+    @GuardedBy("mLock")
+    private int mWriteFailures = 0;
+
+    /** Whether writing gave up, see {@link #MAX_WRITE_FAILURES}. */
+    @GuardedBy("mLock")
+    private boolean mDisabled = false;
+
+    @GuardedBy("mLock")
+    private CompletableFuture<Void> mWriteFuture = completedFuture(null);
+
+    /** Ids of the configurations recorded since the log was last compacted. */
+    @GuardedBy("mLock")
+    private final Map<TransferConfiguration, Integer> mConfigurationIds = new HashMap<>();
+
+    public QueueJournal(ApplicationContext context, ExecutorService ioExecutor) {
+        mContext = context.getContext();
+        mIoExecutor = ioExecutor;
+    }
+
+    /**
+     * Completes with the requests left, in order, batches not split. Only the first call reads
+     * the file, on the io executor, the following ones get what's in memory once it's read.
+     */
+    CompletableFuture<List<TransferRequest>> open() {
+        synchronized (mLock) {
+            if (mLoadFuture == null) {
+                mLoadFuture = CompletableFuture.runAsync(this::load, mIoExecutor);
+            }
+            return mLoadFuture.thenApply(v -> getRequests());
+        }
+    }
+
+    private void load() {
+        List<TransferRequest> requests = read(getFile(mContext, JOURNAL_FILE_NAME));
+        synchronized (mLock) {
+            mRequests.addAll(requests);
+            // Also drops a record cut short by the process dying in the middle of a write
+            mCompact = true;
+            scheduleWriteLocked();
+        }
+    }
+
+    private List<TransferRequest> getRequests() {
+        synchronized (mLock) {
+            return new ArrayList<>(mRequests);
+        }
+    }
+
+    /** The request was added to the end of the queue. */
+    void add(TransferRequest request) {
+        synchronized (mLock) {
+            mRequests.add(request);
+            try {
+                writeAdd(mPending, request);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            mRecords++;
+            scheduleWriteLocked();
+        }
+    }
+
+    /**
+     * A single transfer was taken from the head of the queue, i.e. dequeued to run. If the
+     * process dies while it runs it's not replayed, which would risk running it twice.
+     */
+    void take() {
+        synchronized (mLock) {
+            take(mRequests);
+            try {
+                mPending.writeByte(Record.TAKE);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            mRecords++;
+            scheduleWriteLocked();
+        }
+    }
+
+    void clear() {
+        synchronized (mLock) {
+            mRequests.clear();
+            mPendingBytes.reset();
+            mRecords = 0;
+            mCompact = true;
+            scheduleWriteLocked();
+        }
+    }
+
+    /** Chained on the previous write, so that there's only one at a time. */
+    @GuardedBy("mLock")
+    private void scheduleWriteLocked() {
+        if (mDisabled) {
+            // Records are still encoded, drop them so that they don't pile up
+            mPendingBytes.reset();
+            return;
+        }
+        if (mWriteScheduled) {
+            return;
+        }
+        mWriteScheduled = true;
+        mWriteFuture =
+                mWriteFuture
+                        .whenCompleteAsync((v, e) -> onWrite(), mIoExecutor)
+                        .exceptionally(throwIn(getMainThreadExecutor()));
+    }
+
+    private void onWrite() {
+        final byte[] bytes;
+        final boolean compact;
+        synchronized (mLock) {
+            mWriteScheduled = false;
+            compact =
+                    mCompact
+                            || (mRecords >= COMPACTION_MIN_RECORDS
+                                    && mRecords > COMPACTION_FACTOR * mRequests.size());
+            if (compact) {
+                // The pending records are already in mRequests
+                bytes = getCompactedLog();
+                mRecords = mRequests.size();
+                mCompact = false;
+            } else {
+                bytes = mPendingBytes.toByteArray();
+            }
+            mPendingBytes.reset();
+        }
+        try {
+            if (compact) {
+                File file = getFile(mContext, COMPACTION_FILE_NAME);
+                try (OutputStream output = new FileOutputStream(file)) {
+                    output.write(bytes);
+                }
+                Files.move(
+                        file.toPath(),
+                        getFile(mContext, JOURNAL_FILE_NAME).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                try (OutputStream output =
+                             new FileOutputStream(getFile(mContext, JOURNAL_FILE_NAME), true)) {
+                    output.write(bytes);
+                }
+            }
+        } catch (IOException e) {
+            onWriteFailed(e);
+            return;
+        }
+        synchronized (mLock) {
+            mWriteFailures = 0;
+        }
+    }
+
+    /** The log may be missing records or have a partial one, the retry starts over from memory. */
+    private void onWriteFailed(IOException e) {
+        synchronized (mLock) {
+            mWriteFailures++;
+            if (mWriteFailures >= MAX_WRITE_FAILURES) {
+                Log.e(TAG, "Error writing queue journal, giving up after " + mWriteFailures, e);
+                mDisabled = true;
+                mPendingBytes.reset();
+                return;
+            }
+            long delayMs = RETRY_DELAY_MS << (mWriteFailures - 1);
+            Log.w(TAG, "Error writing queue journal, retrying in " + delayMs + " ms", e);
+            mCompact = true;
+            // Holds other writes until the retry
+            mWriteScheduled = true;
+            mHandler.postDelayed(this::retryWrite, delayMs);
+        }
+    }
+
+    private void retryWrite() {
+        synchronized (mLock) {
+            mWriteScheduled = false;
+            scheduleWriteLocked();
+        }
+    }
+
+    /** With the header and a record per request, preceded by their configurations. */
+    @GuardedBy("mLock")
+    private byte[] getCompactedLog() {
+        // Records pending refer to ids in the current log, they're dropped along with it
+        mConfigurationIds.clear();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            for (TransferRequest request : mRequests) {
+                writeAdd(output, request);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Preceded by a configuration record if it's the first request with it. */
+    @GuardedBy("mLock")
+    private void writeAdd(DataOutputStream output, TransferRequest request) throws IOException {
+        Integer id = mConfigurationIds.get(request.configuration);
+        if (id == null) {
+            id = mConfigurationIds.size();
+            mConfigurationIds.put(request.configuration, id);
+            byte[] bytes = serialize(request.configuration);
+            output.writeByte(Record.CONFIGURATION);
+            output.writeInt(id);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        output.writeByte(Record.ADD);
+        output.writeInt(request.code);
+        output.writeInt(request.count);
+        output.writeInt(id);
+    }
+
+    /** Replays the log, up to the first record that can't be read, e.g. one cut short. */
+    private static List<TransferRequest> read(File file) {
+        Deque<TransferRequest> requests = new ArrayDeque<>();
+        Map<Integer, TransferConfiguration> configurations = new HashMap<>();
+        try (DataInputStream input =
+                     new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a queue journal");
+            }
+            int type;
+            while ((type = input.read()) != -1) {
+                switch (type) {
+                    case Record.CONFIGURATION:
+                        int id = input.readInt();
+                        int length = input.readInt();
+                        if (length < 0) {
+                            throw new IOException("Invalid record");
+                        }
+                        byte[] bytes = new byte[length];
+                        input.readFully(bytes);
+                        configurations.put(id, deserialize(bytes));
+                        break;
+                    case Record.ADD:
+                        int code = input.readInt();
+                        int count = input.readInt();
+                        TransferConfiguration configuration = configurations.get(input.readInt());
+                        if (count <= 0 || configuration == null) {
+                            throw new IOException("Invalid record");
+                        }
+                        requests.add(TransferRequest.create(code, configuration, count));
+                        break;
+                    case Record.TAKE:
+                        take(requests);
+                        break;
+                    default:
+                        throw new IOException("Unknown record " + type);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing was ever queued
+        } catch (EOFException e) {
+            Log.w(TAG, "Queue journal cut short, replayed up to the last complete record");
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading queue journal, replayed up to the error", e);
+        }
+        return new ArrayList<>(requests);
+    }
+
+    private static void take(Deque<TransferRequest> requests) {
+        TransferRequest request = requests.poll();
+        if (request == null) {
+            return;
+        }
+        TransferRequest rest = request.rest();
+        if (rest != null) {
+            requests.addFirst(rest);
+        }
+    }
+
+    private static byte[] serialize(TransferConfiguration configuration) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(configuration);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TransferConfiguration deserialize(byte[] bytes) throws IOException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Object configuration = input.readObject();
+            if (!(configuration instanceof TransferConfiguration)) {
+                throw new IOException("Invalid configuration " + configuration);
+            }
+            return (TransferConfiguration) configuration;
+        } catch (ClassNotFoundException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static File getFile(Context context, String name) {
+        return context.getFilesDir().toPath().resolve(name).toFile();
+    }
+
+    @IntDef({Record.ADD, Record.TAKE, Record.CONFIGURATION})
+    @Retention(RetentionPolicy.SOURCE)
+    private @interface Record {
+        int ADD = 1;
+        int TAKE = 2;
+        int CONFIGURATION = 3;
+    }
+}
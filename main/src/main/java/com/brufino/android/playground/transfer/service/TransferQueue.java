@@ -0,0 +1,268 @@
+package com.brufino.android.playground.transfer.service;
+
+import android.os.Handler;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.ComputableLiveData;
+import androidx.lifecycle.LiveData;
+import com.brufino.android.playground.transfer.QueueSnapshot;
+import com.brufino.android.playground.transfer.TransferRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.brufino.android.common.utils.Preconditions.checkNotNull;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadExecutor;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.getMainThreadHandler;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.throwIn;
+import static com.brufino.android.playground.extensions.livedata.LiveDataUtils.computableLiveData;
+
+/**
+ * Blocking FIFO of requests that publishes {@link QueueSnapshot}s instead of copies of itself.
+ * Batches, see {@link TransferRequest#count}, are kept as a single entry and split only as they
+ * are polled, so enqueueing one costs the same whatever its count. Sizes and counts per code are
+ * in transfers and kept as requests come and go, and a snapshot only walks the first
+ * {@link QueueSnapshot#HEAD_SIZE} requests. Changes are also coalesced, at most one snapshot is
+ * computed every {@link #UPDATE_INTERVAL_MS}, so a burst of thousands of requests costs constant
+ * time per request.
+ *
+ * Changes are recorded in a {@link QueueJournal}, which the queue is restored from when created.
+ * Reading it happens in the background, requests offered meanwhile are only recorded once the
+ * restored ones are back in front of them. Polling has to wait for it, see
+ * {@link #awaitRestore()}.
+ *
+ * Thread-safe.
+ */
+class TransferQueue {
+    private static final long UPDATE_INTERVAL_MS = 100;
+
+    private final Object mLock = new Object();
+    private final Handler mHandler = getMainThreadHandler();
+    private final ComputableLiveData<QueueSnapshot> mLiveSnapshot;
+    private final AtomicBoolean mUpdateScheduled = new AtomicBoolean();
+    private final Runnable mUpdate = this::update;
+    private final QueueJournal mJournal;
+    private final CompletableFuture<Void> mRestoreFuture;
+
+    @GuardedBy("mLock")
+    private final ArrayDeque<TransferRequest> mRequests = new ArrayDeque<>();
+
+    @GuardedBy("mLock")
+    private final Map<Integer, Integer> mCounts = new HashMap<>();
+
+    /** Transfers, i.e. sum of counts of mRequests. */
+    @GuardedBy("mLock")
+    private int mSize = 0;
+
+    /** Requests offered before the restore, in the queue but not in the journal yet. */
+    @GuardedBy("mLock")
+    @Nullable
+    private List<TransferRequest> mUnrecorded = new ArrayList<>();
+
+    /** Whether the queue was cleared before the restore, which then drops what it read. */
+    @GuardedBy("mLock")
+    private boolean mClearedBeforeRestore = false;
+
+    /** Opens {@code journal} and restores from it without blocking, it may read from disk. */
+    TransferQueue(QueueJournal journal) {
+        mJournal = journal;
+        mLiveSnapshot = computableLiveData(this::getSnapshot);
+        mRestoreFuture =
+                journal.open()
+                        .thenAccept(this::restore)
+                        .exceptionally(throwIn(getMainThreadExecutor()));
+    }
+
+    LiveData<QueueSnapshot> getLiveSnapshot() {
+        return mLiveSnapshot.getLiveData();
+    }
+
+    void offer(TransferRequest request) {
+        synchronized (mLock) {
+            addLocked(request);
+            if (mUnrecorded != null) {
+                mUnrecorded.add(request);
+            } else {
+                mJournal.add(request);
+            }
+            mLock.notifyAll();
+        }
+        onChanged();
+    }
+
+    /** Blocks until the requests in the journal are back in the queue, call before polling. */
+    void awaitRestore() throws InterruptedException {
+        try {
+            mRestoreFuture.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Queue not restored", e.getCause());
+        }
+    }
+
+    private void restore(List<TransferRequest> requests) {
+        synchronized (mLock) {
+            if (mClearedBeforeRestore) {
+                mJournal.clear();
+            } else {
+                for (int i = requests.size() - 1; i >= 0; i--) {
+                    addFirstLocked(requests.get(i));
+                }
+            }
+            for (TransferRequest request : checkNotNull(mUnrecorded)) {
+                mJournal.add(request);
+            }
+            mUnrecorded = null;
+            mLock.notifyAll();
+        }
+        onChanged();
+    }
+
+    /** The single request {@link #poll()} would return, null if the queue is empty. */
+    @Nullable
+    TransferRequest peek() {
+        synchronized (mLock) {
+            TransferRequest request = mRequests.peek();
+            return (request != null) ? request.next() : null;
+        }
+    }
+
+    /** Returns a single request, null if the queue is empty. */
+    @Nullable
+    TransferRequest poll() {
+        synchronized (mLock) {
+            TransferRequest request = pollLocked();
+            if (request == null) {
+                return null;
+            }
+            onChanged();
+            return request;
+        }
+    }
+
+    /** Returns null if the queue is still empty after {@code timeout}. */
+    @Nullable
+    TransferRequest poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mLock) {
+            while (mRequests.isEmpty()) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return null;
+                }
+                mLock.wait(remainingMs);
+            }
+            TransferRequest request = pollLocked();
+            onChanged();
+            return request;
+        }
+    }
+
+    /** Removes all requests, from the journal too. */
+    void clear() {
+        synchronized (mLock) {
+            clearLocked();
+            if (mUnrecorded != null) {
+                mUnrecorded.clear();
+                mClearedBeforeRestore = true;
+            } else {
+                mJournal.clear();
+            }
+        }
+        onChanged();
+    }
+
+    /**
+     * Removes all requests but leaves them in the journal, for the next queue to pick up. Returns
+     * them in order, batches not split.
+     *
+     * Waits for the restore, so that requests offered before it are recorded. It's only not done
+     * yet if the queue is dropped right after being created.
+     */
+    List<TransferRequest> detach() {
+        mRestoreFuture.join();
+        List<TransferRequest> requests;
+        synchronized (mLock) {
+            requests = new ArrayList<>(mRequests);
+            clearLocked();
+        }
+        onChanged();
+        return requests;
+    }
+
+    @GuardedBy("mLock")
+    private void addLocked(TransferRequest request) {
+        mRequests.add(request);
+        countLocked(request);
+    }
+
+    @GuardedBy("mLock")
+    private void addFirstLocked(TransferRequest request) {
+        mRequests.addFirst(request);
+        countLocked(request);
+    }
+
+    @GuardedBy("mLock")
+    private void countLocked(TransferRequest request) {
+        mSize += request.count;
+        mCounts.merge(request.code, request.count, Integer::sum);
+    }
+
+    @GuardedBy("mLock")
+    private void clearLocked() {
+        mRequests.clear();
+        mCounts.clear();
+        mSize = 0;
+    }
+
+    @GuardedBy("mLock")
+    @Nullable
+    private TransferRequest pollLocked() {
+        TransferRequest request = mRequests.poll();
+        if (request == null) {
+            return null;
+        }
+        TransferRequest rest = request.rest();
+        if (rest != null) {
+            mRequests.addFirst(rest);
+        }
+        mSize--;
+        mJournal.take();
+        mCounts.computeIfPresent(request.code, (code, count) -> (count > 1) ? count - 1 : null);
+        return request.next();
+    }
+
+    private QueueSnapshot getSnapshot() {
+        synchronized (mLock) {
+            List<TransferRequest> head = new ArrayList<>(QueueSnapshot.HEAD_SIZE);
+            Iterator<TransferRequest> iterator = mRequests.iterator();
+            while (iterator.hasNext() && head.size() < QueueSnapshot.HEAD_SIZE) {
+                TransferRequest request = iterator.next();
+                for (int i = 0; i < request.count && head.size() < QueueSnapshot.HEAD_SIZE; i++) {
+                    head.add(request.next());
+                }
+            }
+            return new QueueSnapshot(mSize, head, mCounts);
+        }
+    }
+
+    /** Schedules an update unless there's one pending, which will see this change. */
+    private void onChanged() {
+        if (mUpdateScheduled.compareAndSet(false, true)) {
+            mHandler.postDelayed(mUpdate, UPDATE_INTERVAL_MS);
+        }
+    }
+
+    private void update() {
+        // Cleared before computing, changes from now on schedule another update
+        mUpdateScheduled.set(false);
+        mLiveSnapshot.invalidate();
+    }
+}
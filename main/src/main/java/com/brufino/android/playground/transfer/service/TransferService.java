@@ -6,27 +6,24 @@ import android.app.PendingIntent;
 import android.content.Intent;
 import android.os.Process;
 import androidx.core.app.NotificationCompat;
-import androidx.lifecycle.ComputableLiveData;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import com.brufino.android.playground.R;
 import com.brufino.android.playground.components.main.MainActivity;
 import com.brufino.android.playground.extensions.NotificationUtils;
 import com.brufino.android.playground.provision.Provisioners;
+import com.brufino.android.playground.transfer.QueueSnapshot;
+import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.TransferManagerService;
 import com.brufino.android.playground.transfer.TransferRequest;
 import com.brufino.android.playground.transfer.task.TaskManager;
 import com.brufino.android.playground.transfer.task.TransferTask;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.resettingInterrupt;
-import static com.brufino.android.playground.extensions.livedata.LiveDataUtils.computableLiveData;
 
 public class TransferService extends TransferManagerService {
     private static final String THREAD_NAME = "transfer-service";
@@ -37,14 +34,19 @@ public class TransferService extends TransferManagerService {
     private static final long TIMEOUT_SHUTDOWN_MS = 2000;
 
     private final MutableLiveData<Double> mLiveThroughput = new MutableLiveData<>();
+    private final MutableLiveData<Double> mLiveTaskGap = new MutableLiveData<>();
     private final TransferServiceProvisioner mProvisioner;
-    private ComputableLiveData<List<TransferRequest>> mLiveQueue;
     private NotificationManager mNotificationManager;
     private TaskManager mTaskManager;
     private Thread mServiceThread;
 
-    /** Whenever mQueue is changed, you should call onQueueChanged(). */
-    private BlockingQueue<TransferRequest> mQueue = new LinkedBlockingQueue<>();
+    /** Last time a task terminated or, if none is running, the next one was started. */
+    private final AtomicLong mLastTerminationTime = new AtomicLong();
+
+    /** Last time a task terminated, 0 if none did. */
+    private final AtomicLong mLastEndTime = new AtomicLong();
+
+    private TransferQueue mQueue;
 
     public TransferService() {
         mProvisioner = Provisioners.get().getTransferServiceProvisioner(this);
@@ -54,9 +56,10 @@ public class TransferService extends TransferManagerService {
     public void onCreate() {
         mNotificationManager = getSystemService(NotificationManager.class);
         mTaskManager = mProvisioner.getTaskManager();
+        // Before any request, they go after the ones restored, which happens in the background
+        mQueue = new TransferQueue(mProvisioner.getQueueJournal());
         mServiceThread = new Thread(this::work, THREAD_NAME);
         mServiceThread.start();
-        mLiveQueue = computableLiveData(this::getQueue);
         super.onCreate();
     }
 
@@ -64,28 +67,38 @@ public class TransferService extends TransferManagerService {
     public void onDestroy() {
         super.onDestroy();
         // After super.onDestroy() any requests will result in a new service being spun and there
-        // will be no more direct calls to this object (like clear() for instance), so it's
-        // a good time to re-request any left over in the queue (that might have ended up there
-        // after the time-out on the service thread).
-        for (TransferRequest request : mQueue) {
-            retry(request);
+        // will be no more direct calls to this object (like clear() for instance). Requests left
+        // over in the queue (that might have ended up there after the time-out on the service
+        // thread) are still in the journal, so instead of re-requesting them one by one we start
+        // a new service, which restores them from it.
+        if (!mQueue.detach().isEmpty()) {
+            resume();
         }
         resettingInterrupt(mServiceThread::join);
         stopForeground(true);
     }
 
-    public LiveData<List<TransferRequest>> getLiveQueue() {
-        return mLiveQueue.getLiveData();
+    public LiveData<QueueSnapshot> getLiveQueue() {
+        return mQueue.getLiveSnapshot();
     }
 
     public LiveData<Double> getLiveThroughput() {
         return mLiveThroughput;
     }
 
+    /**
+     * In milliseconds, from a task terminating to the next one reading its first input from the
+     * producer. Only for tasks that were already queued, so it doesn't account for waiting for
+     * requests.
+     */
+    public LiveData<Double> getLiveTaskGap() {
+        return mLiveTaskGap;
+    }
+
     @Override
     public void clear() {
         mQueue.clear();
-        onQueueChanged();
+        mTaskManager.discardPreparedTask();
     }
 
     @Override
@@ -95,50 +108,83 @@ public class TransferService extends TransferManagerService {
 
     @Override
     protected void onHandleRequest(TransferRequest request) {
-        if (!mQueue.offer(request)) {
-            throw new AssertionError("Cannot insert element in queue");
-        }
-        onQueueChanged();
+        mQueue.offer(request);
     }
 
+    /**
+     * Dispatches requests into free slots of the task manager, only this thread starts tasks, so
+     * a slot free after {@link TaskManager#awaitFreeSlot()} stays free.
+     *
+     * After starting a task the next request in the queue, if any, is prepared, see
+     * {@link TaskManager#prepareTask(int, TransferConfiguration)}, so that its set up overlaps
+     * with the running tasks instead of adding to the gap between them.
+     */
     private void work() {
         Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        long lastStartTime = 0;
         while (true) {
             try {
-                long startTime = System.nanoTime();
-                TransferRequest request = mQueue.poll(TIMEOUT_SHUTDOWN_MS, TimeUnit.MILLISECONDS);
+                // Only waits the first time, until the journal is read
+                mQueue.awaitRestore();
+                mTaskManager.awaitFreeSlot();
+                TransferRequest request = mQueue.poll();
+                boolean queued = (request != null);
+                if (!queued) {
+                    request = mQueue.poll(TIMEOUT_SHUTDOWN_MS, TimeUnit.MILLISECONDS);
+                }
                 if (request == null) {
+                    if (mTaskManager.hasRunningTasks()) {
+                        continue;
+                    }
                     throw new TimeoutException();
                 }
-                onQueueChanged();
+                if (!mTaskManager.hasRunningTasks()) {
+                    mLastTerminationTime.set(System.nanoTime());
+                }
+                // Only measure the gap if the slot was freed by a termination since the last start
+                long endTime = mLastEndTime.get();
+                boolean measureGap = queued && endTime > lastStartTime;
+                lastStartTime = System.nanoTime();
                 final TransferTask task;
                 try {
                     task = mTaskManager.startTask(request.code, request.configuration);
                 } catch (TaskManager.ConcurrentTaskException e) {
-                    throw new IllegalStateException("A task was already running", e);
+                    throw new IllegalStateException("No free slot after waiting for one", e);
                 }
                 mNotificationManager.notify(
                         NOTIFICATION_ID, getNotification("Work " + task.getName()));
-                task.join();
-                mLiveThroughput.postValue(getThroughput(startTime));
+                task.getTermination().thenRun(this::onTaskTerminated);
+                if (measureGap) {
+                    task.getFirstInput().thenAccept(time -> onTaskFirstInput(endTime, time));
+                }
+                TransferRequest next = mQueue.peek();
+                if (next != null) {
+                    mTaskManager.prepareTask(next.code, next.configuration);
+                }
             } catch (TimeoutException | InterruptedException e) {
+                mTaskManager.discardPreparedTask();
                 stopSelf();
                 break;
             }
         }
     }
 
-    private List<TransferRequest> getQueue() {
-        return new ArrayList<>(mQueue);
+    private void onTaskTerminated() {
+        long now = System.nanoTime();
+        mLastEndTime.set(now);
+        mLiveThroughput.postValue(getThroughput(mLastTerminationTime.getAndSet(now), now));
     }
 
-    private void onQueueChanged() {
-        mLiveQueue.invalidate();
+    private void onTaskFirstInput(long previousEndTimeNano, long firstInputTimeNano) {
+        mLiveTaskGap.postValue((double) (firstInputTimeNano - previousEndTimeNano) / 1_000_000);
     }
 
-    /** Number of tasks executed in one minute. */
-    private double getThroughput(long startTimeNano) {
-        return (double) TimeUnit.MINUTES.toNanos(1) / (System.nanoTime() - startTimeNano);
+    /**
+     * Number of tasks executed in one minute, with multiple slots this is the interval between
+     * consecutive terminations.
+     */
+    private double getThroughput(long startTimeNano, long endTimeNano) {
+        return (double) TimeUnit.MINUTES.toNanos(1) / (endTimeNano - startTimeNano);
     }
 
     private Notification getNotification(String text) {
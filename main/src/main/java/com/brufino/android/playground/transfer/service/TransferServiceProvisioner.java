@@ -4,4 +4,5 @@ import com.brufino.android.playground.transfer.task.TaskManager;
 
 public interface TransferServiceProvisioner {
     TaskManager getTaskManager();
+    QueueJournal getQueueJournal();
 }
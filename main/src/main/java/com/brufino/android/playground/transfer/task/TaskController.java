@@ -11,17 +11,34 @@ import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleRegistry;
 import com.brufino.android.common.IConsumer;
 import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.common.transport.PipeTransport;
+import com.brufino.android.common.transport.SocketTransport;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.MainConstants;
 import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.extensions.concurrent.SpscBufferRing.WaitPolicy;
 import com.brufino.android.playground.extensions.livedata.ImmediateLiveData;
 import com.brufino.android.playground.extensions.permission.PermissionUtils;
 import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner.BufferMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.ConsumerMode;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier.NotifyPolicy;
 
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static com.brufino.android.common.CommonConstants.TAG;
@@ -30,27 +47,72 @@ import static com.brufino.android.playground.extensions.AndroidUtils.getDocument
 
 /** CAUTION: All these methods may be called from different threads. */
 public class TaskController {
+    /** Wraps around, by then the first streams are long released. */
+    private static final AtomicInteger sNextStream = new AtomicInteger();
+
+    /** Method tracing is process-wide, only one task traces at a time. */
+    private static final AtomicBoolean sTracing = new AtomicBoolean();
+
     private final Object mMeasurementsLock = new Object();
     private final ApplicationContext mContext;
     private final TransferConfiguration mConfiguration;
     private final LifecycleRegistry mLifecycleRegistry;
     private final Path mTraceFile;
     private final ImmediateLiveData<TaskInformation> mLiveTaskInformation;
+    private final Transport mTransport;
+
+    /** Producer stream of this task, see {@link ProducerCodes#withStream(int, int)}. */
+    private final int mStream;
+
+    private final BufferPool mBufferPool;
+
+    /** Whether other tasks ran at the same time, set by {@link TaskManager}. */
+    private volatile boolean mConcurrent = false;
+
+    /** {@link System#nanoTime()} of the first payload read from the producer. */
+    private final CompletableFuture<Long> mFirstInput = new CompletableFuture<>();
 
     @GuardedBy("mMeasurementsLock")
     private final Map<String, Collection<Long>> mMeasurements = new ArrayMap<>();
 
+    /** Sum of mMeasurements per label, so that it can be queried while the task runs. */
+    @GuardedBy("mMeasurementsLock")
+    private final Map<String, Long> mTotals = new ArrayMap<>();
+
+    @GuardedBy("mMeasurementsLock")
+    private final Map<String, Long> mCounters = new ArrayMap<>();
+
+    @GuardedBy("mMeasurementsLock")
+    private final List<Integer> mBufferSizes = new ArrayList<>();
+
     TaskController(
             ApplicationContext context,
             String name,
             TransferConfiguration configuration,
+            BufferPool bufferPool,
             LifecycleRegistry lifecycleRegistry,
             ImmediateLiveData<TaskInformation> liveTaskInformation) {
         mContext = context;
         mConfiguration = configuration;
+        mBufferPool = bufferPool;
         mLifecycleRegistry = lifecycleRegistry;
         mTraceFile = getDocumentPath(name + ".trace");
         mLiveTaskInformation = liveTaskInformation;
+        mTransport = createTransport(configuration);
+        mStream = Math.floorMod(sNextStream.getAndIncrement(), ProducerCodes.MAX_STREAMS);
+    }
+
+    private static Transport createTransport(TransferConfiguration configuration) {
+        switch (configuration.transport) {
+            case Transport.Type.PIPE:
+                return new PipeTransport();
+            case Transport.Type.SOCKET:
+                return new SocketTransport(
+                        configuration.socketSendBuffer, configuration.socketReceiveBuffer);
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown transport " + configuration.transport);
+        }
     }
 
     public Stopwatch startTime(String label) {
@@ -58,41 +120,217 @@ public class TaskController {
                 duration -> {
                     synchronized (mMeasurementsLock) {
                         mMeasurements.computeIfAbsent(label, l -> new ArrayList<>()).add(duration);
+                        mTotals.merge(label, duration, Long::sum);
                     }
                 });
     }
 
+    public void addCount(String label, long value) {
+        synchronized (mMeasurementsLock) {
+            mCounters.merge(label, value, Long::sum);
+        }
+    }
+
+    /** In nanoseconds, of all {@link #startTime(String)} stopped so far. */
+    public long getTotalTime(String label) {
+        synchronized (mMeasurementsLock) {
+            return mTotals.getOrDefault(label, 0L);
+        }
+    }
+
+    /** Records a new size picked by the {@link BufferTuner}. */
+    public void addBufferSize(int size) {
+        synchronized (mMeasurementsLock) {
+            mBufferSizes.add(size);
+        }
+    }
+
+    /**
+     * Borrows a buffer with limit {@link #getBufferSize()} from the pool, hand it back with
+     * {@link #releaseBuffer(ByteBuffer)}.
+     */
+    public ByteBuffer acquireBuffer() {
+        return acquireBuffer(getBufferSize());
+    }
+
+    public ByteBuffer acquireBuffer(int size) {
+        ByteBuffer buffer = mBufferPool.poll(size);
+        if (buffer != null) {
+            addCount("pool hit", 1);
+            return buffer;
+        }
+        addCount("pool miss", 1);
+        return mBufferPool.allocate(size);
+    }
+
+    public void releaseBuffer(ByteBuffer buffer) {
+        mBufferPool.release(buffer);
+    }
+
+    /** Can be called before started, for tasks that set up ahead of being triggered. */
     public void configure(IProducer producer) throws RemoteException {
+        Lifecycle.State state = mLifecycleRegistry.getCurrentState();
         checkState(
-                mLifecycleRegistry.getCurrentState() == Lifecycle.State.STARTED,
-                "Can only configure after started");
+                state == Lifecycle.State.INITIALIZED || state == Lifecycle.State.STARTED,
+                "Can only configure before terminated");
 
         producer.configure(
+                mStream,
                 mConfiguration.producerDataSize,
                 mConfiguration.producerChunkSize,
-                mConfiguration.producerInterval);
+                mConfiguration.producerInterval,
+                mConfiguration.producerMode,
+                mConfiguration.payload,
+                mConfiguration.payloadSeed,
+                mConfiguration.payloadCompressibility);
+        if (state != Lifecycle.State.STARTED) {
+            // Information is created with the configuration once started
+            return;
+        }
         // TODO(brufino): Only update when both updated.
         mLiveTaskInformation.updateValue(
                 taskInformation -> taskInformation.setConfiguration(mConfiguration));
     }
 
-    public void configure(IConsumer consumer) throws RemoteException {
+    /**
+     * Consumers are shared by tasks running concurrently, so this opens a session of
+     * {@code consumer} for this task and configures it. Use the session returned from then on.
+     */
+    public IConsumer configure(IConsumer consumer) throws RemoteException {
         checkState(
                 mLifecycleRegistry.getCurrentState() == Lifecycle.State.STARTED,
                 "Can only configure after started");
 
-        consumer.configure(
+        IConsumer session = consumer.openSession();
+        session.configure(
                 mConfiguration.consumerBufferSize, mConfiguration.consumerInterval);
         // TODO(brufino): Only update when both updated.
         mLiveTaskInformation.updateValue(
                 taskInformation -> taskInformation.setConfiguration(mConfiguration));
+        return session;
+    }
+
+    /**
+     * Producers are shared by tasks running concurrently, so every {@link #configure(IProducer)}
+     * MUST be matched by this once done producing.
+     */
+    public void release(IProducer producer) throws RemoteException {
+        producer.release(mStream);
+    }
+
+    /** {@code code} for the stream of this task, the one configured. */
+    public int getProducerCode(int code) {
+        return ProducerCodes.withStream(code, mStream);
+    }
+
+    /**
+     * Adds the producer counters of {@code code} prefixed with "producer ", to be called after the
+     * end of data frame was read.
+     */
+    @SuppressWarnings("unchecked")
+    public void addCounters(IProducer producer, int code) throws RemoteException {
+        Map<String, Long> counters = producer.getCounters(code);
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            addCount("producer " + counter.getKey(), counter.getValue());
+        }
+    }
+
+    /**
+     * Adds the consumer counters prefixed with "consumer ", to be called after the consumer
+     * finished.
+     */
+    @SuppressWarnings("unchecked")
+    public void addCounters(IConsumer consumer) throws RemoteException {
+        Map<String, Long> counters = consumer.getCounters();
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            addCount("consumer " + counter.getKey(), counter.getValue());
+        }
+    }
+
+    public int getProducerDataSize() {
+        return mConfiguration.producerDataSize;
+    }
+
+    public int getProducerChunkSize() {
+        return mConfiguration.producerChunkSize;
+    }
+
+    public int getInlineThreshold() {
+        return mConfiguration.inlineThreshold;
     }
 
     public int getBufferSize() {
         return mConfiguration.transferBufferSize;
     }
 
+    @BufferMode
+    public int getBufferMode() {
+        return mConfiguration.bufferMode;
+    }
+
+    public int getReadAhead() {
+        return mConfiguration.readAhead;
+    }
+
+    public int getRingDepth() {
+        return mConfiguration.ringDepth;
+    }
+
+    @WaitPolicy
+    public int getRingWaitPolicy() {
+        return mConfiguration.ringWaitPolicy;
+    }
+
+    public int getLanes() {
+        return mConfiguration.lanes;
+    }
+
+    @NotifyPolicy
+    public int getNotifyPolicy() {
+        return mConfiguration.notifyPolicy;
+    }
+
+    public int getNotifyThreshold() {
+        return mConfiguration.notifyThreshold;
+    }
+
+    @ConsumerMode
+    public int getConsumerMode() {
+        return mConfiguration.consumerMode;
+    }
+
+    public int getMappedRegionSize() {
+        return mConfiguration.mappedRegionSize;
+    }
+
+    /** Tasks obtain their links from here instead of creating pipes directly. */
+    public Transport getTransport() {
+        return mTransport;
+    }
+
+    /** Effective SO_SNDBUF of the links, 0 if they aren't sockets. */
+    int getEffectiveSocketSendBuffer() {
+        return (mTransport instanceof SocketTransport)
+                ? ((SocketTransport) mTransport).getEffectiveSendBufferSize()
+                : 0;
+    }
+
+    /** Effective SO_RCVBUF of the links, 0 if they aren't sockets. */
+    int getEffectiveSocketReceiveBuffer() {
+        return (mTransport instanceof SocketTransport)
+                ? ((SocketTransport) mTransport).getEffectiveReceiveBufferSize()
+                : 0;
+    }
+
+    /** For files private to the app that can be deleted anytime. */
+    public File getCacheDir() {
+        return mContext.getContext().getCacheDir();
+    }
+
     public void addInputRead(int sizeRead) {
+        if (!mFirstInput.isDone()) {
+            mFirstInput.complete(System.nanoTime());
+        }
         mLiveTaskInformation.updateValue(
                 taskInformation -> taskInformation.addInputRead(sizeRead));
     }
@@ -102,8 +340,12 @@ public class TaskController {
                 taskInformation -> taskInformation.addOutputWritten(sizeWritten));
     }
 
+    /**
+     * Skipped if other tasks are running, tracing is process-wide and they would start and stop
+     * each other's traces.
+     */
     public boolean startTracing() {
-        if (!MainConstants.DEBUG || Files.exists(mTraceFile)) {
+        if (!MainConstants.DEBUG || mConcurrent || Files.exists(mTraceFile)) {
             return false;
         }
         if (!PermissionUtils.hasPermission(
@@ -115,6 +357,9 @@ public class TaskController {
                             mTraceFile));
             return false;
         }
+        if (!sTracing.compareAndSet(false, true)) {
+            return false;
+        }
         Debug.startMethodTracing(mTraceFile.toString());
         return true;
     }
@@ -122,15 +367,38 @@ public class TaskController {
     public void stopTracing(boolean tracing) {
         if (MainConstants.DEBUG && tracing) {
             Debug.stopMethodTracing();
+            sTracing.set(false);
         }
     }
 
+    void setConcurrent() {
+        mConcurrent = true;
+    }
+
+    CompletableFuture<Long> getFirstInput() {
+        return mFirstInput;
+    }
+
     Map<String, Collection<Long>> getMeasurements() {
         synchronized (mMeasurementsLock) {
             return mMeasurements;
         }
     }
 
+    /** Returns a copy. */
+    List<Integer> getBufferSizes() {
+        synchronized (mMeasurementsLock) {
+            return new ArrayList<>(mBufferSizes);
+        }
+    }
+
+    /** Returns a copy. */
+    Map<String, Long> getCounters() {
+        synchronized (mMeasurementsLock) {
+            return new HashMap<>(mCounters);
+        }
+    }
+
     public static class Stopwatch {
         private static Stopwatch now(Consumer<Long> onStopListener) {
             return new Stopwatch(System.nanoTime(), onStopListener);
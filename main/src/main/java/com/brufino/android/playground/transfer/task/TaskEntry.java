@@ -2,18 +2,21 @@ package com.brufino.android.playground.transfer.task;
 
 import androidx.annotation.Nullable;
 import com.brufino.android.playground.transfer.TransferCancelledException;
+import com.brufino.android.playground.extensions.ViewUtils;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static com.brufino.android.playground.extensions.StringUtils.indent;
 import static com.brufino.android.playground.extensions.ViewUtils.sizeString;
+import static java.util.stream.Collectors.joining;
 
 public class TaskEntry implements Serializable {
     private static final long serialVersionUID = 7075130700466722239L;
@@ -24,6 +27,25 @@ public class TaskEntry implements Serializable {
     public final int outputWritten;
     public final TransferConfiguration configuration;
     @Nullable public final Map<String, TaskMeasurement> measurements;
+    /** Null for entries persisted before counters were introduced. */
+    @Nullable public final Map<String, Long> counters;
+    /**
+     * SO_SNDBUF reported by the kernel for the links, which may differ from the configured one. 0
+     * if the links weren't sockets.
+     */
+    public final int socketSendBuffer;
+    /** Same as {@link #socketSendBuffer} for SO_RCVBUF. */
+    public final int socketReceiveBuffer;
+    /**
+     * Most tasks running at the same time while this one was running, including itself. 0 for
+     * entries persisted before slots were introduced.
+     */
+    public final int concurrency;
+    /**
+     * Sizes picked by the adaptive buffer tuner in order, empty if the buffer was fixed. Null for
+     * entries persisted before the tuner was introduced.
+     */
+    @Nullable public final List<Integer> bufferSizes;
     @Nullable public final Exception exception;
 
     TaskEntry(
@@ -33,6 +55,11 @@ public class TaskEntry implements Serializable {
             int outputWritten,
             TransferConfiguration configuration,
             @Nullable Map<String, TaskMeasurement> measurements,
+            @Nullable Map<String, Long> counters,
+            int socketSendBuffer,
+            int socketReceiveBuffer,
+            int concurrency,
+            @Nullable List<Integer> bufferSizes,
             @Nullable Exception exception) {
         this.name = name;
         this.duration = duration;
@@ -40,6 +67,11 @@ public class TaskEntry implements Serializable {
         this.outputWritten = outputWritten;
         this.configuration = configuration;
         this.measurements = measurements;
+        this.counters = counters;
+        this.socketSendBuffer = socketSendBuffer;
+        this.socketReceiveBuffer = socketReceiveBuffer;
+        this.concurrency = concurrency;
+        this.bufferSizes = bufferSizes;
         this.exception = exception;
     }
 
@@ -60,6 +92,11 @@ public class TaskEntry implements Serializable {
                 + indent(i) + "output written = " + sizeString(outputWritten) + "\n"
                 + indent(i) + "configuration = " + configuration.toMultilineString(i + 1) + "\n"
                 + indent(i) + "measurements = " + measurementsToMultilineString(i + 1) + "\n"
+                + indent(i) + "counters = " + countersToMultilineString(i + 1) + "\n"
+                + indent(i) + "socket send buffer = " + sizeString(socketSendBuffer) + "\n"
+                + indent(i) + "socket receive buffer = " + sizeString(socketReceiveBuffer) + "\n"
+                + indent(i) + "concurrency = " + concurrency + "\n"
+                + indent(i) + "buffer sizes = " + bufferSizesToString() + "\n"
                 + indent(i - 1) + "}";
     }
 
@@ -70,6 +107,13 @@ public class TaskEntry implements Serializable {
         return "failed (" + exception.getClass().getSimpleName() + ")";
     }
 
+    private String bufferSizesToString() {
+        if (bufferSizes == null) {
+            return "null";
+        }
+        return bufferSizes.stream().map(ViewUtils::sizeString).collect(joining(" -> "));
+    }
+
     private String measurementsToMultilineString(int i) {
         StringBuilder string = new StringBuilder("Map<String, TaskMeasurement>{\n");
         for (Map.Entry<String, TaskMeasurement> entry : measurements.entrySet()) {
@@ -86,6 +130,23 @@ public class TaskEntry implements Serializable {
         return string.toString();
     }
 
+    private String countersToMultilineString(int i) {
+        if (counters == null) {
+            return "null";
+        }
+        StringBuilder string = new StringBuilder("Map<String, Long>{\n");
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            string
+                    .append(indent(i))
+                    .append(entry.getKey())
+                    .append(" = ")
+                    .append(entry.getValue())
+                    .append("\n");
+        }
+        string.append(indent(i - 1)).append("}");
+        return string.toString();
+    }
+
     private String measurementToMultilineString(int i, TaskMeasurement measurement) {
         long oneMsNanos = TimeUnit.MILLISECONDS.toNanos(1);
         double average =  measurement.getAverage() / oneMsNanos;
@@ -24,39 +24,46 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 
 import static com.brufino.android.common.CommonConstants.TAG;
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
 import static com.brufino.android.common.utils.Preconditions.checkNotNull;
 import static com.brufino.android.playground.extensions.livedata.LiveDataUtils.computableLiveData;
 
 public class TaskManager {
     private static final String THREAD_NAME = "task-manager";
 
+    /** Upper bound of {@link #setSlots(int)}, slots LiveData are created upfront. */
+    public static final int MAX_SLOTS = 8;
+
     private final Object mTaskLock = new Object();
     private final Context mContext;
     private final Looper mLooper;
-    private final MutableLiveData<Optional<TransferTask>> mLiveTask = new MutableLiveData<>();
-    private final LiveData<Optional<TaskInformation>> mTaskInformation;
     private final ComputableLiveData<List<TaskEntry>> mLiveHistory;
     private final TaskFactory mTaskFactory;
     private final TaskHistory mTaskHistory;
+    private final Slot[] mSlots = new Slot[MAX_SLOTS];
 
     @GuardedBy("mTaskLock")
     private final List<TaskEntry> mHistory;
 
+    /** Number of slots that can run tasks, the others stay empty. */
+    @GuardedBy("mTaskLock")
+    private int mActiveSlots = 1;
+
+    /** Built and set up by {@link #prepareTask(int, TransferConfiguration)}, not started yet. */
     @GuardedBy("mTaskLock")
     @Nullable
-    private TransferTask mTask;
+    private PreparedTask mPreparedTask;
 
+    private volatile boolean mPrepareEnabled = true;
 
     @MainThread
     public TaskManager(
             ApplicationContext context,
             TaskFactory taskFactory,
             TaskHistory taskHistory) {
-        mTaskInformation =
-                Transform.source(mLiveTask)
-                        .<TransferTask>optional()
-                        .switchMapIfPresent(TransferTask::getLiveTaskInformation)
-                        .getLiveData();
+        for (int i = 0; i < MAX_SLOTS; i++) {
+            mSlots[i] = new Slot(i);
+        }
         mContext = context.getContext();
         mTaskFactory = taskFactory;
         mTaskHistory = taskHistory;
@@ -73,8 +80,14 @@ public class TaskManager {
         }
     }
 
+    /** Of the first slot. */
     public LiveData<Optional<TaskInformation>> getTaskInformation() {
-        return mTaskInformation;
+        return getTaskInformation(0);
+    }
+
+    public LiveData<Optional<TaskInformation>> getTaskInformation(int slot) {
+        checkArgument(slot >= 0 && slot < MAX_SLOTS, "Invalid slot " + slot);
+        return mSlots[slot].mTaskInformation;
     }
 
     public LiveData<List<TaskEntry>> getLiveHistory() {
@@ -88,6 +101,84 @@ public class TaskManager {
         }
     }
 
+    /**
+     * Tasks already running in slots above {@code slots} keep running, but no new task is started
+     * in them.
+     */
+    public void setSlots(int slots) {
+        checkArgument(slots > 0 && slots <= MAX_SLOTS, "Invalid slots " + slots);
+        synchronized (mTaskLock) {
+            mActiveSlots = slots;
+            mTaskLock.notifyAll();
+        }
+    }
+
+    public boolean isPrepareEnabled() {
+        return mPrepareEnabled;
+    }
+
+    /**
+     * While disabled {@link #prepareTask(int, TransferConfiguration)} does nothing and tasks set
+     * themselves up once started, which is useful to measure what preparing saves.
+     */
+    public void setPrepareEnabled(boolean enabled) {
+        mPrepareEnabled = enabled;
+        if (!enabled) {
+            discardPreparedTask();
+        }
+    }
+
+    /**
+     * Builds the task and lets it set itself up, see {@link TransferTask#onPrepare()}, so that a
+     * later {@link #startTask(int, TransferConfiguration)} with the same arguments starts it right
+     * away. Only one task is kept prepared, preparing another discards it.
+     */
+    public void prepareTask(
+            @TransferManager.Code int code, TransferConfiguration configuration) {
+        if (!mPrepareEnabled) {
+            return;
+        }
+        synchronized (mTaskLock) {
+            if (mPreparedTask != null && mPreparedTask.matches(code, configuration)) {
+                return;
+            }
+            discardPreparedTaskLocked();
+            TransferTask task = mTaskFactory.getTask(code, configuration, mLooper);
+            task.prepare();
+            mPreparedTask = new PreparedTask(code, configuration, task);
+        }
+    }
+
+    /** For when the request prepared is not going to be started, e.g. the queue was cleared. */
+    public void discardPreparedTask() {
+        synchronized (mTaskLock) {
+            discardPreparedTaskLocked();
+        }
+    }
+
+    @GuardedBy("mTaskLock")
+    private void discardPreparedTaskLocked() {
+        if (mPreparedTask != null) {
+            mPreparedTask.mTask.discard();
+            mPreparedTask = null;
+        }
+    }
+
+    /** Blocks until {@link #startTask(int, TransferConfiguration)} can be called. */
+    public void awaitFreeSlot() throws InterruptedException {
+        synchronized (mTaskLock) {
+            while (getFreeSlotLocked() == null) {
+                mTaskLock.wait();
+            }
+        }
+    }
+
+    public boolean hasRunningTasks() {
+        synchronized (mTaskLock) {
+            return getRunningTasksLocked() > 0;
+        }
+    }
+
     @GuardedBy("mTaskLock")
     private void onHistoryChangedLocked() {
         mLiveHistory.invalidate();
@@ -95,40 +186,128 @@ public class TaskManager {
     }
 
     @GuardedBy("mTaskLock")
-    private void setTaskLocked(@Nullable TransferTask task) {
-        mTask = task;
-        mLiveTask.postValue(Optional.ofNullable(task));
+    @Nullable
+    private Slot getFreeSlotLocked() {
+        for (int i = 0; i < mActiveSlots; i++) {
+            if (mSlots[i].mTask == null) {
+                return mSlots[i];
+            }
+        }
+        return null;
+    }
+
+    @GuardedBy("mTaskLock")
+    private int getRunningTasksLocked() {
+        int running = 0;
+        for (Slot slot : mSlots) {
+            if (slot.mTask != null) {
+                running++;
+            }
+        }
+        return running;
     }
 
     public TransferTask startTask(
             @TransferManager.Code int code,
             TransferConfiguration configuration) throws ConcurrentTaskException {
         synchronized (mTaskLock) {
-            if (mTask != null) {
+            Slot slot = getFreeSlotLocked();
+            if (slot == null) {
                 throw new ConcurrentTaskException(
-                        "Task " + mTask + " already running, can't start another");
+                        "All " + mActiveSlots + " slots busy, can't start another task");
+            }
+            final TransferTask task;
+            if (mPreparedTask != null && mPreparedTask.matches(code, configuration)) {
+                task = mPreparedTask.mTask;
+                mPreparedTask = null;
+            } else {
+                task = mTaskFactory.getTask(code, configuration, mLooper);
             }
-            TransferTask task = mTaskFactory.getTask(code, configuration, mLooper);
             Lifecycle taskLifecycle = task.getLifecycle();
-            taskLifecycle.addObserver(new TaskObserver());
-            Log.d(TAG, "Triggering task " + task.getName() + " with " + configuration);
+            taskLifecycle.addObserver(new TaskObserver(slot));
+            Log.d(TAG, "Triggering task " + task.getName() + " in slot " + slot.mIndex
+                    + " with " + configuration);
             task.trigger();
-            setTaskLocked(task);
+            slot.setTaskLocked(task);
+            int running = getRunningTasksLocked();
+            for (Slot other : mSlots) {
+                if (other.mTask != null) {
+                    other.mConcurrency = Math.max(other.mConcurrency, running);
+                    if (running > 1) {
+                        other.mTask.setConcurrent();
+                    }
+                }
+            }
             return task;
         }
     }
 
-    /** Cancels the currently running task. */
+    /** Cancels the currently running tasks, the future completes once all of them are done. */
     @Nullable
     public CompletableFuture<Void> cancelTask() throws NoTaskRunningException {
-        final TransferTask task;
+        List<TransferTask> tasks = new ArrayList<>();
         synchronized (mTaskLock) {
-            if (mTask == null) {
-                throw new NoTaskRunningException("Can't cancel task.");
+            for (Slot slot : mSlots) {
+                if (slot.mTask != null) {
+                    tasks.add(slot.mTask);
+                }
             }
-            task = mTask;
         }
-        return task.cancel();
+        if (tasks.isEmpty()) {
+            throw new NoTaskRunningException("Can't cancel task.");
+        }
+        return CompletableFuture.allOf(
+                tasks.stream().map(TransferTask::cancel).toArray(CompletableFuture[]::new));
+    }
+
+    private class Slot {
+        private final int mIndex;
+        private final MutableLiveData<Optional<TransferTask>> mLiveTask = new MutableLiveData<>();
+        private final LiveData<Optional<TaskInformation>> mTaskInformation;
+
+        @GuardedBy("mTaskLock")
+        @Nullable
+        private TransferTask mTask;
+
+        /** Most tasks running at the same time while mTask was running, including itself. */
+        @GuardedBy("mTaskLock")
+        private int mConcurrency;
+
+        private Slot(int index) {
+            mIndex = index;
+            mTaskInformation =
+                    Transform.source(mLiveTask)
+                            .<TransferTask>optional()
+                            .switchMapIfPresent(TransferTask::getLiveTaskInformation)
+                            .getLiveData();
+        }
+
+        @GuardedBy("mTaskLock")
+        private void setTaskLocked(@Nullable TransferTask task) {
+            mTask = task;
+            mConcurrency = 0;
+            mLiveTask.postValue(Optional.ofNullable(task));
+        }
+    }
+
+    private static class PreparedTask {
+        @TransferManager.Code private final int mCode;
+        private final TransferConfiguration mConfiguration;
+        private final TransferTask mTask;
+
+        private PreparedTask(
+                @TransferManager.Code int code,
+                TransferConfiguration configuration,
+                TransferTask task) {
+            mCode = code;
+            mConfiguration = configuration;
+            mTask = task;
+        }
+
+        private boolean matches(
+                @TransferManager.Code int code, TransferConfiguration configuration) {
+            return mCode == code && mConfiguration.equals(configuration);
+        }
     }
 
     /**
@@ -137,12 +316,19 @@ public class TaskManager {
      * depending on the main-thread, such as bindService() and its connection.
      */
     private class TaskObserver implements DefaultLifecycleObserver {
+        private final Slot mSlot;
+
+        private TaskObserver(Slot slot) {
+            mSlot = slot;
+        }
+
         @Override
         public void onStop(LifecycleOwner owner) {
             synchronized (mTaskLock) {
-                checkNotNull(mTask);
-                TaskInformation information = checkNotNull(mTask.getTaskInformation());
-                Map<String, TaskMeasurement> measurements = mTask.getMeasurements();
+                TransferTask task = checkNotNull(mSlot.mTask);
+                TaskInformation information = checkNotNull(task.getTaskInformation());
+                Map<String, TaskMeasurement> measurements = task.getMeasurements();
+                Map<String, Long> counters = task.getCounters();
                 mHistory.add(
                         new TaskEntry(
                                 information.name,
@@ -151,9 +337,15 @@ public class TaskManager {
                                 information.outputWritten,
                                 information.configuration,
                                 measurements,
+                                counters,
+                                task.getEffectiveSocketSendBuffer(),
+                                task.getEffectiveSocketReceiveBuffer(),
+                                mSlot.mConcurrency,
+                                task.getBufferSizes(),
                                 information.exception));
                 onHistoryChangedLocked();
-                setTaskLocked(null);
+                mSlot.setTaskLocked(null);
+                mTaskLock.notifyAll();
             }
         }
     }
@@ -7,6 +7,7 @@ import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LifecycleRegistry;
 import androidx.lifecycle.LiveData;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.concurrent.HandlerExecutor;
 import com.brufino.android.playground.extensions.livedata.ImmediateLiveData;
@@ -14,6 +15,7 @@ import com.brufino.android.playground.transfer.TransferCancellationFailedExcepti
 import com.brufino.android.playground.transfer.TransferCancelledException;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -55,6 +57,7 @@ public abstract class TransferTask implements LifecycleOwner {
             ApplicationContext context,
             Looper looper,
             TransferConfiguration configuration,
+            BufferPool bufferPool,
             String name) {
         mContext = context;
         mHandler = new Handler(looper);
@@ -70,6 +73,7 @@ public abstract class TransferTask implements LifecycleOwner {
                         context,
                         name,
                         configuration,
+                        bufferPool,
                         mLifecycleRegistry,
                         mLiveTaskInformation);
         mCancelRequested = false;
@@ -86,7 +90,12 @@ public abstract class TransferTask implements LifecycleOwner {
     }
 
     public void join() {
-        mResult.exceptionally(t -> null).join();
+        getTermination().join();
+    }
+
+    /** Completes normally once the task terminates, successfully or not. */
+    public CompletableFuture<Void> getTermination() {
+        return mResult.exceptionally(t -> null);
     }
 
     /**
@@ -107,6 +116,26 @@ public abstract class TransferTask implements LifecycleOwner {
 
     }
 
+    /**
+     * Completes with {@link System#nanoTime()} once the first payload is read from the producer,
+     * i.e. when the set up is over and data is flowing. Never completes if that doesn't happen.
+     */
+    public CompletableFuture<Long> getFirstInput() {
+        return mController.getFirstInput();
+    }
+
+    /**
+     * Called before {@link #onStart()}, while other tasks may still be running, so that the task
+     * can set itself up ahead of time. MUST NOT block. Either {@link #onStart()} or
+     * {@link #onDiscard()} follows.
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected void onPrepare() {}
+
+    /** The task was prepared but won't be started, release what {@link #onPrepare()} acquired. */
+    @SuppressWarnings("WeakerAccess")
+    protected void onDiscard() {}
+
     /** When this method is called the task is already in STARTED state. */
     protected abstract void onStart();
 
@@ -155,6 +184,46 @@ public abstract class TransferTask implements LifecycleOwner {
                                                 entry.getValue())));
     }
 
+    /** Only call this after task has finished. */
+    Map<String, Long> getCounters() {
+        checkState(mLifecycleRegistry.getCurrentState() == Lifecycle.State.CREATED);
+        return mController.getCounters();
+    }
+
+    /** Only call this after task has finished. */
+    List<Integer> getBufferSizes() {
+        checkState(mLifecycleRegistry.getCurrentState() == Lifecycle.State.CREATED);
+        return mController.getBufferSizes();
+    }
+
+    /** Effective socket buffer sizes are only known after the links are created. */
+    int getEffectiveSocketSendBuffer() {
+        return mController.getEffectiveSocketSendBuffer();
+    }
+
+    int getEffectiveSocketReceiveBuffer() {
+        return mController.getEffectiveSocketReceiveBuffer();
+    }
+
+    void prepare() {
+        checkState(
+                mLifecycleRegistry.getCurrentState() == Lifecycle.State.INITIALIZED,
+                "Task already executed.");
+        onPrepare();
+    }
+
+    /** Other tasks are running at the same time, see {@link TaskController#startTracing()}. */
+    void setConcurrent() {
+        mController.setConcurrent();
+    }
+
+    void discard() {
+        checkState(
+                mLifecycleRegistry.getCurrentState() == Lifecycle.State.INITIALIZED,
+                "Task already executed.");
+        onDiscard();
+    }
+
     void trigger() {
         checkState(
                  mLifecycleRegistry.getCurrentState() == Lifecycle.State.INITIALIZED,
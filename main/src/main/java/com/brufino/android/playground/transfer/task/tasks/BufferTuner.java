@@ -0,0 +1,102 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import androidx.annotation.IntDef;
+import com.brufino.android.playground.transfer.task.TaskController;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Picks how many bytes the middleman moves per iteration. In {@link BufferMode#ADAPTIVE} it starts
+ * at {@link #MIN_SIZE} and hill-climbs in powers of 2 up to {@link TaskController#getBufferSize()},
+ * which is still the size of the buffers acquired.
+ *
+ * Every {@link #WINDOW} iterations it compares the time spent per byte in "read", "write" and the
+ * consumer notification, as recorded by {@link TaskController#startTime(String)}, with the previous
+ * window. If it got better it keeps going in the same direction, otherwise it turns around, so it
+ * ends up oscillating around the best size. Sizes picked are recorded in the controller.
+ *
+ * Not thread-safe.
+ */
+public class BufferTuner {
+    public static final int MIN_SIZE = 1024;
+    private static final int WINDOW = 8;
+
+    private final TaskController mController;
+    @BufferMode private final int mMode;
+    private final String[] mLabels;
+    private final int mMaxSize;
+    private int mSize;
+    private boolean mGrowing = true;
+    private int mIterations = 0;
+    private long mBytes = 0;
+    private long mWindowStartNanos;
+    private double mLastCost = Double.NaN;
+
+    /** {@code notifyLabel} is the label the consumer notification is timed with. */
+    public BufferTuner(TaskController controller, String notifyLabel) {
+        mController = controller;
+        mMode = controller.getBufferMode();
+        mLabels = new String[] {"read", "write", notifyLabel};
+        mMaxSize = controller.getBufferSize();
+        mSize = (mMode == BufferMode.ADAPTIVE) ? Math.min(MIN_SIZE, mMaxSize) : mMaxSize;
+        if (mMode == BufferMode.ADAPTIVE) {
+            mController.addBufferSize(mSize);
+            mWindowStartNanos = getTotalNanos();
+        }
+    }
+
+    /** Bytes to read in the next iteration. */
+    public int getSize() {
+        return mSize;
+    }
+
+    /** To be called after each iteration that moved {@code size} bytes. */
+    public void onIteration(int size) {
+        if (mMode != BufferMode.ADAPTIVE) {
+            return;
+        }
+        mBytes += size;
+        if (++mIterations < WINDOW) {
+            return;
+        }
+        long totalNanos = getTotalNanos();
+        double cost = (double) (totalNanos - mWindowStartNanos) / mBytes;
+        if (!Double.isNaN(mLastCost) && cost > mLastCost) {
+            mGrowing = !mGrowing;
+        }
+        int size = mGrowing ? mSize * 2 : mSize / 2;
+        if (size < MIN_SIZE || size > mMaxSize) {
+            mGrowing = !mGrowing;
+            size = mGrowing ? mSize * 2 : mSize / 2;
+        }
+        if (size >= MIN_SIZE && size <= mMaxSize && size != mSize) {
+            mSize = size;
+            mController.addBufferSize(mSize);
+        }
+        mLastCost = cost;
+        mIterations = 0;
+        mBytes = 0;
+        mWindowStartNanos = totalNanos;
+    }
+
+    private long getTotalNanos() {
+        long total = 0;
+        for (String label : mLabels) {
+            total += mController.getTotalTime(label);
+        }
+        return total;
+    }
+
+    @IntDef({
+            BufferMode.FIXED,
+            BufferMode.ADAPTIVE,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface BufferMode {
+        /** Always {@link TaskController#getBufferSize()}. */
+        int FIXED = 0;
+        /** Tuned during the transfer, see {@link BufferTuner}. */
+        int ADAPTIVE = 1;
+    }
+}
@@ -0,0 +1,123 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+
+/**
+ * Same as {@link FrameDecoder} but reads from a channel into a {@link ByteBuffer}, which should be
+ * direct to avoid copying the data into the Java heap. A slice returned by {@link #read(int)} is
+ * only valid until the next call.
+ *
+ * Not thread-safe.
+ */
+public class ChannelFrameDecoder {
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private final ReadableByteChannel mInput;
+    private final ByteBuffer mBuffer;
+    private final ByteBuffer mSlice;
+    private final int mCapacity;
+    private int mFrameRemaining;
+    private boolean mEndOfData;
+
+    /**
+     * The buffer will be used from position 0 to its current limit, the producer protocol is
+     * big-endian so it will also have its order changed.
+     */
+    public ChannelFrameDecoder(ReadableByteChannel input, ByteBuffer buffer) {
+        checkArgument(buffer.limit() >= HEADER_SIZE, "Buffer can't fit frame header");
+        mInput = input;
+        mBuffer = buffer;
+        mCapacity = buffer.limit();
+        mBuffer.order(ByteOrder.BIG_ENDIAN);
+        // Buffer is kept in read mode, i.e. [position, limit) are the bytes not consumed yet
+        mBuffer.limit(0).position(0);
+        mSlice = mBuffer.duplicate();
+        mFrameRemaining = 0;
+        mEndOfData = false;
+    }
+
+    /**
+     * Returns the size of the next payload slice, at most {@code maxSize}, or -1 if the end of
+     * data frame was reached. Slice is available via {@link #getSlice()}.
+     */
+    public int read(int maxSize) throws IOException {
+        checkArgument(maxSize > 0);
+        if (mEndOfData) {
+            return -1;
+        }
+        if (mFrameRemaining == 0) {
+            int frameSize = readHeader();
+            if (frameSize == 0) {
+                mEndOfData = true;
+                return -1;
+            }
+            if (frameSize < 0) {
+                throw new IOException("Invalid frame size " + frameSize);
+            }
+            mFrameRemaining = frameSize;
+        }
+        if (!mBuffer.hasRemaining()) {
+            mBuffer.limit(0).position(0);
+            while (!mBuffer.hasRemaining()) {
+                fill();
+            }
+        }
+        int size = Math.min(Math.min(mFrameRemaining, mBuffer.remaining()), maxSize);
+        int start = mBuffer.position();
+        mSlice.limit(start + size).position(start);
+        mBuffer.position(start + size);
+        mFrameRemaining -= size;
+        return size;
+    }
+
+    /** View of the buffer with position and limit delimiting the last slice read. */
+    public ByteBuffer getSlice() {
+        return mSlice;
+    }
+
+    /** Whether the end of data frame was reached. */
+    public boolean isFinished() {
+        return mEndOfData;
+    }
+
+    private int readHeader() throws IOException {
+        if (mBuffer.remaining() < HEADER_SIZE) {
+            compact();
+            while (mBuffer.remaining() < HEADER_SIZE) {
+                fill();
+            }
+        }
+        return mBuffer.getInt();
+    }
+
+    /** Moves the unread bytes to the start of the buffer. */
+    private void compact() {
+        int remaining = mBuffer.remaining();
+        mBuffer.compact();
+        mBuffer.limit(remaining).position(0);
+    }
+
+    /** Reads as much as it fits after the limit, blocking until at least one byte is available. */
+    private void fill() throws IOException {
+        checkState(mBuffer.limit() < mCapacity, "Buffer full");
+        int position = mBuffer.position();
+        int limit = mBuffer.limit();
+        mBuffer.limit(mCapacity).position(limit);
+        int sizeRead;
+        try {
+            sizeRead = mInput.read(mBuffer);
+        } finally {
+            mBuffer.limit(mBuffer.position()).position(position);
+        }
+        if (sizeRead < 0) {
+            throw new EOFException("Unexpected EOF");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import com.brufino.android.common.IConsumerCallback;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Credit-based flow control for consumers started with {@link
+ * com.brufino.android.common.IConsumer#startAsync}. Each credit is one byte that may be in the
+ * consumer pipe but not consumed yet, writers take credits before writing and the consumer gives
+ * them back via {@link IConsumerCallback#onConsumed(int)}.
+ */
+public class ConsumerCredits extends IConsumerCallback.Stub {
+    private final Semaphore mCredits;
+
+    public ConsumerCredits(int credits) {
+        mCredits = new Semaphore(credits);
+    }
+
+    /** Returns false if there are not enough credits right now. */
+    public boolean tryAcquire(int credits) {
+        return mCredits.tryAcquire(credits);
+    }
+
+    public void acquire(int credits, long timeoutMs)
+            throws InterruptedException, TimeoutException {
+        if (!mCredits.tryAcquire(credits, timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Consumer didn't consume data in time");
+        }
+    }
+
+    @Override
+    public void onConsumed(int bytes) {
+        mCredits.release(bytes);
+    }
+}
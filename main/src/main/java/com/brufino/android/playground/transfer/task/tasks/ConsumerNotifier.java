@@ -0,0 +1,181 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.brufino.android.common.IConsumer;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.playground.transfer.TransferConfiguration.notifyPolicyToString;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.sendDataAvailableToConsumer;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.sendDataReceivedToConsumer;
+
+/**
+ * Decides when to notify the consumer of data written to its link, possibly aggregating multiple
+ * writes into a single call according to the {@link NotifyPolicy}.
+ *
+ * In {@link ConsumerMode#SYNC} the consumer only reads from the link when notified, so regardless
+ * of policy we notify before the bytes pending plus the next write could exceed
+ * {@link Transport#getCapacity()}, otherwise the next write would block forever.
+ *
+ * In {@link ConsumerMode#ASYNC} notifications are oneway and writers call {@link
+ * #awaitCredit(int)} before each write, which keeps at most {@link Transport#getCapacity()} bytes
+ * not consumed yet, see {@link ConsumerCredits}.
+ *
+ * In {@link ConsumerMode#STREAM} the consumer drains the link on its own, notifications are only
+ * hints and writes simply block while the link is full, so the policy alone decides.
+ *
+ * Not thread-safe.
+ */
+public class ConsumerNotifier {
+    private final TaskController mController;
+    private final IConsumer mConsumer;
+    @ConsumerMode private final int mMode;
+    @NotifyPolicy private final int mPolicy;
+    private final int mThreshold;
+    private final int mCapacity;
+    private final int mMaxWriteSize;
+    private final String mLabel;
+    @Nullable private final ConsumerCredits mCredits;
+    private int mPendingBytes = 0;
+    private int mPendingWrites = 0;
+    private long mFirstPendingWriteMs;
+
+    public ConsumerNotifier(TaskController controller, IConsumer consumer) {
+        mController = controller;
+        mConsumer = consumer;
+        mMode = controller.getConsumerMode();
+        mPolicy = controller.getNotifyPolicy();
+        mThreshold = controller.getNotifyThreshold();
+        mCapacity = controller.getTransport().getCapacity();
+        mMaxWriteSize = Math.min(controller.getBufferSize(), mCapacity);
+        String method = (mMode == ConsumerMode.ASYNC) ? "onDataAvailable" : "onDataReceived";
+        mLabel =
+                (mPolicy == NotifyPolicy.IMMEDIATE)
+                        ? method
+                        : method + " (" + notifyPolicyToString(mPolicy) + ")";
+        mCredits =
+                (mMode == ConsumerMode.ASYNC)
+                        ? new ConsumerCredits(mCapacity)
+                        : null;
+    }
+
+    /** What the notification calls are timed as in the controller. */
+    public String getLabel() {
+        return mLabel;
+    }
+
+    /** Hands the read end of the link to the consumer. */
+    public void start(ParcelFileDescriptor input) throws RemoteException {
+        if (mCredits != null) {
+            mConsumer.startAsync(input, mCredits);
+        } else if (mMode == ConsumerMode.STREAM) {
+            mConsumer.startStream(input);
+        } else {
+            mConsumer.start(input);
+        }
+    }
+
+    /** To be called before writing {@code size} bytes to the consumer link. */
+    public void awaitCredit(int size)
+            throws RemoteException, InterruptedException, TimeoutException {
+        if (mCredits == null || mCredits.tryAcquire(size)) {
+            return;
+        }
+        // The consumer won't give credits back for bytes it doesn't know about
+        flush();
+        mController.addCount("credit stalls", 1);
+        TaskController.Stopwatch time = mController.startTime("credit wait");
+        mCredits.acquire(size, TransferTask.TASK_TIME_OUT_MS);
+        time.stop();
+    }
+
+    /** To be called after {@code size} bytes were written to the consumer link. */
+    public void onWritten(int size) throws RemoteException {
+        if (mPendingWrites == 0) {
+            mFirstPendingWriteMs = System.currentTimeMillis();
+        }
+        mPendingBytes += size;
+        mPendingWrites++;
+        if (isThresholdReached()
+                || (mMode != ConsumerMode.STREAM && mPendingBytes + mMaxWriteSize > mCapacity)) {
+            flush();
+        }
+    }
+
+    /** Notifies any bytes pending, MUST be called after the last write. */
+    public void flush() throws RemoteException {
+        if (mPendingWrites == 0) {
+            return;
+        }
+        if (mMode == ConsumerMode.ASYNC) {
+            sendDataAvailableToConsumer(mController, mConsumer, mPendingBytes, mLabel);
+        } else {
+            sendDataReceivedToConsumer(mController, mConsumer, mPendingBytes, mLabel);
+        }
+        if (mPendingWrites > 1) {
+            mController.addCount("coalesced writes", mPendingWrites - 1);
+        }
+        mPendingBytes = 0;
+        mPendingWrites = 0;
+    }
+
+    private boolean isThresholdReached() {
+        switch (mPolicy) {
+            case NotifyPolicy.IMMEDIATE:
+                return true;
+            case NotifyPolicy.BYTES:
+                return mPendingBytes >= mThreshold;
+            case NotifyPolicy.COUNT:
+                return mPendingWrites >= mThreshold;
+            case NotifyPolicy.TIME:
+                // Only checked on writes, bytes may wait longer if the producer is slow
+                return System.currentTimeMillis() - mFirstPendingWriteMs >= mThreshold;
+            default:
+                throw new IllegalStateException("Unknown policy " + mPolicy);
+        }
+    }
+
+    @IntDef({
+            NotifyPolicy.IMMEDIATE,
+            NotifyPolicy.BYTES,
+            NotifyPolicy.COUNT,
+            NotifyPolicy.TIME,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface NotifyPolicy {
+        /** Notifies after every write, threshold is ignored. */
+        int IMMEDIATE = 0;
+        /** Notifies once threshold bytes were written. */
+        int BYTES = 1;
+        /** Notifies every threshold writes. */
+        int COUNT = 2;
+        /** Notifies on the first write threshold ms after the oldest write not notified. */
+        int TIME = 3;
+    }
+
+    @IntDef({
+            ConsumerMode.SYNC,
+            ConsumerMode.ASYNC,
+            ConsumerMode.STREAM,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ConsumerMode {
+        /** Blocking onDataReceived(), the consumer reads inside the call. */
+        int SYNC = 0;
+        /** Oneway onDataAvailable(), the consumer reads on its own thread and acks bytes. */
+        int ASYNC = 1;
+        /**
+         * The consumer drains the link continuously on its own thread, pacing itself, and
+         * onDataReceived() is just a hint.
+         */
+        int STREAM = 2;
+    }
+}
@@ -0,0 +1,143 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+
+/**
+ * Decodes the producer protocol, which is a sequence of frames {@code [int size][size bytes]}
+ * terminated by a frame of size 0.
+ *
+ * Instead of reading the header and the payload separately, it bulk-reads from the input into
+ * the buffer and hands out slices of it, so a single read() usually covers multiple headers and
+ * payloads. A slice returned by {@link #read(int)} is only valid until the next call.
+ *
+ * Not thread-safe.
+ */
+public class FrameDecoder {
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private final InputStream mInput;
+    private final byte[] mBuffer;
+    private final int mStart;
+    private final int mEnd;
+    private int mPosition;
+    private int mLimit;
+    private int mFrameRemaining;
+    private boolean mEndOfData;
+    private int mSliceOffset;
+
+    public FrameDecoder(InputStream input, byte[] buffer) {
+        this(input, buffer, 0, buffer.length);
+    }
+
+    /** Uses the backing array of {@code buffer} from its position to its limit. */
+    public FrameDecoder(InputStream input, ByteBuffer buffer) {
+        this(
+                input,
+                buffer.array(),
+                buffer.arrayOffset() + buffer.position(),
+                buffer.remaining());
+    }
+
+    private FrameDecoder(InputStream input, byte[] buffer, int offset, int length) {
+        checkArgument(length >= HEADER_SIZE, "Buffer can't fit frame header");
+        mInput = input;
+        mBuffer = buffer;
+        mStart = offset;
+        mEnd = offset + length;
+        mPosition = mStart;
+        mLimit = mStart;
+        mFrameRemaining = 0;
+        mEndOfData = false;
+    }
+
+    /**
+     * Returns the size of the next payload slice, at most {@code maxSize}, or -1 if the end of
+     * data frame was reached. Slice is available via {@link #getBuffer()} and
+     * {@link #getOffset()}.
+     */
+    public int read(int maxSize) throws IOException {
+        checkArgument(maxSize > 0);
+        if (mEndOfData) {
+            return -1;
+        }
+        if (mFrameRemaining == 0) {
+            int frameSize = readHeader();
+            if (frameSize == 0) {
+                mEndOfData = true;
+                return -1;
+            }
+            if (frameSize < 0) {
+                throw new IOException("Invalid frame size " + frameSize);
+            }
+            mFrameRemaining = frameSize;
+        }
+        if (mPosition == mLimit) {
+            mPosition = mStart;
+            mLimit = mStart;
+            fill();
+        }
+        int size = Math.min(Math.min(mFrameRemaining, mLimit - mPosition), maxSize);
+        mSliceOffset = mPosition;
+        mPosition += size;
+        mFrameRemaining -= size;
+        return size;
+    }
+
+    /** Same as {@link #read(int)} with a slice as big as the buffer. */
+    public int read() throws IOException {
+        return read(mEnd - mStart);
+    }
+
+    public byte[] getBuffer() {
+        return mBuffer;
+    }
+
+    public int getOffset() {
+        return mSliceOffset;
+    }
+
+    /** Whether the end of data frame was reached. */
+    public boolean isFinished() {
+        return mEndOfData;
+    }
+
+    private int readHeader() throws IOException {
+        if (mLimit - mPosition < HEADER_SIZE) {
+            compact();
+            while (mLimit - mStart < HEADER_SIZE) {
+                fill();
+            }
+        }
+        int header =
+                ((mBuffer[mPosition] & 0xFF) << 24)
+                        | ((mBuffer[mPosition + 1] & 0xFF) << 16)
+                        | ((mBuffer[mPosition + 2] & 0xFF) << 8)
+                        | (mBuffer[mPosition + 3] & 0xFF);
+        mPosition += HEADER_SIZE;
+        return header;
+    }
+
+    /** Moves the unread bytes to the start of the buffer. */
+    private void compact() {
+        int remaining = mLimit - mPosition;
+        System.arraycopy(mBuffer, mPosition, mBuffer, mStart, remaining);
+        mPosition = mStart;
+        mLimit = mStart + remaining;
+    }
+
+    /** Reads as much as it fits after mLimit, blocking until at least one byte is available. */
+    private void fill() throws IOException {
+        checkState(mLimit < mEnd, "Buffer full");
+        int sizeRead = mInput.read(mBuffer, mLimit, mEnd - mLimit);
+        if (sizeRead < 0) {
+            throw new EOFException("Unexpected EOF");
+        }
+        mLimit += sizeRead;
+    }
+}
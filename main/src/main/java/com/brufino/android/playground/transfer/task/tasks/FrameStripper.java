@@ -0,0 +1,61 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import java.io.IOException;
+
+/**
+ * Incremental version of {@link FrameDecoder} for callers that do their own reads, e.g.
+ * non-blocking ones. Raw bytes of the producer protocol are passed in as they arrive, in any split,
+ * and frame headers are removed in place, leaving only payload.
+ *
+ * Not thread-safe.
+ */
+public class FrameStripper {
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private int mFrameRemaining = 0;
+    private int mHeader = 0;
+    private int mHeaderRead = 0;
+    private boolean mEndOfData = false;
+
+    /**
+     * Strips headers from the {@code length} bytes at {@code offset}, moving the payload bytes to
+     * the beginning of that range. Returns the number of payload bytes.
+     */
+    public int strip(byte[] buffer, int offset, int length) throws IOException {
+        int position = offset;
+        int end = offset + length;
+        int payloadEnd = offset;
+        while (position < end) {
+            if (mEndOfData) {
+                throw new IOException("Data after end of data frame");
+            }
+            if (mFrameRemaining > 0) {
+                int size = Math.min(mFrameRemaining, end - position);
+                if (position != payloadEnd) {
+                    System.arraycopy(buffer, position, buffer, payloadEnd, size);
+                }
+                position += size;
+                payloadEnd += size;
+                mFrameRemaining -= size;
+                continue;
+            }
+            mHeader = (mHeader << 8) | (buffer[position++] & 0xFF);
+            if (++mHeaderRead < HEADER_SIZE) {
+                continue;
+            }
+            if (mHeader < 0) {
+                throw new IOException("Invalid frame size " + mHeader);
+            }
+            mEndOfData = (mHeader == 0);
+            mFrameRemaining = mHeader;
+            mHeader = 0;
+            mHeaderRead = 0;
+        }
+        return payloadEnd - offset;
+    }
+
+    /** Whether the end of data frame was reached. */
+    public boolean isFinished() {
+        return mEndOfData;
+    }
+}
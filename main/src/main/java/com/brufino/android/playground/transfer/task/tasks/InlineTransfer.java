@@ -0,0 +1,63 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import android.os.RemoteException;
+import com.brufino.android.common.IConsumer;
+import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.readInlineFromProducer;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeInlineToConsumer;
+
+/**
+ * For small transfers most of the time goes into creating the links and setting up the streams,
+ * so below {@link TaskController#getInlineThreshold()} tasks skip them and move each chunk as a
+ * byte[] in the binder calls themselves.
+ *
+ * Only for the tasks that make both calls from a single thread. The ones with subtasks abort on
+ * a threshold instead of ignoring it, so that their results aren't recorded with one.
+ */
+public class InlineTransfer {
+    /**
+     * Binder transactions share a 1 MB buffer per process, above this chunks take the links even
+     * below the threshold.
+     */
+    public static final int MAX_CHUNK_SIZE = 128 * 1024;
+
+    /** Whether tasks should call {@link #transfer} instead of creating links. */
+    public static boolean shouldUse(TaskController controller) {
+        return controller.getProducerDataSize() < controller.getInlineThreshold()
+                && controller.getProducerChunkSize() <= MAX_CHUNK_SIZE;
+    }
+
+    /** Producer and consumer MUST be configured, finishes the consumer. */
+    public static void transfer(TaskController controller, IProducer producer, IConsumer consumer)
+            throws RemoteException, TimeoutException {
+        boolean tracing = controller.startTracing();
+        int sequence = 0;
+        try {
+            long deadline = System.currentTimeMillis() + TransferTask.TASK_TIME_OUT_MS;
+            int code = controller.getProducerCode(ProducerCodes.DEFAULT);
+            while (true) {
+                byte[] chunk = readInlineFromProducer(controller, producer, code, sequence);
+                if (chunk.length == 0) {
+                    break;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new TimeoutException("Transfer timed out");
+                }
+                writeInlineToConsumer(controller, consumer, chunk);
+                sequence++;
+            }
+        } finally {
+            controller.stopTracing(tracing);
+        }
+        controller.addCount("inline chunks", sequence);
+        consumer.finish();
+    }
+
+    private InlineTransfer() {}
+}
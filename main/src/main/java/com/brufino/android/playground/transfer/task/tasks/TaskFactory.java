@@ -1,12 +1,16 @@
 package com.brufino.android.playground.transfer.task.tasks;
 
 import android.os.Looper;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.TransferManager;
 import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.channel.ChannelTask;
+import com.brufino.android.playground.transfer.task.tasks.mapped.MappedTask;
 import com.brufino.android.playground.transfer.task.tasks.multi.MultiThreadTask;
+import com.brufino.android.playground.transfer.task.tasks.multi.StripedTask;
 import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.MultiSubTaskFactory;
 import com.brufino.android.playground.transfer.task.tasks.single.SingleThreadTask;
 
@@ -16,17 +20,23 @@ public class TaskFactory {
     private final ApplicationContext mContext;
     private final ServiceClientFactory mClientFactory;
     private final MultiSubTaskFactory mMultiSubTaskFactory;
+    private final BufferPool mBufferPool;
     private final ExecutorService mTaskExecutor;
+    private final ExecutorService mLaneExecutor;
 
     public TaskFactory(
             ApplicationContext context,
             ServiceClientFactory clientFactory,
             MultiSubTaskFactory multiSubTaskFactory,
-            ExecutorService taskExecutor) {
+            BufferPool bufferPool,
+            ExecutorService taskExecutor,
+            ExecutorService laneExecutor) {
         mContext = context;
         mClientFactory = clientFactory;
         mMultiSubTaskFactory = multiSubTaskFactory;
+        mBufferPool = bufferPool;
         mTaskExecutor = taskExecutor;
+        mLaneExecutor = laneExecutor;
     }
 
     public TransferTask getTask(
@@ -36,10 +46,55 @@ public class TaskFactory {
         switch (code) {
             case TransferManager.Code.SINGLE_THREAD:
                 return new SingleThreadTask(
-                        mContext, mClientFactory, looper, configuration, mTaskExecutor);
+                        mContext,
+                        mClientFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor);
             case TransferManager.Code.MULTI_THREAD:
                 return new MultiThreadTask(
-                        mContext, mMultiSubTaskFactory, looper, configuration, mTaskExecutor);
+                        mContext,
+                        mMultiSubTaskFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor,
+                        MultiThreadTask.Link.PIPE);
+            case TransferManager.Code.RING:
+                return new MultiThreadTask(
+                        mContext,
+                        mMultiSubTaskFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor,
+                        MultiThreadTask.Link.RING);
+            case TransferManager.Code.CHANNEL:
+                return new ChannelTask(
+                        mContext,
+                        mClientFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor);
+            case TransferManager.Code.STRIPED:
+                return new StripedTask(
+                        mContext,
+                        mMultiSubTaskFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor,
+                        mLaneExecutor);
+            case TransferManager.Code.MAPPED:
+                return new MappedTask(
+                        mContext,
+                        mClientFactory,
+                        looper,
+                        configuration,
+                        mBufferPool,
+                        mTaskExecutor);
             default:
                 throw new IllegalArgumentException("Unknown task code " + code);
         }
@@ -2,39 +2,119 @@ package com.brufino.android.playground.transfer.task.tasks;
 
 import android.os.RemoteException;
 import com.brufino.android.common.IConsumer;
-import com.brufino.android.playground.MainConstants;
+import com.brufino.android.common.IProducer;
+import com.brufino.android.common.transport.MappedRegion;
 import com.brufino.android.playground.transfer.task.TaskController;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import static com.brufino.android.common.utils.Preconditions.checkState;
 
 public class TaskUtils {
+    /** Returns -1 when the producer sent the end of data frame. */
     public static int readFromProducer(
             TaskController controller,
-            DataInputStream input,
-            byte[] buffer,
+            FrameDecoder input,
             int sizeToRead) throws IOException {
         TaskController.Stopwatch time = controller.startTime("read");
-        int sizeRead = input.read(buffer, 0, sizeToRead);
+        int sizeRead = input.read(sizeToRead);
         time.stop();
-        controller.addInputRead(sizeRead);
+        if (sizeRead > 0) {
+            controller.addInputRead(sizeRead);
+        }
         return sizeRead;
     }
 
+    /** Returns -1 when the producer sent the end of data frame. */
+    public static int readFromProducer(
+            TaskController controller,
+            ChannelFrameDecoder input,
+            int sizeToRead) throws IOException {
+        TaskController.Stopwatch time = controller.startTime("read");
+        int sizeRead = input.read(sizeToRead);
+        time.stop();
+        if (sizeRead > 0) {
+            controller.addInputRead(sizeRead);
+        }
+        return sizeRead;
+    }
+
+    /** Returns an empty array after the last chunk. Timed apart from the reads from links. */
+    public static byte[] readInlineFromProducer(
+            TaskController controller,
+            IProducer producer,
+            int code,
+            int sequence) throws RemoteException {
+        TaskController.Stopwatch time = controller.startTime("inlineRead");
+        byte[] chunk = producer.produceInline(code, sequence);
+        time.stop();
+        if (chunk.length > 0) {
+            controller.addInputRead(chunk.length);
+        }
+        return chunk;
+    }
+
+    public static void writeInlineToConsumer(
+            TaskController controller,
+            IConsumer consumer,
+            byte[] chunk) throws RemoteException {
+        TaskController.Stopwatch time = controller.startTime("onInlineDataReceived");
+        consumer.onInlineDataReceived(chunk);
+        time.stop();
+        controller.addOutputWritten(chunk.length);
+    }
+
     public static void writeToConsumer(
             TaskController controller,
             OutputStream output,
             byte[] buffer,
             int sizeToWrite) throws IOException {
-        // This is because the pipe would be stuck waiting for consumer to consumer the data and
+        writeToConsumer(controller, output, buffer, 0, sizeToWrite);
+    }
+
+    public static void writeToConsumer(
+            TaskController controller,
+            OutputStream output,
+            byte[] buffer,
+            int offset,
+            int sizeToWrite) throws IOException {
+        // This is because the link would be stuck waiting for consumer to consumer the data and
         // we won't have a chance to call onDataReceived() to signal the consumer that the data
         // has been sent.
-        checkState(sizeToWrite <= MainConstants.PIPE_SIZE, "Can't write to pipe > 64 KB");
+        checkCapacity(controller, sizeToWrite);
         TaskController.Stopwatch time = controller.startTime("write");
-        output.write(buffer, 0, sizeToWrite);
+        output.write(buffer, offset, sizeToWrite);
+        time.stop();
+        controller.addOutputWritten(sizeToWrite);
+    }
+
+    public static void writeToConsumer(
+            TaskController controller,
+            MappedRegion output,
+            int outputOffset,
+            byte[] buffer,
+            int offset,
+            int sizeToWrite) {
+        TaskController.Stopwatch time = controller.startTime("write");
+        output.put(outputOffset, buffer, offset, sizeToWrite);
+        time.stop();
+        controller.addOutputWritten(sizeToWrite);
+    }
+
+    /** Writes all remaining bytes of {@code buffer}. */
+    public static void writeToConsumer(
+            TaskController controller,
+            WritableByteChannel output,
+            ByteBuffer buffer) throws IOException {
+        int sizeToWrite = buffer.remaining();
+        checkCapacity(controller, sizeToWrite);
+        TaskController.Stopwatch time = controller.startTime("write");
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
         time.stop();
         controller.addOutputWritten(sizeToWrite);
     }
@@ -43,10 +123,46 @@ public class TaskUtils {
             TaskController controller,
             IConsumer consumer,
             int sizeRead) throws RemoteException {
-        TaskController.Stopwatch time = controller.startTime("onDataReceived");
+        sendDataReceivedToConsumer(controller, consumer, sizeRead, "onDataReceived");
+    }
+
+    public static void sendDataReceivedToConsumer(
+            TaskController controller,
+            IConsumer consumer,
+            int sizeRead,
+            String label) throws RemoteException {
+        TaskController.Stopwatch time = controller.startTime(label);
         consumer.onDataReceived(sizeRead);
         time.stop();
     }
 
+    public static void sendMappedDataReceivedToConsumer(
+            TaskController controller,
+            IConsumer consumer,
+            int offset,
+            int size) throws RemoteException {
+        TaskController.Stopwatch time = controller.startTime("onDataReceived");
+        consumer.onMappedDataReceived(offset, size);
+        time.stop();
+    }
+
+    /** Oneway, returns as soon as the transaction is queued. */
+    public static void sendDataAvailableToConsumer(
+            TaskController controller,
+            IConsumer consumer,
+            int sizeWritten,
+            String label) throws RemoteException {
+        TaskController.Stopwatch time = controller.startTime(label);
+        consumer.onDataAvailable(sizeWritten);
+        time.stop();
+    }
+
     private TaskUtils() {}
+
+    private static void checkCapacity(TaskController controller, int sizeToWrite) {
+        int capacity = controller.getTransport().getCapacity();
+        checkState(
+                sizeToWrite <= capacity,
+                "Can't write " + sizeToWrite + " B to link with capacity " + capacity + " B");
+    }
 }
@@ -0,0 +1,171 @@
+package com.brufino.android.playground.transfer.task.tasks.channel;
+
+import android.content.Intent;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.ParcelFileDescriptor.AutoCloseInputStream;
+import android.os.ParcelFileDescriptor.AutoCloseOutputStream;
+import android.os.RemoteException;
+import com.brufino.android.common.IConsumer;
+import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.common.TransferUtils;
+import com.brufino.android.common.utils.BufferPool;
+import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.extensions.service.ServiceClient;
+import com.brufino.android.playground.extensions.service.ServiceClientFactory;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner;
+import com.brufino.android.playground.transfer.task.tasks.ChannelFrameDecoder;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier;
+import com.brufino.android.playground.transfer.task.tasks.InlineTransfer;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.readFromProducer;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeToConsumer;
+
+/**
+ * Single-threaded like {@link com.brufino.android.playground.transfer.task.tasks.single
+ * .SingleThreadTask}, but moves data between the pipes with {@link FileChannel}s and a direct
+ * {@link ByteBuffer} from the {@link BufferPool}, so the bytes never go through a Java heap
+ * byte[].
+ *
+ * {@link FileChannel#transferTo} / {@link FileChannel#transferFrom} can't be used here: both are
+ * position-based and for a pipe size() is always 0, so they never transfer anything.
+ */
+public class ChannelTask extends TransferTask {
+    private final Intent mProducerIntent;
+    private final Intent mConsumerIntent;
+    private final ServiceClientFactory mClientFactory;
+    private final TaskController mController;
+    private final ExecutorService mTaskExecutor;
+
+    public ChannelTask(
+            ApplicationContext context,
+            ServiceClientFactory serviceClientFactory,
+            Looper looper,
+            TransferConfiguration configuration,
+            BufferPool bufferPool,
+            ExecutorService taskExecutor) {
+        super(context, looper, configuration, bufferPool, "Channel");
+        mClientFactory = serviceClientFactory;
+        mProducerIntent =
+                TransferUtils.getProducerIntent(TransferTask.PRODUCER_PACKAGE);
+        mConsumerIntent =
+                TransferUtils.getConsumerIntent(TransferTask.CONSUMER_PACKAGE);
+        mTaskExecutor = taskExecutor;
+        mController = getController();
+    }
+
+    @Override
+    protected void onStart() {
+        execute(this::runTask, mTaskExecutor);
+    }
+
+    private void runTask() {
+        try {
+            run();
+        } catch (RemoteException | InterruptedException | IOException | TimeoutException e) {
+            abortTask(e);
+            return;
+        }
+        finishTask();
+    }
+
+    /** Will connect, run, then disconnect clients. */
+    private void run()
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        ServiceClient<IProducer> producerClient =
+                mClientFactory.getServiceClient(mProducerIntent, IProducer.Stub::asInterface);
+        ServiceClient<IConsumer> consumerClient =
+                mClientFactory.getServiceClient(mConsumerIntent, IConsumer.Stub::asInterface);
+        producerClient.connectAsync();
+        consumerClient.connectAsync();
+        try {
+            run(producerClient.get(), consumerClient.get());
+        } finally {
+            consumerClient.disconnect();
+            producerClient.disconnect();
+        }
+    }
+
+    /** We have producer and consumer connected. */
+    private void run(IProducer producer, IConsumer consumerService)
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        mController.configure(producer);
+        try {
+            IConsumer consumer = mController.configure(consumerService);
+            if (InlineTransfer.shouldUse(mController)) {
+                InlineTransfer.transfer(mController, producer, consumer);
+                return;
+            }
+            ParcelFileDescriptor[] producerLink = mController.getTransport().createLink();
+            ParcelFileDescriptor[] consumerLink = mController.getTransport().createLink();
+            transfer(producer, consumer, producerLink, consumerLink);
+        } finally {
+            mController.release(producer);
+        }
+    }
+
+    private void transfer(
+            IProducer producer,
+            IConsumer consumer,
+            ParcelFileDescriptor[] producerLink,
+            ParcelFileDescriptor[] consumerLink)
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        int code = mController.getProducerCode(ProducerCodes.DEFAULT);
+        producer.produce(code, producerLink[1]);
+        producerLink[1].close();
+
+        ConsumerNotifier notifier = new ConsumerNotifier(mController, consumer);
+        notifier.start(consumerLink[0]);
+        consumerLink[0].close();
+
+        ByteBuffer buffer = mController.acquireBuffer();
+        try (FileInputStream inputStream = new AutoCloseInputStream(producerLink[0]);
+             FileOutputStream outputStream = new AutoCloseOutputStream(consumerLink[1])) {
+            transfer(
+                    notifier,
+                    new ChannelFrameDecoder(inputStream.getChannel(), buffer),
+                    outputStream.getChannel());
+        } finally {
+            mController.releaseBuffer(buffer);
+        }
+        mController.addCounters(producer, code);
+
+        consumer.finish();
+        mController.addCounters(consumer);
+    }
+
+    private void transfer(
+            ConsumerNotifier notifier,
+            ChannelFrameDecoder input,
+            FileChannel output)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
+        boolean tracing = mController.startTracing();
+        long deadline = System.currentTimeMillis() + TASK_TIME_OUT_MS;
+        BufferTuner tuner = new BufferTuner(mController, notifier.getLabel());
+        int sizeRead;
+        while ((sizeRead = readFromProducer(mController, input, tuner.getSize())) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("Transfer timed out");
+            }
+            notifier.awaitCredit(sizeRead);
+            writeToConsumer(mController, output, input.getSlice());
+            notifier.onWritten(sizeRead);
+            tuner.onIteration(sizeRead);
+        }
+        notifier.flush();
+        mController.stopTracing(tracing);
+    }
+}
@@ -0,0 +1,191 @@
+package com.brufino.android.playground.transfer.task.tasks.mapped;
+
+import android.content.Intent;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.ParcelFileDescriptor.AutoCloseInputStream;
+import android.os.RemoteException;
+import com.brufino.android.common.IConsumer;
+import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.common.TransferUtils;
+import com.brufino.android.common.transport.MappedRegion;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.common.utils.BufferPool;
+import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.extensions.service.ServiceClient;
+import com.brufino.android.playground.extensions.service.ServiceClientFactory;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner;
+import com.brufino.android.playground.transfer.task.tasks.FrameDecoder;
+import com.brufino.android.playground.transfer.task.tasks.InlineTransfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.readFromProducer;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.sendMappedDataReceivedToConsumer;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeToConsumer;
+
+/**
+ * Single-threaded, but instead of a pipe to the consumer it writes into a {@link MappedRegion}
+ * shared with it and only sends offset and length over binder. Without the link, writes aren't
+ * capped at {@link Transport#getCapacity()}, only by the region size. The producer side still uses
+ * the configured {@link Transport}.
+ *
+ * onMappedDataReceived() is synchronous, so once it returns the range can be reused. We still
+ * advance through the region and wrap around when a write doesn't fit.
+ *
+ * Below the inline threshold it skips the region as well, see {@link InlineTransfer}.
+ */
+public class MappedTask extends TransferTask {
+    private final Intent mProducerIntent;
+    private final Intent mConsumerIntent;
+    private final ServiceClientFactory mClientFactory;
+    private final TaskController mController;
+    private final ExecutorService mTaskExecutor;
+
+    public MappedTask(
+            ApplicationContext context,
+            ServiceClientFactory serviceClientFactory,
+            Looper looper,
+            TransferConfiguration configuration,
+            BufferPool bufferPool,
+            ExecutorService taskExecutor) {
+        super(context, looper, configuration, bufferPool, "File-mapped");
+        mClientFactory = serviceClientFactory;
+        mProducerIntent =
+                TransferUtils.getProducerIntent(TransferTask.PRODUCER_PACKAGE);
+        mConsumerIntent =
+                TransferUtils.getConsumerIntent(TransferTask.CONSUMER_PACKAGE);
+        mTaskExecutor = taskExecutor;
+        mController = getController();
+    }
+
+    @Override
+    protected void onStart() {
+        execute(this::runTask, mTaskExecutor);
+    }
+
+    private void runTask() {
+        try {
+            run();
+        } catch (RemoteException | InterruptedException | IOException | TimeoutException e) {
+            abortTask(e);
+            return;
+        }
+        finishTask();
+    }
+
+    /** Will connect, run, then disconnect clients. */
+    private void run()
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        ServiceClient<IProducer> producerClient =
+                mClientFactory.getServiceClient(mProducerIntent, IProducer.Stub::asInterface);
+        ServiceClient<IConsumer> consumerClient =
+                mClientFactory.getServiceClient(mConsumerIntent, IConsumer.Stub::asInterface);
+        producerClient.connectAsync();
+        consumerClient.connectAsync();
+        try {
+            run(producerClient.get(), consumerClient.get());
+        } finally {
+            consumerClient.disconnect();
+            producerClient.disconnect();
+        }
+    }
+
+    /** We have producer and consumer connected. */
+    private void run(IProducer producer, IConsumer consumerService)
+            throws RemoteException, IOException, TimeoutException {
+        mController.configure(producer);
+        try {
+            IConsumer consumer = mController.configure(consumerService);
+            if (InlineTransfer.shouldUse(mController)) {
+                InlineTransfer.transfer(mController, producer, consumer);
+                return;
+            }
+            ParcelFileDescriptor[] producerLink = mController.getTransport().createLink();
+            try (MappedRegion region = createRegion(consumer)) {
+                transfer(producer, consumer, producerLink, region);
+            }
+        } finally {
+            mController.release(producer);
+        }
+    }
+
+    /** Creates the region and shares it with the consumer. */
+    private MappedRegion createRegion(IConsumer consumer) throws RemoteException, IOException {
+        int size = mController.getMappedRegionSize();
+        File file = File.createTempFile("transfer", ".region", mController.getCacheDir());
+        try {
+            MappedRegion region = MappedRegion.create(file, size);
+            try (ParcelFileDescriptor regionFd =
+                    ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)) {
+                consumer.startMapped(regionFd, size);
+            } catch (RemoteException | IOException e) {
+                region.close();
+                throw e;
+            }
+            return region;
+        } finally {
+            // Both sides have it open, the file is released once they close it
+            file.delete();
+        }
+    }
+
+    private void transfer(
+            IProducer producer,
+            IConsumer consumer,
+            ParcelFileDescriptor[] producerLink,
+            MappedRegion region)
+            throws RemoteException, IOException, TimeoutException {
+        int code = mController.getProducerCode(ProducerCodes.DEFAULT);
+        producer.produce(code, producerLink[1]);
+        producerLink[1].close();
+
+        ByteBuffer buffer = mController.acquireBuffer();
+        try (InputStream input = new AutoCloseInputStream(producerLink[0])) {
+            transfer(consumer, new FrameDecoder(input, buffer), region);
+        } finally {
+            mController.releaseBuffer(buffer);
+        }
+        mController.addCounters(producer, code);
+
+        consumer.finish();
+        mController.addCounters(consumer);
+    }
+
+    private void transfer(IConsumer consumer, FrameDecoder input, MappedRegion region)
+            throws IOException, RemoteException, TimeoutException {
+        boolean tracing = mController.startTracing();
+        long deadline = System.currentTimeMillis() + TASK_TIME_OUT_MS;
+        BufferTuner tuner = new BufferTuner(mController, "onDataReceived");
+        int offset = 0;
+        while (true) {
+            int sizeToRead = Math.min(tuner.getSize(), region.getSize());
+            int sizeRead = readFromProducer(mController, input, sizeToRead);
+            if (sizeRead <= 0) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException("Transfer timed out");
+            }
+            if (offset + sizeRead > region.getSize()) {
+                offset = 0;
+            }
+            writeToConsumer(
+                    mController, region, offset, input.getBuffer(), input.getOffset(), sizeRead);
+            sendMappedDataReceivedToConsumer(mController, consumer, offset, sizeRead);
+            offset += sizeRead;
+            tuner.onIteration(sizeRead);
+        }
+        mController.stopTracing(tracing);
+    }
+}
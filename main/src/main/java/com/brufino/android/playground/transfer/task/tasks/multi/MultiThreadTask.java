@@ -1,22 +1,25 @@
 package com.brufino.android.playground.transfer.task.tasks.multi;
 
 import android.os.Looper;
-import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import androidx.annotation.IntDef;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.task.TaskController;
 import com.brufino.android.playground.transfer.task.TransferTask;
 import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskChannel;
 import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.ProducerReaderSubTask;
 import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.MultiSubTaskFactory;
 import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.ConsumerWriterSubTask;
 
 import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
-import static com.brufino.android.common.utils.Preconditions.checkNotNull;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.catching;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.throwIn;
@@ -25,6 +28,7 @@ public class MultiThreadTask extends TransferTask {
     private final MultiSubTaskFactory mSubTaskFactory;
     private final TaskController mController;
     private final ExecutorService mTaskExecutor;
+    @Link private final int mLink;
     private ProducerReaderSubTask mReaderTask;
     private ConsumerWriterSubTask mWriterTask;
 
@@ -33,24 +37,31 @@ public class MultiThreadTask extends TransferTask {
             MultiSubTaskFactory subTaskFactory,
             Looper looper,
             TransferConfiguration configuration,
-            ExecutorService taskExecutor) {
-        super(context, looper, configuration, "Multi");
+            BufferPool bufferPool,
+            ExecutorService taskExecutor,
+            @Link int link) {
+        super(context, looper, configuration, bufferPool, getName(link));
         mSubTaskFactory = subTaskFactory;
         mTaskExecutor = taskExecutor;
+        mLink = link;
         mController = getController();
     }
 
     @Override
     public void onStart() {
-        final ParcelFileDescriptor[] pipe;
+        if (mController.getInlineThreshold() > 0) {
+            abortTask(new IllegalArgumentException("Inline threshold not supported"));
+            return;
+        }
+        final SubTaskChannel channel;
         try {
-            pipe = ParcelFileDescriptor.createPipe();
+            channel = getChannel();
         } catch (IOException e) {
             abortTask(e);
             return;
         }
-        mReaderTask = mSubTaskFactory.getReaderSubTask(mController, pipe[1]);
-        mWriterTask = mSubTaskFactory.getWriterSubTask(mController, pipe[0]);
+        mReaderTask = mSubTaskFactory.getReaderSubTask(mController, channel.getOutput());
+        mWriterTask = mSubTaskFactory.getWriterSubTask(mController, channel.getInput());
 
         CompletableFuture.allOf(
                         execute(mReaderTask, mTaskExecutor),
@@ -65,4 +76,37 @@ public class MultiThreadTask extends TransferTask {
                                 TimeoutException.class))
                 .exceptionally(throwIn(getExecutor()));
     }
+
+    private SubTaskChannel getChannel() throws IOException {
+        switch (mLink) {
+            case Link.PIPE:
+                return mSubTaskFactory.getPipeChannel(mController);
+            case Link.RING:
+                return mSubTaskFactory.getRingChannel(mController);
+            default:
+                throw new IllegalArgumentException("Unknown link " + mLink);
+        }
+    }
+
+    private static String getName(@Link int link) {
+        switch (link) {
+            case Link.PIPE:
+                return "Multi";
+            case Link.RING:
+                return "Ring";
+            default:
+                throw new IllegalArgumentException("Unknown link " + link);
+        }
+    }
+
+    /** How the reader and writer subtasks are linked. */
+    @IntDef({
+            Link.PIPE,
+            Link.RING,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Link {
+        int PIPE = 0;
+        int RING = 1;
+    }
 }
@@ -0,0 +1,86 @@
+package com.brufino.android.playground.transfer.task.tasks.multi;
+
+import android.os.Looper;
+import android.os.RemoteException;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.common.utils.BufferPool;
+import com.brufino.android.playground.extensions.ApplicationContext;
+import com.brufino.android.playground.transfer.TransferConfiguration;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.ReassemblyChannel;
+import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.ConsumerWriterSubTask;
+import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.LaneReaderSubTask;
+import com.brufino.android.playground.transfer.task.tasks.multi.subtasks.MultiSubTaskFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.catching;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
+import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.throwIn;
+
+/**
+ * Splits the producer stream across {@link TaskController#getLanes()} lanes, each with its own
+ * pipe and reader thread, see {@link ProducerCodes}. Chunks are put back in order by a
+ * {@link ReassemblyChannel} and written to the consumer through a single pipe, since the consumer
+ * protocol is a single ordered stream.
+ */
+public class StripedTask extends TransferTask {
+    private final MultiSubTaskFactory mSubTaskFactory;
+    private final TaskController mController;
+    private final ExecutorService mTaskExecutor;
+    private final ExecutorService mLaneExecutor;
+
+    public StripedTask(
+            ApplicationContext context,
+            MultiSubTaskFactory subTaskFactory,
+            Looper looper,
+            TransferConfiguration configuration,
+            BufferPool bufferPool,
+            ExecutorService taskExecutor,
+            ExecutorService laneExecutor) {
+        super(context, looper, configuration, bufferPool, "Lanes");
+        mSubTaskFactory = subTaskFactory;
+        mTaskExecutor = taskExecutor;
+        mLaneExecutor = laneExecutor;
+        mController = getController();
+    }
+
+    @Override
+    public void onStart() {
+        int lanes = mController.getLanes();
+        if (lanes <= 0 || lanes > ProducerCodes.MAX_LANES) {
+            abortTask(new IllegalArgumentException("Invalid lanes " + lanes));
+            return;
+        }
+        if (mController.getInlineThreshold() > 0) {
+            abortTask(new IllegalArgumentException("Inline threshold not supported"));
+            return;
+        }
+        ReassemblyChannel channel = mSubTaskFactory.getReassemblyChannel(mController, lanes);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[lanes + 1];
+        for (int lane = 0; lane < lanes; lane++) {
+            LaneReaderSubTask readerTask =
+                    mSubTaskFactory.getLaneReaderSubTask(
+                            mController, lane, lanes, channel.getLaneOutput(lane));
+            futures[lane] = execute(readerTask, mLaneExecutor);
+        }
+        ConsumerWriterSubTask writerTask =
+                mSubTaskFactory.getWriterSubTask(mController, channel.getInput());
+        futures[lanes] = execute(writerTask, mTaskExecutor);
+
+        CompletableFuture.allOf(futures)
+                .thenAcceptAsync(v -> finishTask(), getExecutor())
+                .exceptionally(
+                        catching(
+                                this::abortTask,
+                                RemoteException.class,
+                                InterruptedException.class,
+                                IOException.class,
+                                TimeoutException.class))
+                .exceptionally(throwIn(getExecutor()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Write end of one lane of a {@link ReassemblyChannel}, MUST only be used by one thread. */
+public interface LaneOutput {
+    /**
+     * Hands over chunk {@code sequence}, the data being between position and limit of
+     * {@code buffer}. On success the buffer belongs to the channel, which returns it to the pool
+     * after it's consumed. Blocks if the chunk is too far ahead of the next one to be consumed.
+     */
+    void write(long sequence, ByteBuffer buffer) throws IOException, InterruptedException;
+
+    /** End of data for this lane. */
+    void close();
+
+    /** Failed, the input should fail as well. */
+    void abort();
+}
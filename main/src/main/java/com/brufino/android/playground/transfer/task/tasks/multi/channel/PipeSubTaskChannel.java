@@ -0,0 +1,122 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import android.os.ParcelFileDescriptor;
+import android.os.ParcelFileDescriptor.AutoCloseInputStream;
+import android.os.ParcelFileDescriptor.AutoCloseOutputStream;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.brufino.android.common.transport.Transport;
+import com.brufino.android.playground.transfer.task.TaskController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static com.brufino.android.common.CommonConstants.TAG;
+
+/** Links the subtasks through a link of the configured {@link Transport}, a pipe by default. */
+public class PipeSubTaskChannel implements SubTaskChannel {
+    private final TaskController mController;
+    private final Input mInput;
+    private final Output mOutput;
+
+    public PipeSubTaskChannel(TaskController controller) throws IOException {
+        mController = controller;
+        ParcelFileDescriptor[] link = controller.getTransport().createLink();
+        mInput = new Input(new AutoCloseInputStream(link[0]));
+        mOutput = new Output(new AutoCloseOutputStream(link[1]));
+    }
+
+    @Override
+    public SubTaskInput getInput() {
+        return mInput;
+    }
+
+    @Override
+    public SubTaskOutput getOutput() {
+        return mOutput;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            Log.e(TAG, "Error closing link", e);
+        }
+    }
+
+    private class Input implements SubTaskInput {
+        private final InputStream mStream;
+        @Nullable private ByteBuffer mBuffer;
+
+        private Input(InputStream stream) {
+            mStream = stream;
+        }
+
+        @Nullable
+        @Override
+        public ByteBuffer take() throws IOException {
+            if (mBuffer == null) {
+                mBuffer = mController.acquireBuffer();
+            }
+            mBuffer.clear().limit(mController.getBufferSize());
+            int sizeRead =
+                    mStream.read(mBuffer.array(), mBuffer.arrayOffset(), mBuffer.remaining());
+            if (sizeRead < 0) {
+                return null;
+            }
+            mBuffer.limit(sizeRead);
+            return mBuffer;
+        }
+
+        @Override
+        public void release() {}
+
+        @Override
+        public void close() throws IOException {
+            try {
+                mStream.close();
+            } finally {
+                releaseBuffer();
+            }
+        }
+
+        @Override
+        public void abort() {
+            closeQuietly(mStream);
+            releaseBuffer();
+        }
+
+        private void releaseBuffer() {
+            if (mBuffer != null) {
+                mController.releaseBuffer(mBuffer);
+                mBuffer = null;
+            }
+        }
+    }
+
+    private static class Output implements SubTaskOutput {
+        private final OutputStream mStream;
+
+        private Output(OutputStream stream) {
+            mStream = stream;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            mStream.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mStream.close();
+        }
+
+        @Override
+        public void abort() {
+            // Reader will see EOF, the task fails because of this subtask anyway
+            closeQuietly(mStream);
+        }
+    }
+}
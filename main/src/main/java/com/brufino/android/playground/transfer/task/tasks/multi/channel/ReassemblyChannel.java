@@ -0,0 +1,168 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.brufino.android.playground.transfer.task.TaskController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.common.utils.Preconditions.checkState;
+
+/**
+ * Joins chunks tagged with sequence numbers coming from multiple lanes into a single in-order
+ * {@link SubTaskInput}. Chunks that arrive ahead of time wait in the channel, but at most
+ * {@link #WINDOW_PER_LANE} per lane, after that lanes block until the gap is filled. The lane
+ * owning the next chunk is never blocked, so this can't deadlock.
+ */
+public class ReassemblyChannel {
+    private static final int WINDOW_PER_LANE = 2;
+
+    private final Object mLock = new Object();
+    private final TaskController mController;
+    private final int mWindow;
+    private final Input mInput = new Input();
+    private final LaneOutput[] mOutputs;
+
+    @GuardedBy("mLock")
+    private final Map<Long, ByteBuffer> mPending = new HashMap<>();
+
+    @GuardedBy("mLock")
+    private long mNext = 0;
+
+    @GuardedBy("mLock")
+    private int mOpenLanes;
+
+    @GuardedBy("mLock")
+    private boolean mAborted = false;
+
+    @GuardedBy("mLock")
+    @Nullable
+    private ByteBuffer mTaken;
+
+    public ReassemblyChannel(TaskController controller, int lanes) {
+        checkArgument(lanes > 0, "Invalid lanes " + lanes);
+        mController = controller;
+        mWindow = lanes * WINDOW_PER_LANE;
+        mOpenLanes = lanes;
+        mOutputs = new LaneOutput[lanes];
+        for (int i = 0; i < lanes; i++) {
+            mOutputs[i] = new Output();
+        }
+    }
+
+    public SubTaskInput getInput() {
+        return mInput;
+    }
+
+    public LaneOutput getLaneOutput(int lane) {
+        return mOutputs[lane];
+    }
+
+    @GuardedBy("mLock")
+    private void abortLocked() {
+        mAborted = true;
+        releasePendingLocked();
+        mLock.notifyAll();
+    }
+
+    @GuardedBy("mLock")
+    private void releasePendingLocked() {
+        for (ByteBuffer buffer : mPending.values()) {
+            mController.releaseBuffer(buffer);
+        }
+        mPending.clear();
+    }
+
+    private class Input implements SubTaskInput {
+        @Nullable
+        @Override
+        public ByteBuffer take() throws IOException, InterruptedException {
+            synchronized (mLock) {
+                checkState(mTaken == null, "Previous chunk not released");
+                while (!mAborted && mOpenLanes > 0 && !mPending.containsKey(mNext)) {
+                    mLock.wait();
+                }
+                if (mAborted) {
+                    throw new IOException("Lane aborted");
+                }
+                ByteBuffer buffer = mPending.remove(mNext);
+                if (buffer == null && !mPending.isEmpty()) {
+                    throw new IOException("Missing chunk " + mNext);
+                }
+                mTaken = buffer;
+                return buffer;
+            }
+        }
+
+        @Override
+        public void release() {
+            synchronized (mLock) {
+                checkState(mTaken != null, "No chunk taken");
+                mController.releaseBuffer(mTaken);
+                mTaken = null;
+                mNext++;
+                mLock.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (mLock) {
+                releasePendingLocked();
+            }
+        }
+
+        @Override
+        public void abort() {
+            synchronized (mLock) {
+                abortLocked();
+            }
+        }
+    }
+
+    private class Output implements LaneOutput {
+        @Override
+        public void write(long sequence, ByteBuffer buffer)
+                throws IOException, InterruptedException {
+            synchronized (mLock) {
+                if (!mAborted && sequence >= mNext + mWindow) {
+                    TaskController.Stopwatch time = mController.startTime("lane wait");
+                    while (!mAborted && sequence >= mNext + mWindow) {
+                        mLock.wait();
+                    }
+                    time.stop();
+                }
+                if (mAborted) {
+                    throw new IOException("Channel aborted");
+                }
+                if (sequence < mNext || mPending.containsKey(sequence)) {
+                    throw new IOException("Duplicate chunk " + sequence);
+                }
+                if (sequence != mNext) {
+                    mController.addCount("parked chunks", 1);
+                }
+                mPending.put(sequence, buffer);
+                mLock.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (mLock) {
+                mOpenLanes--;
+                mLock.notifyAll();
+            }
+        }
+
+        @Override
+        public void abort() {
+            synchronized (mLock) {
+                abortLocked();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import androidx.annotation.Nullable;
+import com.brufino.android.playground.extensions.concurrent.SpscBufferRing;
+import com.brufino.android.playground.transfer.task.TaskController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+
+/**
+ * Links the subtasks in-process through a {@link SpscBufferRing}, which avoids the pipe's
+ * syscalls and kernel copies. The only copy left is from the producer frame decoder into the
+ * ring buffer.
+ */
+public class RingSubTaskChannel implements SubTaskChannel {
+    private final TaskController mController;
+    private final SpscBufferRing mRing;
+    private final ByteBuffer[] mSlots;
+    /** Buffers go back to the pool after both ends are done. */
+    private final AtomicInteger mOpenEnds = new AtomicInteger(2);
+    private final Input mInput = new Input();
+    private final Output mOutput = new Output();
+
+    public RingSubTaskChannel(
+            TaskController controller,
+            int depth,
+            @SpscBufferRing.WaitPolicy int waitPolicy) {
+        checkArgument(depth > 0, "Invalid ring depth " + depth);
+        mController = controller;
+        mSlots = new ByteBuffer[depth];
+        for (int i = 0; i < depth; i++) {
+            mSlots[i] = controller.acquireBuffer();
+        }
+        mRing = new SpscBufferRing(mSlots, waitPolicy);
+    }
+
+    @Override
+    public SubTaskInput getInput() {
+        return mInput;
+    }
+
+    @Override
+    public SubTaskOutput getOutput() {
+        return mOutput;
+    }
+
+    private void onEndClosed() {
+        if (mOpenEnds.decrementAndGet() == 0) {
+            for (ByteBuffer slot : mSlots) {
+                mController.releaseBuffer(slot);
+            }
+        }
+    }
+
+    private class Input implements SubTaskInput {
+        @Nullable
+        @Override
+        public ByteBuffer take() throws IOException, InterruptedException {
+            TaskController.Stopwatch time = mController.startTime("ring take");
+            ByteBuffer buffer = mRing.take();
+            time.stop();
+            return buffer;
+        }
+
+        @Override
+        public void release() {
+            mRing.release();
+        }
+
+        @Override
+        public void close() {
+            onEndClosed();
+        }
+
+        @Override
+        public void abort() {
+            mRing.abort();
+            onEndClosed();
+        }
+    }
+
+    private class Output implements SubTaskOutput {
+        @Override
+        public void write(byte[] buffer, int offset, int length)
+                throws IOException, InterruptedException {
+            int bufferSize = mController.getBufferSize();
+            while (length > 0) {
+                TaskController.Stopwatch time = mController.startTime("ring claim");
+                ByteBuffer slot = mRing.claim();
+                time.stop();
+                int size = Math.min(length, bufferSize);
+                slot.put(buffer, offset, size).flip();
+                mRing.publish();
+                offset += size;
+                length -= size;
+            }
+        }
+
+        @Override
+        public void close() {
+            mRing.close();
+            onEndClosed();
+        }
+
+        @Override
+        public void abort() {
+            mRing.abort();
+            onEndClosed();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+/**
+ * Link between {@link com.brufino.android.playground.transfer.task.tasks.multi.subtasks
+ * .ProducerReaderSubTask} and {@link com.brufino.android.playground.transfer.task.tasks.multi
+ * .subtasks.ConsumerWriterSubTask}. Each end MUST be either closed or aborted exactly once.
+ */
+public interface SubTaskChannel {
+    SubTaskInput getInput();
+
+    SubTaskOutput getOutput();
+}
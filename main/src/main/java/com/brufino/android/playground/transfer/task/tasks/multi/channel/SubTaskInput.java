@@ -0,0 +1,25 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Read end of a {@link SubTaskChannel}, MUST only be used by one thread. */
+public interface SubTaskInput {
+    /**
+     * Returns a buffer with the data between position and limit, which is valid until
+     * {@link #release()}. Returns null on end of data.
+     */
+    @Nullable
+    ByteBuffer take() throws IOException, InterruptedException;
+
+    /** Done with the buffer returned by {@link #take()}. */
+    void release();
+
+    /** All data consumed. */
+    void close() throws IOException;
+
+    /** Failed, the other end should fail as well. */
+    void abort();
+}
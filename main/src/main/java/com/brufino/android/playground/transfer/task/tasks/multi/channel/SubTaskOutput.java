@@ -0,0 +1,14 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.channel;
+
+import java.io.IOException;
+
+/** Write end of a {@link SubTaskChannel}, MUST only be used by one thread. */
+public interface SubTaskOutput {
+    void write(byte[] buffer, int offset, int length) throws IOException, InterruptedException;
+
+    /** End of data. */
+    void close() throws IOException;
+
+    /** Failed, the other end should fail as well. */
+    void abort();
+}
@@ -1,9 +1,7 @@
 package com.brufino.android.playground.transfer.task.tasks.multi.subtasks;
 
 import android.content.Intent;
-import android.os.DeadObjectException;
 import android.os.ParcelFileDescriptor;
-import android.os.ParcelFileDescriptor.AutoCloseInputStream;
 import android.os.ParcelFileDescriptor.AutoCloseOutputStream;
 import android.os.RemoteException;
 import com.brufino.android.common.IConsumer;
@@ -13,16 +11,14 @@ import com.brufino.android.playground.extensions.service.ServiceClient;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
 import com.brufino.android.playground.transfer.task.TaskController;
 import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskInput;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.CompletableFuture;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeoutException;
 
-import static com.brufino.android.common.utils.Preconditions.checkArgument;
-import static com.brufino.android.common.utils.Preconditions.checkState;
-import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.sendDataReceivedToConsumer;
 import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeToConsumer;
 import static java.lang.System.currentTimeMillis;
 
@@ -30,12 +26,12 @@ public class ConsumerWriterSubTask implements ThrowingRunnable<Exception> {
     private final ServiceClientFactory mClientFactory;
     private final Intent mConsumerIntent;
     private final TaskController mController;
-    private final ParcelFileDescriptor mSubTaskInput;
+    private final SubTaskInput mSubTaskInput;
 
     ConsumerWriterSubTask(
             ServiceClientFactory serviceClientFactory,
             TaskController controller,
-            ParcelFileDescriptor subTaskInput) {
+            SubTaskInput subTaskInput) {
         mClientFactory = serviceClientFactory;
         mController = controller;
         mSubTaskInput = subTaskInput;
@@ -43,50 +39,63 @@ public class ConsumerWriterSubTask implements ThrowingRunnable<Exception> {
                 TransferUtils.getConsumerIntent(TransferTask.CONSUMER_PACKAGE);
     }
 
+    /** Always closes or aborts the sub-task input, so the reader doesn't wait forever. */
     public void run() throws RemoteException, IOException, InterruptedException, TimeoutException {
         ServiceClient<IConsumer> consumerClient =
                 mClientFactory.getServiceClient(mConsumerIntent, IConsumer.Stub::asInterface);
+        boolean success = false;
         try {
-            IConsumer consumer = consumerClient.connect();
-            mController.configure(consumer);
-            ParcelFileDescriptor[] consumerPipe = ParcelFileDescriptor.createPipe();
+            IConsumer consumer = mController.configure(consumerClient.connect());
+            ParcelFileDescriptor[] consumerLink = mController.getTransport().createLink();
 
-            write(consumer, consumerPipe);
+            write(consumer, consumerLink);
+            success = true;
         } finally {
+            if (success) {
+                mSubTaskInput.close();
+            } else {
+                mSubTaskInput.abort();
+            }
             consumerClient.disconnect();
         }
     }
 
-    private void write(IConsumer consumer, ParcelFileDescriptor[] consumerPipe)
-            throws IOException, RemoteException, TimeoutException {
-        consumer.start(consumerPipe[0]);
-        consumerPipe[0].close();
+    private void write(IConsumer consumer, ParcelFileDescriptor[] consumerLink)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
+        ConsumerNotifier notifier = new ConsumerNotifier(mController, consumer);
+        notifier.start(consumerLink[0]);
+        consumerLink[0].close();
 
-        try (InputStream input = new AutoCloseInputStream(mSubTaskInput);
-             OutputStream output = new AutoCloseOutputStream(consumerPipe[1])) {
-            byte[] buffer = new byte[mController.getBufferSize()];
-            write(consumer, input, output, buffer);
+        try (OutputStream output = new AutoCloseOutputStream(consumerLink[1])) {
+            write(notifier, mSubTaskInput, output);
         }
 
         consumer.finish();
+        mController.addCounters(consumer);
     }
 
-    private void write(
-            IConsumer consumer,
-            InputStream input,
-            OutputStream output,
-            byte[] buffer) throws IOException, RemoteException, TimeoutException {
-        checkArgument(buffer.length > 0);
+    private void write(ConsumerNotifier notifier, SubTaskInput input, OutputStream output)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
         long deadline = currentTimeMillis() + TransferTask.TASK_TIME_OUT_MS;
-        int sizeRead;
-        while ((sizeRead = input.read(buffer)) > 0) {
+        ByteBuffer buffer;
+        while ((buffer = input.take()) != null) {
             if (currentTimeMillis() > deadline) {
                 throw new TimeoutException("Consumer write timed out");
             }
-            writeToConsumer(mController, output, buffer, sizeRead);
-            sendDataReceivedToConsumer(mController, consumer, sizeRead);
+            // Chunks from lanes can be bigger than the transfer buffer
+            int bufferSize = mController.getBufferSize();
+            while (buffer.hasRemaining()) {
+                int size = Math.min(buffer.remaining(), bufferSize);
+                int offset = buffer.arrayOffset() + buffer.position();
+                buffer.position(buffer.position() + size);
+                notifier.awaitCredit(size);
+                writeToConsumer(mController, output, buffer.array(), offset, size);
+                if (!buffer.hasRemaining()) {
+                    input.release();
+                }
+                notifier.onWritten(size);
+            }
         }
-        // End of file
-        checkState(sizeRead == -1);
+        notifier.flush();
     }
 }
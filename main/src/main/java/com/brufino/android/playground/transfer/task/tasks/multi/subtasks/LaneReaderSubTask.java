@@ -0,0 +1,124 @@
+package com.brufino.android.playground.transfer.task.tasks.multi.subtasks;
+
+import android.content.Intent;
+import android.os.ParcelFileDescriptor;
+import android.os.ParcelFileDescriptor.AutoCloseInputStream;
+import android.os.RemoteException;
+import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
+import com.brufino.android.common.TransferUtils;
+import com.brufino.android.playground.extensions.ThrowingRunnable;
+import com.brufino.android.playground.extensions.service.ServiceClient;
+import com.brufino.android.playground.extensions.service.ServiceClientFactory;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.LaneOutput;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Reads one lane of a striped transfer, see {@link ProducerCodes}. Each chunk is read straight
+ * into its own pooled buffer, which is handed over to the {@link LaneOutput}.
+ */
+public class LaneReaderSubTask implements ThrowingRunnable<Exception> {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final ServiceClientFactory mClientFactory;
+    private final Intent mProducerIntent;
+    private final TaskController mController;
+    private final int mLane;
+    private final int mLanes;
+    private final LaneOutput mLaneOutput;
+
+    LaneReaderSubTask(
+            ServiceClientFactory serviceClientFactory,
+            TaskController controller,
+            int lane,
+            int lanes,
+            LaneOutput laneOutput) {
+        mClientFactory = serviceClientFactory;
+        mController = controller;
+        mLane = lane;
+        mLanes = lanes;
+        mLaneOutput = laneOutput;
+        mProducerIntent =
+                TransferUtils.getProducerIntent(TransferTask.PRODUCER_PACKAGE);
+    }
+
+    /** Always closes or aborts the lane output, so the writer doesn't wait forever. */
+    public void run() throws RemoteException, IOException, InterruptedException, TimeoutException {
+        ServiceClient<IProducer> producerClient =
+                mClientFactory.getServiceClient(mProducerIntent, IProducer.Stub::asInterface);
+        boolean success = false;
+        try {
+            IProducer producer = producerClient.connect();
+            mController.configure(producer);
+            try {
+                ParcelFileDescriptor[] producerLink = mController.getTransport().createLink();
+                read(producer, producerLink);
+            } finally {
+                mController.release(producer);
+            }
+            success = true;
+        } finally {
+            if (success) {
+                mLaneOutput.close();
+            } else {
+                mLaneOutput.abort();
+            }
+            producerClient.disconnect();
+        }
+    }
+
+    private void read(IProducer producer, ParcelFileDescriptor[] producerLink)
+            throws RemoteException, IOException, InterruptedException, TimeoutException {
+        int code = mController.getProducerCode(ProducerCodes.getStripedCode(mLane, mLanes));
+        producer.produce(code, producerLink[1]);
+        producerLink[1].close();
+
+        // Only buffers the headers, payloads bigger than the buffer are read directly
+        try (DataInputStream input =
+                new DataInputStream(
+                        new BufferedInputStream(
+                                new AutoCloseInputStream(producerLink[0]), HEADER_SIZE))) {
+            transfer(input, mLaneOutput);
+        }
+        mController.addCounters(producer, code);
+    }
+
+    private void transfer(DataInputStream input, LaneOutput output)
+            throws IOException, InterruptedException, TimeoutException {
+        long deadline = currentTimeMillis() + TransferTask.TASK_TIME_OUT_MS;
+        while (true) {
+            if (currentTimeMillis() > deadline) {
+                throw new TimeoutException("Lane " + mLane + " read timed out");
+            }
+            TaskController.Stopwatch time = mController.startTime("read");
+            int size = input.readInt();
+            if (size == 0) {
+                time.stop();
+                return;
+            }
+            if (size < 0) {
+                throw new IOException("Invalid frame size " + size);
+            }
+            int sequence = input.readInt();
+            ByteBuffer buffer = mController.acquireBuffer(size);
+            try {
+                input.readFully(buffer.array(), buffer.arrayOffset(), size);
+                time.stop();
+                mController.addInputRead(size);
+                output.write(sequence, buffer);
+            } catch (IOException | InterruptedException e) {
+                mController.releaseBuffer(buffer);
+                throw e;
+            }
+        }
+    }
+}
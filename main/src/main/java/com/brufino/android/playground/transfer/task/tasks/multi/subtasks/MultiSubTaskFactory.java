@@ -1,8 +1,16 @@
 package com.brufino.android.playground.transfer.task.tasks.multi.subtasks;
 
-import android.os.ParcelFileDescriptor;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
 import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.LaneOutput;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.PipeSubTaskChannel;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.ReassemblyChannel;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.RingSubTaskChannel;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskChannel;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskInput;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskOutput;
+
+import java.io.IOException;
 
 public class MultiSubTaskFactory {
     private final ServiceClientFactory mServiceClientFactory;
@@ -11,11 +19,29 @@ public class MultiSubTaskFactory {
         mServiceClientFactory = serviceClientFactory;
     }
 
-    public ProducerReaderSubTask getReaderSubTask(TaskController controller, ParcelFileDescriptor output) {
+    public SubTaskChannel getPipeChannel(TaskController controller) throws IOException {
+        return new PipeSubTaskChannel(controller);
+    }
+
+    public SubTaskChannel getRingChannel(TaskController controller) {
+        return new RingSubTaskChannel(
+                controller, controller.getRingDepth(), controller.getRingWaitPolicy());
+    }
+
+    public ReassemblyChannel getReassemblyChannel(TaskController controller, int lanes) {
+        return new ReassemblyChannel(controller, lanes);
+    }
+
+    public ProducerReaderSubTask getReaderSubTask(TaskController controller, SubTaskOutput output) {
         return new ProducerReaderSubTask(mServiceClientFactory, controller, output);
     }
 
-    public ConsumerWriterSubTask getWriterSubTask(TaskController controller, ParcelFileDescriptor input) {
+    public LaneReaderSubTask getLaneReaderSubTask(
+            TaskController controller, int lane, int lanes, LaneOutput output) {
+        return new LaneReaderSubTask(mServiceClientFactory, controller, lane, lanes, output);
+    }
+
+    public ConsumerWriterSubTask getWriterSubTask(TaskController controller, SubTaskInput input) {
         return new ConsumerWriterSubTask(mServiceClientFactory, controller, input);
     }
 }
@@ -1,40 +1,38 @@
 package com.brufino.android.playground.transfer.task.tasks.multi.subtasks;
 
 import android.content.Intent;
-import android.os.DeadObjectException;
 import android.os.ParcelFileDescriptor;
 import android.os.ParcelFileDescriptor.AutoCloseInputStream;
-import android.os.ParcelFileDescriptor.AutoCloseOutputStream;
 import android.os.RemoteException;
 import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
 import com.brufino.android.common.TransferUtils;
 import com.brufino.android.playground.extensions.ThrowingRunnable;
 import com.brufino.android.playground.extensions.service.ServiceClient;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
 import com.brufino.android.playground.transfer.task.TaskController;
 import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.FrameDecoder;
+import com.brufino.android.playground.transfer.task.tasks.multi.channel.SubTaskOutput;
 
-import java.io.DataInputStream;
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.concurrent.CompletableFuture;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeoutException;
 
 import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.readFromProducer;
-import static java.lang.Math.min;
 import static java.lang.System.currentTimeMillis;
 
 public class ProducerReaderSubTask implements ThrowingRunnable<Exception> {
     private final ServiceClientFactory mClientFactory;
     private final Intent mProducerIntent;
     private final TaskController mController;
-    private final ParcelFileDescriptor mSubTaskOutput;
+    private final SubTaskOutput mSubTaskOutput;
 
     ProducerReaderSubTask(
             ServiceClientFactory serviceClientFactory,
             TaskController controller,
-            ParcelFileDescriptor subTaskOutput) {
+            SubTaskOutput subTaskOutput) {
         mClientFactory = serviceClientFactory;
         mController = controller;
         mSubTaskOutput = subTaskOutput;
@@ -42,51 +40,56 @@ public class ProducerReaderSubTask implements ThrowingRunnable<Exception> {
                 TransferUtils.getProducerIntent(TransferTask.PRODUCER_PACKAGE);
     }
 
+    /** Always closes or aborts the sub-task output, so the writer doesn't wait forever. */
     public void run() throws RemoteException, IOException, InterruptedException, TimeoutException {
         ServiceClient<IProducer> producerClient =
                 mClientFactory.getServiceClient(mProducerIntent, IProducer.Stub::asInterface);
+        boolean success = false;
         try {
             IProducer producer = producerClient.connect();
             mController.configure(producer);
-            ParcelFileDescriptor[] producerPipe = ParcelFileDescriptor.createPipe();
-
-            read(producer, producerPipe);
+            try {
+                ParcelFileDescriptor[] producerLink = mController.getTransport().createLink();
+                read(producer, producerLink);
+            } finally {
+                mController.release(producer);
+            }
+            success = true;
         } finally {
+            if (success) {
+                mSubTaskOutput.close();
+            } else {
+                mSubTaskOutput.abort();
+            }
             producerClient.disconnect();
         }
     }
 
-    public void read(IProducer producer, ParcelFileDescriptor[] producerPipe)
-            throws RemoteException, IOException, TimeoutException {
-        producer.produce(0, producerPipe[1]);
-        producerPipe[1].close();
+    public void read(IProducer producer, ParcelFileDescriptor[] producerLink)
+            throws RemoteException, IOException, InterruptedException, TimeoutException {
+        int code = mController.getProducerCode(ProducerCodes.DEFAULT);
+        producer.produce(code, producerLink[1]);
+        producerLink[1].close();
 
-        try (DataInputStream input =
-                     new DataInputStream(new AutoCloseInputStream(producerPipe[0]));
-             OutputStream output = new AutoCloseOutputStream(mSubTaskOutput)) {
-            byte[] buffer = new byte[mController.getBufferSize()];
-            transfer(input, output, buffer);
+        ByteBuffer buffer = mController.acquireBuffer();
+        try (InputStream input = new AutoCloseInputStream(producerLink[0])) {
+            transfer(new FrameDecoder(input, buffer), mSubTaskOutput);
+        } finally {
+            mController.releaseBuffer(buffer);
         }
+        mController.addCounters(producer, code);
     }
 
-    private void transfer(DataInputStream input, OutputStream output, byte[] buffer)
-            throws IOException, TimeoutException {
+    private void transfer(FrameDecoder input, SubTaskOutput output)
+            throws IOException, InterruptedException, TimeoutException {
         // TODO(brufino): Add time-out
         long deadline = currentTimeMillis() + TransferTask.TASK_TIME_OUT_MS;
-        int chunkSize;
-        while ((chunkSize = input.readInt()) > 0) {
+        int sizeRead;
+        while ((sizeRead = readFromProducer(mController, input, mController.getBufferSize())) > 0) {
             if (currentTimeMillis() > deadline) {
                 throw new TimeoutException("Producer read timed out");
             }
-            while (chunkSize > 0) {
-                int sizeRead =
-                        readFromProducer(mController, input, buffer, min(chunkSize, buffer.length));
-                if (sizeRead < 0) {
-                    throw new EOFException("Unexpected EOF");
-                }
-                output.write(buffer, 0, sizeRead);
-                chunkSize -= sizeRead;
-            }
+            output.write(input.getBuffer(), input.getOffset(), sizeRead);
         }
     }
 }
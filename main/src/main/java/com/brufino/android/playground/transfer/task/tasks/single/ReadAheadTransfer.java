@@ -0,0 +1,204 @@
+package com.brufino.android.playground.transfer.task.tasks.single;
+
+import android.os.RemoteException;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructPollfd;
+import com.brufino.android.playground.transfer.task.TaskController;
+import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier;
+import com.brufino.android.playground.transfer.task.tasks.FrameStripper;
+
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+
+import static android.system.OsConstants.EAGAIN;
+import static android.system.OsConstants.EINTR;
+import static android.system.OsConstants.F_GETFL;
+import static android.system.OsConstants.F_SETFL;
+import static android.system.OsConstants.O_NONBLOCK;
+import static android.system.OsConstants.POLLIN;
+import static com.brufino.android.common.utils.Preconditions.checkArgument;
+import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeToConsumer;
+
+/**
+ * Pipelined version of the {@link SingleThreadTask} loop, still on a single thread. It rotates
+ * {@link TaskController#getReadAhead()} buffers and the producer link is made non-blocking, so
+ * before each delivery to the consumer, which blocks on the write and on the notification, it
+ * drains whatever the producer wrote meanwhile into the free buffers. Only when there's nothing
+ * to deliver it waits for the producer, with poll().
+ *
+ * This way the producer isn't stalled by a full link while we are busy with the consumer, as long
+ * as there are free buffers. Bytes read while others were waiting to be delivered are counted as
+ * "read ahead".
+ *
+ * Not thread-safe.
+ */
+public class ReadAheadTransfer {
+    private final TaskController mController;
+    private final ConsumerNotifier mNotifier;
+    private final BufferTuner mTuner;
+    private final FrameStripper mStripper = new FrameStripper();
+    private final ArrayDeque<ByteBuffer> mFree = new ArrayDeque<>();
+
+    /** Payload is from 0 to position, oldest first. Only the last one may have room left. */
+    private final ArrayDeque<ByteBuffer> mFilled = new ArrayDeque<>();
+
+    ReadAheadTransfer(TaskController controller, ConsumerNotifier notifier) {
+        checkArgument(controller.getReadAhead() > 0, "Read-ahead disabled");
+        mController = controller;
+        mNotifier = notifier;
+        mTuner = new BufferTuner(controller, notifier.getLabel());
+    }
+
+    /** Doesn't close {@code input} or {@code output}. */
+    void transfer(FileDescriptor input, OutputStream output)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
+        setNonBlocking(input);
+        for (int i = 0; i < mController.getReadAhead(); i++) {
+            mFree.add(mController.acquireBuffer());
+        }
+        boolean tracing = mController.startTracing();
+        try {
+            long deadline = System.currentTimeMillis() + TransferTask.TASK_TIME_OUT_MS;
+            while (!mStripper.isFinished() || !mFilled.isEmpty()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new TimeoutException("Transfer timed out");
+                }
+                readAvailable(input, deadline);
+                if (!mFilled.isEmpty()) {
+                    deliver(output);
+                }
+            }
+            mNotifier.flush();
+        } finally {
+            mController.stopTracing(tracing);
+            for (ByteBuffer buffer : mFilled) {
+                mController.releaseBuffer(buffer);
+            }
+            for (ByteBuffer buffer : mFree) {
+                mController.releaseBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads into the buffers until the producer has nothing available or there's no room left.
+     * Only waits for the producer if there's nothing to deliver.
+     */
+    private void readAvailable(FileDescriptor input, long deadline)
+            throws IOException, TimeoutException {
+        while (!mStripper.isFinished()) {
+            ByteBuffer buffer = mFilled.peekLast();
+            boolean fresh = (buffer == null || getRoom(buffer) == 0);
+            if (fresh) {
+                buffer = mFree.poll();
+                if (buffer == null) {
+                    return;
+                }
+            }
+            boolean pending = !mFilled.isEmpty();
+            int sizeRead = read(input, buffer);
+            if (fresh) {
+                if (buffer.position() > 0) {
+                    mFilled.add(buffer);
+                } else {
+                    mFree.addFirst(buffer);
+                }
+            }
+            if (sizeRead > 0) {
+                if (pending) {
+                    mController.addCount("read ahead", sizeRead);
+                }
+                continue;
+            }
+            if (!mFilled.isEmpty()) {
+                return;
+            }
+            awaitInput(input, deadline);
+        }
+    }
+
+    private void deliver(OutputStream output)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
+        ByteBuffer buffer = mFilled.poll();
+        int size = buffer.position();
+        mNotifier.awaitCredit(size);
+        writeToConsumer(mController, output, buffer.array(), buffer.arrayOffset(), size);
+        mNotifier.onWritten(size);
+        mTuner.onIteration(size);
+        buffer.position(0);
+        mFree.add(buffer);
+    }
+
+    /** Bytes the buffer can still take, bounded by the tuner. */
+    private int getRoom(ByteBuffer buffer) {
+        return Math.max(0, Math.min(buffer.limit(), mTuner.getSize()) - buffer.position());
+    }
+
+    /**
+     * Reads what's available without blocking and strips the frame headers. Returns the raw bytes
+     * read, 0 if nothing was available.
+     */
+    private int read(FileDescriptor input, ByteBuffer buffer) throws IOException {
+        int offset = buffer.arrayOffset() + buffer.position();
+        int sizeRead;
+        TaskController.Stopwatch time = mController.startTime("read");
+        try {
+            sizeRead = Os.read(input, buffer.array(), offset, getRoom(buffer));
+        } catch (ErrnoException e) {
+            if (e.errno == EAGAIN) {
+                return 0;
+            }
+            throw e.rethrowAsIOException();
+        }
+        time.stop();
+        if (sizeRead == 0) {
+            throw new EOFException("Unexpected EOF");
+        }
+        int payload = mStripper.strip(buffer.array(), offset, sizeRead);
+        buffer.position(buffer.position() + payload);
+        mController.addInputRead(payload);
+        return sizeRead;
+    }
+
+    /** Timed as "read" as well, it's what a blocking read would spend waiting. */
+    private void awaitInput(FileDescriptor input, long deadline)
+            throws IOException, TimeoutException {
+        StructPollfd pollFd = new StructPollfd();
+        pollFd.fd = input;
+        pollFd.events = (short) POLLIN;
+        TaskController.Stopwatch time = mController.startTime("read");
+        while (true) {
+            int timeoutMs = (int) Math.max(0, deadline - System.currentTimeMillis());
+            int ready;
+            try {
+                ready = Os.poll(new StructPollfd[] {pollFd}, timeoutMs);
+            } catch (ErrnoException e) {
+                if (e.errno == EINTR) {
+                    continue;
+                }
+                throw e.rethrowAsIOException();
+            }
+            if (ready == 0) {
+                throw new TimeoutException("Transfer timed out");
+            }
+            break;
+        }
+        time.stop();
+    }
+
+    private static void setNonBlocking(FileDescriptor fd) throws IOException {
+        try {
+            Os.fcntlInt(fd, F_SETFL, Os.fcntlVoid(fd, F_GETFL) | O_NONBLOCK);
+        } catch (ErrnoException e) {
+            throw e.rethrowAsIOException();
+        }
+    }
+}
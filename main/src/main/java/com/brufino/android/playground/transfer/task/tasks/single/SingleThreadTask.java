@@ -6,28 +6,47 @@ import android.os.ParcelFileDescriptor;
 import android.os.ParcelFileDescriptor.AutoCloseInputStream;
 import android.os.ParcelFileDescriptor.AutoCloseOutputStream;
 import android.os.RemoteException;
+import android.util.Log;
+import androidx.annotation.Nullable;
 import com.brufino.android.common.IConsumer;
 import com.brufino.android.common.IProducer;
+import com.brufino.android.common.ProducerCodes;
 import com.brufino.android.common.TransferUtils;
+import com.brufino.android.common.utils.BufferPool;
 import com.brufino.android.playground.extensions.service.ServiceClientFactory;
 import com.brufino.android.playground.transfer.TransferConfiguration;
 import com.brufino.android.playground.transfer.task.TaskController;
 import com.brufino.android.playground.transfer.task.TransferTask;
+import com.brufino.android.playground.transfer.task.tasks.BufferTuner;
+import com.brufino.android.playground.transfer.task.tasks.ConsumerNotifier;
+import com.brufino.android.playground.transfer.task.tasks.FrameDecoder;
+import com.brufino.android.playground.transfer.task.tasks.InlineTransfer;
 import com.brufino.android.playground.extensions.ApplicationContext;
 import com.brufino.android.playground.extensions.service.ServiceClient;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeoutException;
 
+import static com.brufino.android.common.CommonConstants.TAG;
 import static com.brufino.android.common.utils.Preconditions.checkNotNull;
 import static com.brufino.android.common.utils.Preconditions.checkState;
 import static com.brufino.android.playground.extensions.concurrent.ConcurrencyUtils.execute;
 import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.readFromProducer;
-import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.sendDataReceivedToConsumer;
 import static com.brufino.android.playground.transfer.task.tasks.TaskUtils.writeToConsumer;
-import static java.lang.Math.min;
 
+/**
+ * Reads from the producer, writes to the consumer and notifies it, in sequence on a single
+ * thread. With {@link TaskController#getReadAhead()} buffers these steps overlap, see
+ * {@link ReadAheadTransfer}.
+ *
+ * If prepared, connecting to producer and consumer, configuring the producer and creating the
+ * links happen ahead of time on the task executor, see {@link Setup}.
+ */
 public class SingleThreadTask extends TransferTask {
     private final Intent mProducerIntent;
     private final Intent mConsumerIntent;
@@ -35,13 +54,17 @@ public class SingleThreadTask extends TransferTask {
     private final TaskController mController;
     private final ExecutorService mTaskExecutor;
 
+    /** Only if prepared. */
+    @Nullable private volatile CompletableFuture<Setup> mSetup;
+
     public SingleThreadTask(
             ApplicationContext context,
             ServiceClientFactory serviceClientFactory,
             Looper looper,
             TransferConfiguration configuration,
+            BufferPool bufferPool,
             ExecutorService taskExecutor) {
-        super(context, looper, configuration, "Single");
+        super(context, looper, configuration, bufferPool, "Single");
         mClientFactory = serviceClientFactory;
         mProducerIntent =
                 TransferUtils.getProducerIntent(TransferTask.PRODUCER_PACKAGE);
@@ -51,6 +74,25 @@ public class SingleThreadTask extends TransferTask {
         mController = getController();
     }
 
+    @Override
+    protected void onPrepare() {
+        mSetup = execute(this::setUp, mTaskExecutor);
+    }
+
+    /** Closes on the task executor, discarding can happen on the main thread. */
+    @Override
+    protected void onDiscard() {
+        checkNotNull(mSetup).thenAcceptAsync(
+                setup -> {
+                    try {
+                        setup.close();
+                    } catch (RemoteException e) {
+                        Log.w(TAG, "Error closing discarded " + getName(), e);
+                    }
+                },
+                mTaskExecutor);
+    }
+
     @Override
     protected void onStart() {
         execute(this::runTask, mTaskExecutor);
@@ -66,78 +108,226 @@ public class SingleThreadTask extends TransferTask {
         finishTask();
     }
 
-    /** Will connect, run, then disconnect clients. */
+    /** Will set up, unless prepared, run, then close the set up. */
     private void run()
             throws RemoteException, InterruptedException, IOException, TimeoutException {
-        ServiceClient<IProducer> producerClient =
-                mClientFactory.getServiceClient(mProducerIntent, IProducer.Stub::asInterface);
-        ServiceClient<IConsumer> consumerClient =
-                mClientFactory.getServiceClient(mConsumerIntent, IConsumer.Stub::asInterface);
-        producerClient.connectAsync();
-        consumerClient.connectAsync();
+        Setup setup = getSetup();
+        try {
+            run(setup);
+        } catch (RemoteException
+                | InterruptedException
+                | IOException
+                | TimeoutException
+                | RuntimeException e) {
+            setup.close(e);
+            throw e;
+        }
+        setup.close();
+    }
+
+    /** We have producer and consumer connected, producer configured and links created. */
+    private void run(Setup setup)
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        IConsumer consumer = mController.configure(checkNotNull(setup.mConsumer));
+        if (setup.mProducerLink == null) {
+            InlineTransfer.transfer(mController, setup.mProducer, consumer);
+            return;
+        }
+        transfer(
+                setup.mProducer,
+                consumer,
+                setup.mProducerLink,
+                checkNotNull(setup.mConsumerLink));
+    }
+
+    private Setup getSetup() throws RemoteException, InterruptedException, IOException {
+        CompletableFuture<Setup> setup = mSetup;
+        if (setup == null) {
+            return setUp();
+        }
         try {
-            run(producerClient.get(), consumerClient.get());
-        } finally {
-            consumerClient.disconnect();
-            producerClient.disconnect();
+            return setup.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new CompletionException(cause);
         }
     }
 
-    /** We have producer and consumer connected. */
-    private void run(IProducer producer, IConsumer consumer)
-            throws RemoteException, IOException, TimeoutException {
-        mController.configure(producer);
-        mController.configure(consumer);
-        ParcelFileDescriptor[] producerPipe = ParcelFileDescriptor.createPipe();
-        ParcelFileDescriptor[] consumerPipe = ParcelFileDescriptor.createPipe();
-        transfer(producer, consumer, producerPipe, consumerPipe);
+    /**
+     * Connects to producer and consumer, configures the producer and creates the links. The
+     * consumer is configured once running, see {@link TaskController#configure(IConsumer)}.
+     */
+    private Setup setUp() throws RemoteException, InterruptedException, IOException {
+        Setup setup =
+                new Setup(
+                        mClientFactory.getServiceClient(
+                                mProducerIntent, IProducer.Stub::asInterface),
+                        mClientFactory.getServiceClient(
+                                mConsumerIntent, IConsumer.Stub::asInterface));
+        setup.mProducerClient.connectAsync();
+        setup.mConsumerClient.connectAsync();
+        try {
+            setup.mProducer = setup.mProducerClient.get();
+            setup.mConsumer = setup.mConsumerClient.get();
+            mController.configure(setup.mProducer);
+            setup.mConfigured = true;
+            if (!InlineTransfer.shouldUse(mController)) {
+                setup.mProducerLink = mController.getTransport().createLink();
+                setup.mConsumerLink = mController.getTransport().createLink();
+            }
+        } catch (RemoteException | InterruptedException | IOException | RuntimeException e) {
+            setup.close(e);
+            throw e;
+        }
+        return setup;
     }
 
     private void transfer(
             IProducer producer,
             IConsumer consumer,
-            ParcelFileDescriptor[] producerPipe,
-            ParcelFileDescriptor[] consumerPipe)
-            throws RemoteException, IOException, TimeoutException {
-        producer.produce(0, producerPipe[1]);
-        producerPipe[1].close();
-
-        consumer.start(consumerPipe[0]);
-        consumerPipe[0].close();
-
-        try (DataInputStream input =
-                     new DataInputStream(new AutoCloseInputStream(producerPipe[0]));
-             OutputStream output = new AutoCloseOutputStream(consumerPipe[1])) {
-            byte[] buffer = new byte[mController.getBufferSize()];
-            transfer(consumer, input, output, buffer);
+            ParcelFileDescriptor[] producerLink,
+            ParcelFileDescriptor[] consumerLink)
+            throws RemoteException, InterruptedException, IOException, TimeoutException {
+        int code = mController.getProducerCode(ProducerCodes.DEFAULT);
+        producer.produce(code, producerLink[1]);
+        producerLink[1].close();
+
+        ConsumerNotifier notifier = new ConsumerNotifier(mController, consumer);
+        notifier.start(consumerLink[0]);
+        consumerLink[0].close();
+
+        if (mController.getReadAhead() > 0) {
+            try (ParcelFileDescriptor input = producerLink[0];
+                 OutputStream output = new AutoCloseOutputStream(consumerLink[1])) {
+                new ReadAheadTransfer(mController, notifier)
+                        .transfer(input.getFileDescriptor(), output);
+            }
+        } else {
+            ByteBuffer buffer = mController.acquireBuffer();
+            try (InputStream input = new AutoCloseInputStream(producerLink[0]);
+                 OutputStream output = new AutoCloseOutputStream(consumerLink[1])) {
+                transfer(notifier, new FrameDecoder(input, buffer), output);
+            } finally {
+                mController.releaseBuffer(buffer);
+            }
         }
+        mController.addCounters(producer, code);
 
         consumer.finish();
+        mController.addCounters(consumer);
     }
 
     private void transfer(
-            IConsumer consumer,
-            DataInputStream input,
-            OutputStream output,
-            byte[] buffer) throws IOException, RemoteException, TimeoutException {
+            ConsumerNotifier notifier,
+            FrameDecoder input,
+            OutputStream output)
+            throws IOException, RemoteException, InterruptedException, TimeoutException {
         boolean tracing = mController.startTracing();
         long deadline = System.currentTimeMillis() + TASK_TIME_OUT_MS;
-        int chunkSize;
-        while ((chunkSize = input.readInt()) > 0) {
+        BufferTuner tuner = new BufferTuner(mController, notifier.getLabel());
+        int sizeRead;
+        while ((sizeRead = readFromProducer(mController, input, tuner.getSize())) > 0) {
             if (System.currentTimeMillis() > deadline) {
                 throw new TimeoutException("Transfer timed out");
             }
-            while (chunkSize > 0) {
-                int sizeRead =
-                        readFromProducer(mController, input, buffer, min(chunkSize, buffer.length));
-                if (sizeRead < 0) {
-                    throw new EOFException("Unexpected EOF");
+            notifier.awaitCredit(sizeRead);
+            writeToConsumer(mController, output, input.getBuffer(), input.getOffset(), sizeRead);
+            notifier.onWritten(sizeRead);
+            tuner.onIteration(sizeRead);
+        }
+        notifier.flush();
+        mController.stopTracing(tracing);
+    }
+
+    /** What the task needs before transferring, fields are filled in by {@link #setUp()}. */
+    private class Setup {
+        private final ServiceClient<IProducer> mProducerClient;
+        private final ServiceClient<IConsumer> mConsumerClient;
+        @Nullable private IProducer mProducer;
+        @Nullable private IConsumer mConsumer;
+        private boolean mConfigured;
+        @Nullable private ParcelFileDescriptor[] mProducerLink;
+        @Nullable private ParcelFileDescriptor[] mConsumerLink;
+
+        private Setup(
+                ServiceClient<IProducer> producerClient,
+                ServiceClient<IConsumer> consumerClient) {
+            mProducerClient = producerClient;
+            mConsumerClient = consumerClient;
+        }
+
+        /**
+         * Link ends already handed over were closed by whoever took them, closing is a no-op.
+         * Each client is disconnected whatever fails before, the first failure is thrown with
+         * the others suppressed.
+         */
+        private void close() throws RemoteException {
+            Exception failure = null;
+            try {
+                closeLink(mProducerLink);
+                closeLink(mConsumerLink);
+                if (mConfigured) {
+                    mController.release(checkNotNull(mProducer));
+                }
+            } catch (RemoteException | RuntimeException e) {
+                failure = e;
+            }
+            failure = disconnect(mConsumerClient, failure);
+            failure = disconnect(mProducerClient, failure);
+            if (failure instanceof RemoteException) {
+                throw (RemoteException) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+        }
+
+        /** While {@code failure} is thrown, failures closing are suppressed into it. */
+        private void close(Exception failure) {
+            try {
+                close();
+            } catch (RemoteException | RuntimeException e) {
+                failure.addSuppressed(e);
+            }
+        }
+
+        /** Returns the first failure, the connection may not be done, e.g. if interrupted. */
+        @Nullable
+        private Exception disconnect(ServiceClient<?> client, @Nullable Exception failure) {
+            try {
+                client.disconnectWhenConnected();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    return e;
+                }
+                failure.addSuppressed(e);
+            }
+            return failure;
+        }
+
+        private void closeLink(@Nullable ParcelFileDescriptor[] link) {
+            if (link == null) {
+                return;
+            }
+            for (ParcelFileDescriptor end : link) {
+                try {
+                    end.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Error closing link", e);
                 }
-                writeToConsumer(mController, output, buffer, sizeRead);
-                sendDataReceivedToConsumer(mController, consumer, sizeRead);
-                chunkSize -= sizeRead;
             }
         }
-        mController.stopTracing(tracing);
     }
 }
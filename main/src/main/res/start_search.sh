@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+
+# Usage: start_search.sh TASK STRATEGY CANDIDATES REPEAT [EXTRA VALUES]...
+#
+# STRATEGY = grid, random or halving
+# EXTRA = any of the START_TRANSFER extras, VALUES = comma-separated values to try (sizes in bytes)
+#
+# Example: start_search.sh single halving 16 3 transfer_buffer 4096,16384,65536 transport pipe,socket
+#
+# Results are logged and saved to Documents/search.csv
+
+task=$1
+strategy=$2
+candidates=$3
+repeat=$4
+shift 4
+
+extras=()
+while [[ $# -ge 2 ]]; do
+    extras+=(--es "$1" "$2")
+    shift 2
+done
+
+echo "Searching $task ($strategy, $candidates candidates x $repeat) ${extras[*]}"
+adb shell am broadcast \
+        -a com.brufino.android.START_SEARCH \
+        --es task ${task} \
+        --es strategy ${strategy} \
+        --ei candidates ${candidates} \
+        --ei repeat ${repeat} \
+        "${extras[@]}" \
+        com.brufino.android.playground \
+        < /dev/null \
+        > /dev/null
+exit $?
@@ -16,6 +16,27 @@ do
             com.brufino\.android.playground \
             < /dev/null \
             > /dev/null
+    elif [[ "$line" == slots\ * ]]; then
+        adb shell am broadcast \
+            -a com.brufino.android.SET_SLOTS \
+            --ei slots ${line#slots } \
+            com.brufino\.android.playground \
+            < /dev/null \
+            > /dev/null
+    elif [[ "$line" == pooling\ * ]]; then
+        adb shell am broadcast \
+            -a com.brufino.android.SET_POOLING \
+            --ez pooling $([[ "${line#pooling }" == "on" ]] && echo true || echo false) \
+            com.brufino\.android.playground \
+            < /dev/null \
+            > /dev/null
+    elif [[ "$line" == prepare\ * ]]; then
+        adb shell am broadcast \
+            -a com.brufino.android.SET_PREPARE \
+            --ez prepare $([[ "${line#prepare }" == "on" ]] && echo true || echo false) \
+            com.brufino\.android.playground \
+            < /dev/null \
+            > /dev/null
     elif [[ ! "$line" == \#* && ! -z "$line" ]]; then
         ${DIR}/start_task.sh ${line}
     fi
@@ -0,0 +1,139 @@
+package com.brufino.android.playground.extensions.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MpscHandoffTest {
+    private static final long TIMEOUT_S = 30;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void submit_singleProducer_consumesInOrder() throws Exception {
+        int items = 10_000;
+        List<Integer> consumed = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(items);
+        MpscHandoff<Integer> handoff =
+                new MpscHandoff<>(
+                        mExecutor,
+                        item -> {
+                            consumed.add(item);
+                            done.countDown();
+                        });
+
+        for (int i = 0; i < items; i++) {
+            handoff.submit(i);
+        }
+
+        assertTrue(done.await(TIMEOUT_S, TimeUnit.SECONDS));
+        for (int i = 0; i < items; i++) {
+            assertEquals(i, (int) consumed.get(i));
+        }
+    }
+
+    @Test
+    public void submit_multipleProducers_consumesAllInOrderPerProducer() throws Exception {
+        int producers = 8;
+        int items = 20_000;
+        // Only touched by the consumer, which runs on the single-thread executor
+        int[] next = new int[producers];
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlapping = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers * items);
+        MpscHandoff<int[]> handoff =
+                new MpscHandoff<>(
+                        mExecutor,
+                        item -> {
+                            if (running.incrementAndGet() > 1) {
+                                overlapping.incrementAndGet();
+                            }
+                            int producer = item[0];
+                            if (item[1] != next[producer]) {
+                                outOfOrder.incrementAndGet();
+                            }
+                            next[producer] = item[1] + 1;
+                            running.decrementAndGet();
+                            done.countDown();
+                        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                } catch (InterruptedException e) {
+                                    return;
+                                }
+                                for (int i = 0; i < items; i++) {
+                                    handoff.submit(new int[] {producer, i});
+                                }
+                            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("Items lost", done.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertEquals(0, outOfOrder.get());
+        assertEquals(0, overlapping.get());
+        mExecutor.submit(() -> {}).get(TIMEOUT_S, TimeUnit.SECONDS);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(items, next[p]);
+        }
+    }
+
+    @Test
+    public void drain_fromExecutor_consumesSubmittedItems() throws Exception {
+        List<Integer> consumed = new ArrayList<>();
+        MpscHandoff<Integer> handoff = new MpscHandoff<>(mExecutor, consumed::add);
+
+        List<Integer> drained =
+                mExecutor
+                        .submit(
+                                () -> {
+                                    handoff.submit(1);
+                                    handoff.submit(2);
+                                    // The scheduled drain hasn't run yet, it's queued after us
+                                    handoff.drain();
+                                    return new ArrayList<>(consumed);
+                                })
+                        .get(TIMEOUT_S, TimeUnit.SECONDS);
+
+        assertEquals(2, drained.size());
+        assertEquals(1, (int) drained.get(0));
+        assertEquals(2, (int) drained.get(1));
+        // The drain scheduled by the first submission finds nothing left
+        mExecutor.submit(() -> {}).get(TIMEOUT_S, TimeUnit.SECONDS);
+        assertEquals(2, consumed.size());
+    }
+}
@@ -0,0 +1,134 @@
+package com.brufino.android.playground.transfer.task.tasks;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrameStripperTest {
+    /** Frames of these sizes, then the end of data frame. */
+    private static final int[] FRAME_SIZES = {5, 1, 300, 4, 2};
+
+    @Test
+    public void strip_wholeStream_returnsPayload() throws IOException {
+        byte[] stream = getStream();
+        FrameStripper stripper = new FrameStripper();
+
+        byte[] payload = strip(stripper, stream, 0, stream.length);
+
+        assertArrayEquals(getPayload(), payload);
+        assertTrue(stripper.isFinished());
+    }
+
+    @Test
+    public void strip_splitAtEveryBoundary_returnsPayload() throws IOException {
+        byte[] stream = getStream();
+        for (int split = 0; split <= stream.length; split++) {
+            FrameStripper stripper = new FrameStripper();
+
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(strip(stripper, stream, 0, split));
+            assertEquals("Split at " + split, split == stream.length, stripper.isFinished());
+            payload.write(strip(stripper, stream, split, stream.length));
+
+            assertArrayEquals("Split at " + split, getPayload(), payload.toByteArray());
+            assertTrue("Split at " + split, stripper.isFinished());
+        }
+    }
+
+    @Test
+    public void strip_oneByteAtATime_returnsPayload() throws IOException {
+        byte[] stream = getStream();
+        FrameStripper stripper = new FrameStripper();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (int i = 0; i < stream.length; i++) {
+            assertFalse("Finished before byte " + i, stripper.isFinished());
+            payload.write(strip(stripper, stream, i, i + 1));
+        }
+
+        assertArrayEquals(getPayload(), payload.toByteArray());
+        assertTrue(stripper.isFinished());
+    }
+
+    @Test
+    public void strip_splitInsideTerminator_finishesOnLastByte() throws IOException {
+        byte[] stream = getStream();
+        int terminator = stream.length - Integer.BYTES;
+        for (int split = terminator + 1; split < stream.length; split++) {
+            FrameStripper stripper = new FrameStripper();
+
+            strip(stripper, stream, 0, split);
+            assertFalse("Split at " + split, stripper.isFinished());
+            assertEquals(0, strip(stripper, stream, split, stream.length).length);
+
+            assertTrue("Split at " + split, stripper.isFinished());
+        }
+    }
+
+    @Test
+    public void strip_dataAfterEndOfData_throws() throws IOException {
+        byte[] stream = Arrays.copyOf(getStream(), getStream().length + 1);
+        FrameStripper stripper = new FrameStripper();
+
+        try {
+            stripper.strip(stream, 0, stream.length);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void strip_negativeSize_throws() {
+        byte[] stream = {(byte) 0xFF, 0, 0, 1, 42};
+        FrameStripper stripper = new FrameStripper();
+
+        try {
+            stripper.strip(stream, 0, stream.length);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    /** Strips a copy of {@code stream[from, to)}, which leaves {@code stream} untouched. */
+    private static byte[] strip(FrameStripper stripper, byte[] stream, int from, int to)
+            throws IOException {
+        // Offset into a bigger buffer, so that the payload is moved relative to the range
+        int offset = 3;
+        byte[] buffer = new byte[offset + to - from];
+        System.arraycopy(stream, from, buffer, offset, to - from);
+        int size = stripper.strip(buffer, offset, to - from);
+        return Arrays.copyOfRange(buffer, offset, offset + size);
+    }
+
+    private static byte[] getStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        int next = 0;
+        for (int size : FRAME_SIZES) {
+            output.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                output.writeByte(next++);
+            }
+        }
+        output.writeInt(0);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] getPayload() {
+        int size = Arrays.stream(FRAME_SIZES).sum();
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) i;
+        }
+        return payload;
+    }
+}
@@ -3,71 +3,324 @@ package com.brufino.android.producer;
 import android.os.ParcelFileDescriptor;
 import android.util.Log;
 import com.brufino.android.common.CommonConstants;
+import com.brufino.android.common.ProducerCodes;
 import com.brufino.android.common.ProducerService;
+import com.brufino.android.common.payload.PayloadGenerator;
 import com.brufino.android.common.utils.Preconditions;
 
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.brufino.android.common.CommonConstants.TAG;
 import static com.brufino.android.common.utils.Preconditions.checkArgument;
 import static com.brufino.android.common.utils.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class AppProducer extends ProducerService {
-    private int mDataSize = -1;
-    private int mChunkSize = -1;
-    private long mIntervalMs = -1;
-    private int mBytesSent = 0;
+    /**
+     * Oneway calls to the same binder are serialized, so each production runs on its own thread,
+     * otherwise streams would wait for each other.
+     */
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Map<Integer, Stream> mStreams = new ConcurrentHashMap<>();
 
     @Override
-    public void configure(int dataSize, int chunkSize, long intervalMs) {
-        mDataSize = dataSize;
-        mChunkSize = chunkSize;
-        mIntervalMs = intervalMs;
+    public void configure(
+            int stream,
+            int dataSize,
+            int chunkSize,
+            long intervalMs,
+            @ProducerMode int mode,
+            @PayloadGenerator.Type int payload,
+            int seed,
+            int compressibility) {
+        checkArgument(dataSize > 0, "Invalid data size " + dataSize);
+        checkArgument(chunkSize > 0, "Invalid chunk size " + chunkSize);
+        checkArgument(intervalMs >= 0, "Invalid interval " + intervalMs);
+        mStreams.compute(
+                stream,
+                (s, current) -> {
+                    if (current != null) {
+                        current.mReferences++;
+                        return current;
+                    }
+                    return new Stream(
+                            s,
+                            dataSize,
+                            chunkSize,
+                            intervalMs,
+                            mode,
+                            PayloadGenerator.create(payload, seed, compressibility));
+                });
+    }
+
+    @Override
+    public void release(int stream) {
+        mStreams.computeIfPresent(
+                stream, (s, current) -> (--current.mReferences > 0) ? current : null);
+    }
+
+    @Override
+    public void onDestroy() {
+        mExecutor.shutdownNow();
+        super.onDestroy();
     }
 
     @Override
     public void produce(int code, ParcelFileDescriptor outputFd) {
-        checkState(mDataSize > 0);
-        checkState(mChunkSize > 0);
-        checkState(mIntervalMs >= 0);
+        Stream stream = getStream(code);
+        stream.mCounters.remove(code);
+        if (stream.mMode != ProducerMode.SIMPLE) {
+            mExecutor.execute(() -> produceGathered(stream, code, outputFd));
+        } else if (ProducerCodes.isStriped(code)) {
+            mExecutor.execute(() -> produceLane(stream, code, outputFd));
+        } else {
+            mExecutor.execute(() -> produceSimple(stream, outputFd));
+        }
+    }
 
-        try {
-            DataOutputStream output =
-                    new DataOutputStream(new FileOutputStream(outputFd.getFileDescriptor()));
+    private Stream getStream(int code) {
+        int id = ProducerCodes.getStream(code);
+        Stream stream = mStreams.get(id);
+        checkState(stream != null, "Stream " + id + " not configured");
+        return stream;
+    }
 
-            byte[] buffer = new byte[mChunkSize];
-            int remainingBytes = mDataSize;
+    private void produceSimple(Stream stream, ParcelFileDescriptor outputFd) {
+        try (ParcelFileDescriptor fd = outputFd;
+             DataOutputStream output =
+                     new DataOutputStream(new FileOutputStream(fd.getFileDescriptor()))) {
+            byte[] buffer = new byte[stream.mChunkSize];
+            int remainingBytes = stream.mDataSize;
             while (remainingBytes > 0) {
-                Thread.sleep(mIntervalMs);
-                writeBytes(output, buffer);
+                Thread.sleep(stream.mIntervalMs);
+                stream.mGenerator.fill(
+                        stream.mDataSize - remainingBytes, buffer, 0, buffer.length);
+                writeBytes(stream, output, buffer);
                 remainingBytes -= buffer.length;
             }
 
             writeEndOfData(output);
-            output.close();
-            outputFd.close();
         } catch (InterruptedException | IOException e) {
+            Log.e(TAG, "Error producing stream " + stream.mId, e);
+        }
+    }
+
+    /** Same chunks as the pipe path, so that both transfer the same amount of data. */
+    @Override
+    public byte[] produceInline(int code, int sequence) {
+        checkArgument(
+                ProducerCodes.withStream(code, 0) == ProducerCodes.DEFAULT,
+                "Can't produce code " + code + " inline");
+        Stream stream = getStream(code);
+
+        if ((long) sequence * stream.mChunkSize >= stream.mDataSize) {
+            return new byte[0];
+        }
+        try {
+            Thread.sleep(stream.mIntervalMs);
+        } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        byte[] chunk = new byte[stream.mChunkSize];
+        stream.mGenerator.fill((long) sequence * stream.mChunkSize, chunk, 0, chunk.length);
+        stream.mBytesSent.addAndGet(chunk.length);
+        return chunk;
     }
 
-    private void writeBytes(DataOutputStream output, byte[] data) throws IOException {
+    @Override
+    public Map<String, Long> getCounters(int code) {
+        Stream stream = mStreams.get(ProducerCodes.getStream(code));
+        if (stream == null) {
+            return new HashMap<>();
+        }
+        return new HashMap<>(stream.mCounters.getOrDefault(code, Collections.emptyMap()));
+    }
+
+    /**
+     * Writes exactly {@code dataSize} bytes in frames of {@code chunkSize}, the last one possibly
+     * smaller. Each frame is a single gathered write of header and payload. For striped codes it
+     * only writes the lane's chunks, tagged with their index, see {@link ProducerCodes}.
+     *
+     * With an interval chunks are scheduled at a fixed rate, chunk i being due i + 1 intervals
+     * after the start, as in the simple mode minus the time spent writing.
+     */
+    private void produceGathered(Stream stream, int code, ParcelFileDescriptor outputFd) {
+        int dataSize = stream.mDataSize;
+        int chunkSize = stream.mChunkSize;
+        long intervalMs = (stream.mMode == ProducerMode.PACED) ? stream.mIntervalMs : 0;
+        boolean striped = ProducerCodes.isStriped(code);
+        int lane = striped ? ProducerCodes.getLane(code) : 0;
+        int lanes = striped ? ProducerCodes.getLanes(code) : 1;
+        ByteBuffer header = ByteBuffer.allocate((striped ? 2 : 1) * Integer.BYTES);
+        ByteBuffer payload = ByteBuffer.allocate(chunkSize);
+        ByteBuffer[] frame = {header, payload};
+        long intervalNanos = MILLISECONDS.toNanos(intervalMs);
+        long chunks = 0;
+        long bytes = 0;
+        long generateNanos = 0;
+        long writeNanos = 0;
+        long lateNanos = 0;
+        try (ParcelFileDescriptor fd = outputFd;
+             FileChannel output = new FileOutputStream(fd.getFileDescriptor()).getChannel()) {
+            int count = (int) (((long) dataSize + chunkSize - 1) / chunkSize);
+            long startNanos = System.nanoTime();
+            for (int sequence = lane; sequence < count; sequence += lanes) {
+                if (intervalNanos > 0) {
+                    long dueNanos = startNanos + (sequence / lanes + 1) * intervalNanos;
+                    long delayNanos = dueNanos - System.nanoTime();
+                    if (delayNanos > 0) {
+                        NANOSECONDS.sleep(delayNanos);
+                    } else {
+                        lateNanos -= delayNanos;
+                    }
+                }
+                int size = (int) Math.min(chunkSize, dataSize - (long) sequence * chunkSize);
+                header.clear();
+                header.putInt(size);
+                if (striped) {
+                    header.putInt(sequence);
+                }
+                header.flip();
+                long generateStartNanos = System.nanoTime();
+                stream.mGenerator.fill((long) sequence * chunkSize, payload.array(), 0, size);
+                generateNanos += System.nanoTime() - generateStartNanos;
+                payload.clear().limit(size);
+                long writeStartNanos = System.nanoTime();
+                writeFully(output, frame);
+                writeNanos += System.nanoTime() - writeStartNanos;
+                chunks++;
+                bytes += size;
+            }
+
+            // Before the end of data frame, so they are complete once the reader sees it
+            Map<String, Long> counters = new HashMap<>();
+            counters.put("chunks", chunks);
+            counters.put("bytes", bytes);
+            counters.put("generate ms", NANOSECONDS.toMillis(generateNanos));
+            counters.put("write ms", NANOSECONDS.toMillis(writeNanos));
+            counters.put("late ms", NANOSECONDS.toMillis(lateNanos));
+            stream.mCounters.put(code, counters);
+
+            header.clear();
+            header.putInt(0);
+            header.flip();
+            writeFully(output, header);
+        } catch (InterruptedException | IOException e) {
+            Log.e(TAG, "Error producing code " + code, e);
+        }
+    }
+
+    /** Writes all remaining bytes of {@code buffers}. */
+    private static void writeFully(GatheringByteChannel output, ByteBuffer... buffers)
+            throws IOException {
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            output.write(buffers);
+        }
+    }
+
+    /**
+     * Writes chunks lane, lane + lanes, lane + 2 * lanes, etc. tagged with their index. Keeps
+     * counters instead of logging each chunk.
+     */
+    private void produceLane(Stream stream, int code, ParcelFileDescriptor outputFd) {
+        int lane = ProducerCodes.getLane(code);
+        int lanes = ProducerCodes.getLanes(code);
+        int chunkSize = stream.mChunkSize;
+        try (ParcelFileDescriptor fd = outputFd;
+             DataOutputStream output =
+                     new DataOutputStream(new FileOutputStream(fd.getFileDescriptor()))) {
+            byte[] buffer = new byte[chunkSize];
+            int count = (stream.mDataSize + chunkSize - 1) / chunkSize;
+            long chunks = 0;
+            long bytes = 0;
+            for (int sequence = lane; sequence < count; sequence += lanes) {
+                Thread.sleep(stream.mIntervalMs);
+                stream.mGenerator.fill((long) sequence * chunkSize, buffer, 0, buffer.length);
+                output.writeInt(buffer.length);
+                output.writeInt(sequence);
+                output.write(buffer);
+                output.flush();
+                chunks++;
+                bytes += buffer.length;
+            }
+
+            // Before the end of data frame, so they are complete once the reader sees it
+            Map<String, Long> counters = new HashMap<>();
+            counters.put("chunks", chunks);
+            counters.put("bytes", bytes);
+            stream.mCounters.put(code, counters);
+
+            writeEndOfData(output);
+        } catch (InterruptedException | IOException e) {
+            Log.e(TAG, "Error producing code " + code, e);
+        }
+    }
+
+    private void writeBytes(Stream stream, DataOutputStream output, byte[] data)
+            throws IOException {
         output.writeInt(data.length);
         output.write(data);
         output.flush();
-        mBytesSent += data.length;
-        Log.d(TAG, "Sent " + mBytesSent + " bytes");
+        long bytesSent = stream.mBytesSent.addAndGet(data.length);
+        Log.d(TAG, "Stream " + stream.mId + " sent " + bytesSent + " bytes");
     }
 
-    private void writeString(DataOutputStream output, String string) throws IOException {
+    private void writeString(Stream stream, DataOutputStream output, String string)
+            throws IOException {
         checkArgument(!string.isEmpty());
-        writeBytes(output, string.getBytes());
+        writeBytes(stream, output, string.getBytes());
     }
 
     private void writeEndOfData(DataOutputStream output) throws IOException {
         output.writeInt(0);
         output.flush();
     }
+
+    /**
+     * Configuration and state of a stream, productions of the stream run concurrently, e.g. lanes,
+     * so they only share thread-safe state.
+     */
+    private static class Stream {
+        private final int mId;
+        private final int mDataSize;
+        private final int mChunkSize;
+        private final long mIntervalMs;
+        @ProducerMode private final int mMode;
+        private final PayloadGenerator mGenerator;
+        private final AtomicLong mBytesSent = new AtomicLong();
+
+        /** By code, see {@link AppProducer#getCounters(int)}. */
+        private final Map<Integer, Map<String, Long>> mCounters = new ConcurrentHashMap<>();
+
+        /** Only changed inside {@link AppProducer#mStreams} compute methods, which are atomic. */
+        private int mReferences = 1;
+
+        private Stream(
+                int id,
+                int dataSize,
+                int chunkSize,
+                long intervalMs,
+                @ProducerMode int mode,
+                PayloadGenerator generator) {
+            mId = id;
+            mDataSize = dataSize;
+            mChunkSize = chunkSize;
+            mIntervalMs = intervalMs;
+            mMode = mode;
+            mGenerator = generator;
+        }
+    }
 }